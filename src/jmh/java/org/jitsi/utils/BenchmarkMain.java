@@ -0,0 +1,69 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils;
+
+import java.util.*;
+
+import org.openjdk.jmh.runner.*;
+import org.openjdk.jmh.runner.options.*;
+
+/**
+ * Runs the JMH benchmarks. Accepts the same arguments as
+ * {@link org.openjdk.jmh.Main}, plus {@code -threads <n1>,<n2>,...} to run
+ * the selected benchmarks once with each number of threads, e.g.:
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="RateTracker -threads 1,8,64 -prof gc"
+ * </pre>
+ */
+public class BenchmarkMain
+{
+    public static void main(String[] args)
+        throws Exception
+    {
+        List<String> jmhArgs = new ArrayList<>();
+        List<Integer> threadCounts = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++)
+        {
+            if ("-threads".equals(args[i]) && i + 1 < args.length)
+            {
+                for (String threads : args[++i].split(","))
+                {
+                    threadCounts.add(Integer.parseInt(threads.trim()));
+                }
+            }
+            else
+            {
+                jmhArgs.add(args[i]);
+            }
+        }
+
+        CommandLineOptions options
+            = new CommandLineOptions(jmhArgs.toArray(new String[0]));
+        if (threadCounts.isEmpty())
+        {
+            new Runner(options).run();
+            return;
+        }
+
+        for (int threads : threadCounts)
+        {
+            new Runner(
+                new OptionsBuilder().parent(options).threads(threads).build())
+                .run();
+        }
+    }
+}
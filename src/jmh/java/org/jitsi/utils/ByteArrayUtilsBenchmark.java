@@ -0,0 +1,73 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils;
+
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks the {@link ByteArrayUtils} methods used to parse and write
+ * packet headers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ByteArrayUtilsBenchmark
+{
+    private final byte[] buf = new byte[1500];
+
+    private int off = 0;
+
+    private int nextOffset()
+    {
+        off = off + 4 >= buf.length - 4 ? 0 : off + 4;
+        return off;
+    }
+
+    @Benchmark
+    public int readUint16()
+    {
+        return ByteArrayUtils.readUint16(buf, nextOffset());
+    }
+
+    @Benchmark
+    public int readUint24()
+    {
+        return ByteArrayUtils.readUint24(buf, nextOffset());
+    }
+
+    @Benchmark
+    public long readUint32()
+    {
+        return ByteArrayUtils.readUint32(buf, nextOffset());
+    }
+
+    @Benchmark
+    public void writeUint16()
+    {
+        ByteArrayUtils.writeUint16(buf, nextOffset(), 0xabcd);
+    }
+
+    @Benchmark
+    public void writeInt()
+    {
+        ByteArrayUtils.writeInt(buf, nextOffset(), 0x12345678);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils.dsi;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.jitsi.utils.concurrent.*;
+import org.jitsi.utils.time.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks a decision round of {@link DominantSpeakerIdentification}, which
+ * evaluates the speech activity scores of every speaker. Each speaker gets a
+ * new level before each round, so that the scores are actually re-evaluated.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DecisionBenchmark
+{
+    @Param({"10", "100", "500"})
+    public int numSpeakers;
+
+    private final Random random = new Random(0);
+
+    private final FakeClock clock = new FakeClock();
+
+    private DominantSpeakerIdentification<String> dsi;
+
+    private String[] speakers;
+
+    @Setup
+    public void setup()
+    {
+        // Decisions are made by the benchmark, so use an executor which
+        // doesn't run them.
+        dsi = new DominantSpeakerIdentification<>(clock, new FakeScheduledExecutorService(clock));
+        speakers = new String[numSpeakers];
+        for (int i = 0; i < numSpeakers; i++)
+        {
+            speakers[i] = "speaker-" + i;
+        }
+        // Fill the level histories.
+        for (int i = 0; i < 50; i++)
+        {
+            changeLevels();
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void changeLevels()
+    {
+        clock.elapse(Duration.ofMillis(20));
+        for (int i = 0; i < numSpeakers; i++)
+        {
+            // A few speakers talk, the others are mostly quiet.
+            int level = i % 10 == 0 ? 40 + random.nextInt(88) : random.nextInt(30);
+
+            dsi.levelChanged(speakers[i], level);
+        }
+    }
+
+    @Benchmark
+    public Object makeDecision()
+    {
+        dsi.makeDecision(clock.millis());
+        return dsi.getDominantSpeaker();
+    }
+}
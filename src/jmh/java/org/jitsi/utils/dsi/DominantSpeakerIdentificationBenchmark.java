@@ -0,0 +1,92 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils.dsi;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks {@link DominantSpeakerIdentification#levelChanged}, which is
+ * called for every audio packet of a conference, from all benchmark threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DominantSpeakerIdentificationBenchmark
+{
+    @Param({"10", "100"})
+    public int numSpeakers;
+
+    private ScheduledExecutorService executor;
+
+    private DominantSpeakerIdentification<String> dsi;
+
+    private String[] speakers;
+
+    /**
+     * The speaker and level to report next, per thread.
+     */
+    @State(Scope.Thread)
+    public static class Levels
+    {
+        private final Random random = new Random();
+
+        private int next = 0;
+
+        int nextSpeaker(int numSpeakers)
+        {
+            next = next + 1 == numSpeakers ? 0 : next + 1;
+            return next;
+        }
+
+        int nextLevel()
+        {
+            return random.nextInt(128);
+        }
+    }
+
+    @Setup
+    public void setup()
+    {
+        executor = Executors.newSingleThreadScheduledExecutor();
+        dsi = new DominantSpeakerIdentification<>(Clock.systemUTC(), executor);
+        speakers = new String[numSpeakers];
+        for (int i = 0; i < numSpeakers; i++)
+        {
+            speakers[i] = "speaker-" + i;
+            dsi.levelChanged(speakers[i], 0);
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public Object levelChanged(Levels levels)
+    {
+        return dsi.levelChanged(
+            speakers[levels.nextSpeaker(numSpeakers)], levels.nextLevel());
+    }
+}
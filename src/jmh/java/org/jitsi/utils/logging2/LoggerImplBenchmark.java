@@ -0,0 +1,69 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils.logging2;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks the cost of logging calls on the packet path when the level is
+ * disabled, which should be close to zero and must not allocate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoggerImplBenchmark
+{
+    private Logger logger;
+
+    private final int ssrc = 12345;
+
+    @Setup
+    public void setup()
+    {
+        Logger parent = new LoggerImpl(LoggerImplBenchmark.class.getName(), java.util.logging.Level.INFO);
+        Map<String, String> context = new HashMap<>();
+        context.put("conf_name", "benchmark");
+        context.put("epId", "abcdef");
+        logger = parent.createChildLogger(LoggerImplBenchmark.class.getName(), context);
+    }
+
+    @Benchmark
+    public void debugDisabled()
+    {
+        logger.debug("Received packet");
+    }
+
+    @Benchmark
+    public void debugDisabledSupplier()
+    {
+        logger.debug(() -> "Received packet with ssrc " + ssrc);
+    }
+
+    @Benchmark
+    public void debugDisabledGuarded()
+    {
+        if (logger.isDebugEnabled())
+        {
+            logger.debug("Received packet with ssrc " + ssrc);
+        }
+    }
+}
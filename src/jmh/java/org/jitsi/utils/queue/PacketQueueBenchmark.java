@@ -0,0 +1,82 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils.queue;
+
+import java.time.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks adding packets to a {@link PacketQueue} from all benchmark
+ * threads, while its reader handles them on an executor. Unlike
+ * {@code PacketQueueBenchmarkTests}, this measures the cost on the producer
+ * side, which is what the threads adding packets pay.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PacketQueueBenchmark
+{
+    @Param({"LinkedBlockingQueue", "MpscRingBuffer"})
+    public String backend;
+
+    @Param({"false", "true"})
+    public boolean enableStatistics;
+
+    @Param({"1024"})
+    public int capacity;
+
+    private ExecutorService executor;
+
+    private PacketQueue<Object> queue;
+
+    private final Object packet = new Object();
+
+    @Setup
+    public void setup()
+    {
+        executor = Executors.newSingleThreadExecutor();
+        QueueBackend<Object> queueBackend
+            = "MpscRingBuffer".equals(backend)
+                ? new MpscRingBuffer<>(capacity)
+                : new LinkedBlockingQueueBackend<>(capacity);
+        queue = new PacketQueue<>(
+            queueBackend,
+            enableStatistics,
+            "PacketQueueBenchmark",
+            pkt -> true,
+            executor,
+            Clock.systemUTC(),
+            true);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        queue.close();
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public void add()
+    {
+        queue.add(packet);
+    }
+}
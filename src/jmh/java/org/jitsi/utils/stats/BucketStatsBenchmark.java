@@ -0,0 +1,83 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils.stats;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks adding values to the distributions which are updated per packet:
+ * {@link BucketStats} and {@link LogLinearHistogram}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BucketStatsBenchmark
+{
+    private final BucketStats bucketStats = new BucketStats(
+        Arrays.asList(0L, 2L, 5L, 20L, 50L, 200L, 500L, 1000L, Long.MAX_VALUE),
+        "_delay_ms",
+        " ms",
+        null);
+
+    private final LogLinearHistogram histogram
+        = new LogLinearHistogram(TimeUnit.MINUTES.toNanos(1));
+
+    /**
+     * The values to add, cycled through by each thread.
+     */
+    @State(Scope.Thread)
+    public static class Values
+    {
+        private final long[] values = new long[1024];
+
+        private int next = 0;
+
+        @Setup
+        public void setup()
+        {
+            Random random = new Random(1);
+            for (int i = 0; i < values.length; i++)
+            {
+                // Mostly small values, with a long tail.
+                values[i] = (long) Math.abs(random.nextGaussian() * 20);
+            }
+        }
+
+        long next()
+        {
+            next = (next + 1) & (values.length - 1);
+            return values[next];
+        }
+    }
+
+    @Benchmark
+    public void bucketStatsAddValue(Values values)
+    {
+        bucketStats.addValue(values.next());
+    }
+
+    @Benchmark
+    public void logLinearHistogramRecordValue(Values values)
+    {
+        histogram.recordValue(values.next() * 1_000_000);
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils.stats;
+
+import java.time.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks a single {@link RateTracker}, {@link ConcurrentRateTracker} or
+ * {@link RateStatistics} shared by all benchmark threads, like the trackers
+ * of a conference are shared by its packet-receiving threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RateTrackerBenchmark
+{
+    @Param({"RateTracker", "ConcurrentRateTracker", "RateStatistics"})
+    public String implementation;
+
+    private LongConsumer update;
+
+    private LongSupplier getRate;
+
+    @Setup
+    public void setup()
+    {
+        switch (implementation)
+        {
+        case "RateTracker":
+            RateTracker rateTracker = new RateTracker(Duration.ofSeconds(1));
+            update = count -> rateTracker.update(count, System.currentTimeMillis());
+            getRate = rateTracker::getRate;
+            break;
+        case "ConcurrentRateTracker":
+            ConcurrentRateTracker concurrentRateTracker
+                = new ConcurrentRateTracker(Duration.ofSeconds(1));
+            update = count -> concurrentRateTracker.update(count, System.currentTimeMillis());
+            getRate = concurrentRateTracker::getRate;
+            break;
+        case "RateStatistics":
+            RateStatistics rateStatistics = new RateStatistics();
+            update = count -> rateStatistics.update((int) count, System.currentTimeMillis());
+            getRate = rateStatistics::getRate;
+            break;
+        default:
+            throw new IllegalArgumentException(implementation);
+        }
+    }
+
+    @Benchmark
+    public void update()
+    {
+        update.accept(1200);
+    }
+
+    @Benchmark
+    public long getRate()
+    {
+        return getRate.getAsLong();
+    }
+}
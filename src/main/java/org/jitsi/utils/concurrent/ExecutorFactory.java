@@ -17,7 +17,9 @@
 package org.jitsi.utils.concurrent;
 
 import org.jitsi.utils.concurrent.*;
+import org.jitsi.utils.logging.*;
 
+import java.lang.reflect.*;
 import java.util.concurrent.*;
 
 /**
@@ -27,6 +29,13 @@ import java.util.concurrent.*;
  */
 public class ExecutorFactory
 {
+    /**
+     * The {@link Logger} used by the {@link ExecutorFactory} class for
+     * logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(ExecutorFactory.class);
+
     /**
      * Create {@link ScheduledExecutorService} with single executor thread
      * @param threadNamePrefix - name prefix for threads created by pool
@@ -153,4 +162,164 @@ public class ExecutorFactory
 
         return Executors.newCachedThreadPool(threadFactory);
     }
+
+    /**
+     * Creates an {@link ExecutorService} which runs each task on a new
+     * virtual thread, if the runtime supports them (Java 21+). Virtual threads
+     * do not hold a carrier thread while idle or parked, so this is suitable
+     * for large numbers of mostly idle tasks, e.g. one
+     * {@link org.jitsi.utils.queue.PacketQueue} per endpoint.
+     * <p>
+     * On older runtimes this falls back to
+     * {@link #createCachedThreadPool(String)}, i.e. platform threads which are
+     * re-used and released after an idle timeout.
+     *
+     * @param threadNamePrefix - name prefix for threads created by the
+     * executor
+     * @return pre-configured {@link ExecutorService}
+     * @see #isVirtualThreadSupported()
+     */
+    public static ExecutorService createVirtualThreadPerTaskExecutor(
+            String threadNamePrefix)
+    {
+        ThreadFactory threadFactory
+            = VirtualThreads.createThreadFactory(threadNamePrefix);
+        ExecutorService executor
+            = VirtualThreads.createThreadPerTaskExecutor(threadFactory);
+
+        return executor != null
+            ? executor : createCachedThreadPool(threadNamePrefix);
+    }
+
+    /**
+     * Checks whether the runtime supports virtual threads, i.e. whether
+     * {@link #createVirtualThreadPerTaskExecutor(String)} will use them.
+     * @return {@code true} if virtual threads are supported.
+     */
+    public static boolean isVirtualThreadSupported()
+    {
+        return VirtualThreads.SUPPORTED;
+    }
+
+    /**
+     * Accesses the virtual thread API (Java 21+) via reflection, since this
+     * library targets Java 11.
+     */
+    private static final class VirtualThreads
+    {
+        /**
+         * {@code Thread.ofVirtual()}, or {@code null} if not supported.
+         */
+        private static final Method OF_VIRTUAL;
+
+        /**
+         * {@code Thread.Builder.name(String, long)}.
+         */
+        private static final Method NAME;
+
+        /**
+         * {@code Thread.Builder.factory()}.
+         */
+        private static final Method FACTORY;
+
+        /**
+         * {@code Executors.newThreadPerTaskExecutor(ThreadFactory)}.
+         */
+        private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+        /**
+         * Whether virtual threads are supported and enabled.
+         */
+        private static final boolean SUPPORTED;
+
+        static
+        {
+            Method ofVirtual = null;
+            Method name = null;
+            Method factory = null;
+            Method newThreadPerTaskExecutor = null;
+            boolean supported = false;
+
+            try
+            {
+                Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+                ofVirtual = Thread.class.getMethod("ofVirtual");
+                name = builderClass.getMethod("name", String.class, long.class);
+                factory = builderClass.getMethod("factory");
+                newThreadPerTaskExecutor = Executors.class.getMethod(
+                    "newThreadPerTaskExecutor", ThreadFactory.class);
+
+                // Fails if virtual threads are a preview feature which is not
+                // enabled (Java 19 and 20).
+                ofVirtual.invoke(null);
+                supported = true;
+            }
+            catch (ReflectiveOperationException | RuntimeException e)
+            {
+                logger.debug("Virtual threads are not supported: " + e);
+            }
+
+            SUPPORTED = supported;
+            OF_VIRTUAL = supported ? ofVirtual : null;
+            NAME = supported ? name : null;
+            FACTORY = supported ? factory : null;
+            NEW_THREAD_PER_TASK_EXECUTOR
+                = supported ? newThreadPerTaskExecutor : null;
+        }
+
+        /**
+         * Creates a factory of virtual threads named with a prefix and a
+         * counter.
+         * @return the factory, or {@code null} if virtual threads are not
+         * supported.
+         */
+        static ThreadFactory createThreadFactory(String threadNamePrefix)
+        {
+            if (!SUPPORTED)
+            {
+                return null;
+            }
+
+            try
+            {
+                Object builder = OF_VIRTUAL.invoke(null);
+                if (threadNamePrefix != null && !threadNamePrefix.isEmpty())
+                {
+                    builder = NAME.invoke(builder, threadNamePrefix, 0L);
+                }
+                return (ThreadFactory) FACTORY.invoke(builder);
+            }
+            catch (ReflectiveOperationException e)
+            {
+                logger.warn("Failed to create a virtual thread factory", e);
+                return null;
+            }
+        }
+
+        /**
+         * Creates an executor which starts a new thread from a factory for
+         * each task.
+         * @return the executor, or {@code null} if {@code threadFactory} is
+         * {@code null} or virtual threads are not supported.
+         */
+        static ExecutorService createThreadPerTaskExecutor(
+            ThreadFactory threadFactory)
+        {
+            if (threadFactory == null)
+            {
+                return null;
+            }
+
+            try
+            {
+                return (ExecutorService)
+                    NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, threadFactory);
+            }
+            catch (ReflectiveOperationException e)
+            {
+                logger.warn("Failed to create a virtual thread executor", e);
+                return null;
+            }
+        }
+    }
 }
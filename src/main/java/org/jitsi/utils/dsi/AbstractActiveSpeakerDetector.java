@@ -34,6 +34,13 @@ public abstract class AbstractActiveSpeakerDetector<T>
      */
     private final List<ActiveSpeakerChangedListener<T>> listeners = new LinkedList<>();
 
+    /**
+     * The identifiers of the speakers registered with
+     * {@link #registerSpeaker(Object)}, indexed by handle. Unregistered
+     * handles are <tt>null</tt>.
+     */
+    private final List<T> registeredSpeakers = new ArrayList<>();
+
     /**
      * {@inheritDoc}
      *
@@ -58,6 +65,85 @@ public abstract class AbstractActiveSpeakerDetector<T>
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Reports each level via {@link #levelChanged(Object, int)}, so the time
+     * of the levels is that of the call. Implementations which support
+     * batches natively should override it, along with
+     * {@link #registerSpeaker(Object)} and {@link #unregisterSpeaker(int)}.
+     */
+    @Override
+    public int levelsChanged(int[] handles, int[] levels, int count, long timeMs)
+    {
+        int skipped = 0;
+
+        for (int i = 0; i < count; i++)
+        {
+            T id;
+
+            synchronized (registeredSpeakers)
+            {
+                int handle = handles[i];
+
+                id = handle >= 0 && handle < registeredSpeakers.size() ? registeredSpeakers.get(handle) : null;
+            }
+            if (id == null)
+            {
+                skipped++;
+            }
+            else
+            {
+                levelChanged(id, levels[i]);
+            }
+        }
+        return skipped;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int registerSpeaker(T id)
+    {
+        Objects.requireNonNull(id, "id");
+
+        synchronized (registeredSpeakers)
+        {
+            int handle = registeredSpeakers.indexOf(id);
+
+            if (handle < 0)
+            {
+                handle = registeredSpeakers.indexOf(null);
+                if (handle < 0)
+                {
+                    handle = registeredSpeakers.size();
+                    registeredSpeakers.add(id);
+                }
+                else
+                {
+                    registeredSpeakers.set(handle, id);
+                }
+            }
+            return handle;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void unregisterSpeaker(int handle)
+    {
+        synchronized (registeredSpeakers)
+        {
+            if (handle >= 0 && handle < registeredSpeakers.size())
+            {
+                registeredSpeakers.set(handle, null);
+            }
+        }
+    }
+
     /**
      * Notifies the <tt>ActiveSpeakerChangedListener</tt>s registered with this
      * instance that the active speaker in multipoint conference associated with
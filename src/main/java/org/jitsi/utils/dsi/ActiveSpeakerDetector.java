@@ -57,6 +57,63 @@ public interface ActiveSpeakerDetector<T>
      */
     public SpeakerRanking levelChanged(T id, int level);
 
+    /**
+     * Registers a stream/speaker so that its audio levels can be reported in
+     * batches via {@link #levelsChanged(int[], int[], int, long)}. The
+     * speaker is kept until it is unregistered, even when it is idle.
+     *
+     * @param id the identifier of the stream/speaker
+     * @return a small non-negative integer which identifies the speaker in
+     * calls to {@link #levelsChanged(int[], int[], int, long)} until it is
+     * unregistered. Registering the same speaker again returns the same
+     * handle.
+     * @throws UnsupportedOperationException if this detector does not
+     * support batches, which is the case unless it overrides this method
+     * (e.g. by extending {@link AbstractActiveSpeakerDetector})
+     */
+    public default int registerSpeaker(T id)
+    {
+        throw new UnsupportedOperationException(
+            getClass().getName() + " does not support batches of levels");
+    }
+
+    /**
+     * Unregisters a stream/speaker registered with
+     * {@link #registerSpeaker(Object)}. Its handle may be reused by a
+     * speaker registered later.
+     *
+     * @param handle the handle of the stream/speaker
+     */
+    public default void unregisterSpeaker(int handle)
+    {
+    }
+
+    /**
+     * Notifies this <tt>ActiveSpeakerDetector</tt> about the latest/current
+     * audio levels of a number of registered streams/speakers at once, e.g.
+     * all the levels received in a batch of packets. The levels of handles
+     * which are not registered, e.g. because they were unregistered
+     * concurrently, are skipped.
+     *
+     * @param handles the handles of the streams/speakers, as returned by
+     * {@link #registerSpeaker(Object)}
+     * @param levels the audio levels, with <tt>levels[i]</tt> being the level
+     * of the stream/speaker with handle <tt>handles[i]</tt>
+     * @param count the number of levels to read from <tt>handles</tt> and
+     * <tt>levels</tt>
+     * @param timeMs the time at which the levels were received, in
+     * milliseconds, as read from the clock of this detector. Detectors may
+     * compare it with times of their own, e.g. to discard late levels, so a
+     * time from a different clock may cause levels to be silently ignored.
+     * @return the number of levels which were skipped because their handles
+     * are not registered
+     */
+    public default int levelsChanged(int[] handles, int[] levels, int count, long timeMs)
+    {
+        // Without registerSpeaker() there are no registered handles.
+        return count;
+    }
+
     /**
      * Removes a listener to no longer be notified by this active speaker
      * detector when the active stream changes.
@@ -0,0 +1,406 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils.dsi;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.jetbrains.annotations.*;
+import org.jitsi.utils.concurrent.*;
+import org.jitsi.utils.logging2.*;
+
+/**
+ * Runs the periodic decisions of many {@link DominantSpeakerIdentification}s
+ * (e.g. all the conferences of a bridge) from a single timer, instead of
+ * scheduling a task per instance on an executor.
+ * <p>
+ * Decisions are kept in a timing wheel with a slot per tick. Every tick, the
+ * decisions which are due are taken from the wheel and split among a number of
+ * worker threads, and then put back in the wheel according to when they are
+ * next due. Delays are rounded up to whole ticks. A decision is dropped from
+ * the wheel when its instance becomes idle (or is garbage collected), without
+ * a future or any other per-instance state in the scheduler.
+ * <p>
+ * Pass the same instance to all {@link DominantSpeakerIdentification}s, see
+ * {@link DominantSpeakerIdentification#DominantSpeakerIdentification(Clock,
+ * DecisionScheduler, long)}.
+ */
+public class DecisionScheduler
+{
+    /**
+     * The default tick interval in milliseconds, which is a quarter of the
+     * interval at which idle levels are timed out.
+     */
+    private static final long DEFAULT_TICK_INTERVAL_MS = 10;
+
+    /**
+     * The number of slots in the wheel. Decisions which are due further than
+     * this many ticks in the future stay in their slot for several rotations.
+     */
+    private static final int WHEEL_SIZE = 128;
+
+    private static final Logger logger = new LoggerImpl(DecisionScheduler.class.getName());
+
+    private final Clock clock;
+
+    /**
+     * The executor on which decisions are run.
+     */
+    private final Executor workers;
+
+    /**
+     * The number of batches in which the decisions due in a tick are split.
+     */
+    private final int numWorkers;
+
+    private final long tickIntervalMs;
+
+    /**
+     * The executors which were created by this instance and are shut down by
+     * {@link #stop()}.
+     */
+    private final ExecutorService[] ownedExecutors;
+
+    private final ScheduledFuture<?> tickFuture;
+
+    /**
+     * The slots of the wheel, each one a linked list of the {@link Task}s
+     * which are due at a tick which maps to the slot. Guarded by itself,
+     * along with the fields which follow it.
+     */
+    private final Task[] wheel = new Task[WHEEL_SIZE];
+
+    /**
+     * The last tick whose slot has been processed.
+     */
+    private long lastTick;
+
+    /**
+     * The number of {@link Task}s in {@link #wheel}.
+     */
+    private int size = 0;
+
+    /**
+     * Whether {@link #stop()} has been called.
+     */
+    private boolean stopped = false;
+
+    /**
+     * Initializes a new <tt>DecisionScheduler</tt> with its own timer thread,
+     * and a specific number of worker threads.
+     *
+     * @param numWorkers the number of threads which run decisions
+     */
+    public DecisionScheduler(int numWorkers)
+    {
+        this(numWorkers, Duration.ofMillis(DEFAULT_TICK_INTERVAL_MS));
+    }
+
+    /**
+     * Initializes a new <tt>DecisionScheduler</tt> with its own timer thread,
+     * and a specific number of worker threads.
+     *
+     * @param numWorkers the number of threads which run decisions
+     * @param tickInterval the interval of the timer
+     */
+    public DecisionScheduler(int numWorkers, Duration tickInterval)
+    {
+        this(
+            Clock.systemUTC(),
+            Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("dsi-scheduler", true)),
+            ExecutorFactory.createFixedThreadPool(numWorkers, "dsi-decision"),
+            numWorkers,
+            tickInterval,
+            true);
+    }
+
+    /**
+     * Initializes a new <tt>DecisionScheduler</tt> which uses specific
+     * executors, which are not shut down by {@link #stop()}.
+     *
+     * @param clock the clock to use
+     * @param timer the executor on which the timer is scheduled
+     * @param workers the executor on which decisions are run
+     * @param numWorkers the number of batches in which the decisions due in a
+     * tick are split, i.e. the number of threads of {@code workers} which are
+     * used
+     * @param tickInterval the interval of the timer
+     */
+    public DecisionScheduler(
+        Clock clock,
+        ScheduledExecutorService timer,
+        Executor workers,
+        int numWorkers,
+        Duration tickInterval)
+    {
+        this(clock, timer, workers, numWorkers, tickInterval, false);
+    }
+
+    private DecisionScheduler(
+        Clock clock,
+        ScheduledExecutorService timer,
+        Executor workers,
+        int numWorkers,
+        Duration tickInterval,
+        boolean ownExecutors)
+    {
+        if (numWorkers < 1)
+        {
+            throw new IllegalArgumentException("numWorkers must be positive: " + numWorkers);
+        }
+        if (tickInterval.toMillis() < 1)
+        {
+            throw new IllegalArgumentException("tickInterval must be at least 1 ms: " + tickInterval);
+        }
+
+        this.clock = clock;
+        this.workers = workers;
+        this.numWorkers = numWorkers;
+        this.tickIntervalMs = tickInterval.toMillis();
+        this.ownedExecutors = ownExecutors
+            ? new ExecutorService[] { timer, (ExecutorService) workers }
+            : new ExecutorService[0];
+        this.lastTick = Math.floorDiv(clock.millis(), tickIntervalMs);
+        this.tickFuture = timer.scheduleAtFixedRate(
+            this::tick, tickIntervalMs, tickIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Gets the number of decisions which are scheduled, i.e. the number of
+     * active {@link DominantSpeakerIdentification}s which use this scheduler,
+     * not counting those whose decisions are running.
+     */
+    public int getScheduledCount()
+    {
+        synchronized (wheel)
+        {
+            return size;
+        }
+    }
+
+    /**
+     * Stops the timer, and shuts down the executors created by this instance.
+     * Scheduled decisions no longer run, and no new decisions may be
+     * scheduled.
+     */
+    public void stop()
+    {
+        synchronized (wheel)
+        {
+            stopped = true;
+            Arrays.fill(wheel, null);
+            size = 0;
+        }
+        tickFuture.cancel(false);
+        for (ExecutorService executor : ownedExecutors)
+        {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Schedules a {@link Task} to run after a delay, rounded up to a tick.
+     *
+     * @param task the task, which must not be scheduled already
+     * @param delayMs the delay in milliseconds
+     * @throws IllegalStateException if this scheduler has been stopped
+     */
+    void schedule(@NotNull Task task, long delayMs)
+    {
+        if (!tryToSchedule(task, delayMs))
+        {
+            throw new IllegalStateException("The scheduler has been stopped");
+        }
+    }
+
+    /**
+     * Schedules a {@link Task} to run after a delay, rounded up to a tick,
+     * unless this scheduler has been stopped.
+     *
+     * @param task the task, which must not be scheduled already
+     * @param delayMs the delay in milliseconds
+     * @return {@code false} if this scheduler has been stopped
+     */
+    private boolean tryToSchedule(@NotNull Task task, long delayMs)
+    {
+        long dueTick = Math.floorDiv(clock.millis() + delayMs + tickIntervalMs - 1, tickIntervalMs);
+
+        synchronized (wheel)
+        {
+            if (stopped)
+            {
+                return false;
+            }
+            if (dueTick <= lastTick)
+            {
+                dueTick = lastTick + 1;
+            }
+            task.dueTick = dueTick;
+
+            int slot = (int) Math.floorMod(dueTick, (long) WHEEL_SIZE);
+
+            task.next = wheel[slot];
+            wheel[slot] = task;
+            size++;
+        }
+        return true;
+    }
+
+    /**
+     * Takes the {@link Task}s which are due from the wheel, and runs them on
+     * the workers in {@link #numWorkers} batches. Invoked by the timer, which
+     * is cancelled if this throws, so a batch which the workers fail to accept
+     * is run on the calling thread instead of being lost.
+     */
+    void tick()
+    {
+        long now = Math.floorDiv(clock.millis(), tickIntervalMs);
+        Task[] batches = new Task[numWorkers];
+        int count = 0;
+
+        synchronized (wheel)
+        {
+            // If the timer is late, process all the ticks since the last one,
+            // but each slot only once.
+            long first = Math.max(lastTick + 1, now - WHEEL_SIZE + 1);
+
+            for (long t = first; t <= now; t++)
+            {
+                int slot = (int) Math.floorMod(t, (long) WHEEL_SIZE);
+                Task previous = null;
+                Task task = wheel[slot];
+
+                while (task != null)
+                {
+                    Task next = task.next;
+
+                    if (task.dueTick <= now)
+                    {
+                        if (previous == null)
+                        {
+                            wheel[slot] = next;
+                        }
+                        else
+                        {
+                            previous.next = next;
+                        }
+                        size--;
+
+                        int batch = count++ % numWorkers;
+
+                        task.next = batches[batch];
+                        batches[batch] = task;
+                    }
+                    else
+                    {
+                        previous = task;
+                    }
+                    task = next;
+                }
+            }
+            if (now > lastTick)
+            {
+                lastTick = now;
+            }
+        }
+
+        for (Task batch : batches)
+        {
+            if (batch != null)
+            {
+                try
+                {
+                    workers.execute(() -> run(batch));
+                }
+                catch (Throwable t)
+                {
+                    if (isStopped())
+                    {
+                        return;
+                    }
+                    logger.warn("Failed to submit decisions, running them on the timer thread.", t);
+                    run(batch);
+                }
+            }
+        }
+    }
+
+    private boolean isStopped()
+    {
+        synchronized (wheel)
+        {
+            return stopped;
+        }
+    }
+
+    /**
+     * Runs a batch of {@link Task}s, and schedules those which are to run
+     * again, unless this scheduler has been stopped in the meantime.
+     *
+     * @param batch the first task of the batch, linked to the others
+     */
+    private void run(Task batch)
+    {
+        for (Task task = batch; task != null; )
+        {
+            Task next = task.next;
+            long delay;
+
+            task.next = null;
+            try
+            {
+                delay = task.runOnce();
+            }
+            catch (Throwable t)
+            {
+                logger.warn("Failed to run a decision, dropping it.", t);
+                delay = -1;
+            }
+            if (delay >= 0)
+            {
+                tryToSchedule(task, delay);
+            }
+            task = next;
+        }
+    }
+
+    /**
+     * A periodic task run by a {@link DecisionScheduler}. The scheduling state
+     * is kept in the task itself, so that the scheduler doesn't allocate.
+     */
+    abstract static class Task
+    {
+        /**
+         * The tick at which this task is due. Guarded by the wheel of the
+         * scheduler.
+         */
+        private long dueTick;
+
+        /**
+         * The next task in the same slot of the wheel, or in the same batch.
+         */
+        private Task next;
+
+        /**
+         * Runs this task once.
+         *
+         * @return the delay in milliseconds until this task is to run again,
+         * or a negative value if it is not to run again
+         */
+        abstract long runOnce();
+    }
+}
@@ -186,9 +186,65 @@ public class DominantSpeakerIdentification<T>
     private static final ScheduledExecutorService DEFAULT_EXECUTOR
             = Executors.newScheduledThreadPool(1, new CustomizableThreadFactory("dsi", true));
 
+    /**
+     * The speech activity scores for the immediate, medium and long
+     * time-intervals, respectively, indexed by the speech activity in the
+     * time-interval (i.e. the value of {@link Speaker#immediates},
+     * {@link Speaker#mediums} or {@link Speaker#longs}), which is bounded by
+     * {@link #N1}, {@link #N2} and {@link #N3}, respectively.
+     */
+    private static final double[][] SPEECH_ACTIVITY_SCORES
+        = {
+            computeSpeechActivityScores(N1, 0.78),
+            computeSpeechActivityScores(N2, 24),
+            computeSpeechActivityScores(N3, 47)
+        };
+
+    /**
+     * The relative speech activities (i.e. the logarithm of the ratio of the
+     * speech activity scores) of a <tt>Speaker</tt> and the dominant speaker,
+     * indexed by time-interval and by the speech activities of the
+     * <tt>Speaker</tt> and the dominant speaker in the time-interval.
+     */
+    private static final double[][][] RELATIVE_SPEECH_ACTIVITIES = new double[3][][];
+
+    /**
+     * The relative speech activities of a <tt>Speaker</tt> during a silence
+     * period, i.e. compared to {@link #MIN_SPEECH_ACTIVITY_SCORE}, indexed by
+     * time-interval and by the speech activity of the <tt>Speaker</tt> in the
+     * time-interval.
+     */
+    private static final double[][] RELATIVE_SPEECH_ACTIVITIES_IN_SILENCE = new double[3][];
+
+    /**
+     * The immediate speech activity of each audio level which is not
+     * considered silence.
+     */
+    private static final byte[] IMMEDIATES = new byte[MAX_LEVEL + 1];
+
     static
     {
         DEBUG = logger.isDebugEnabled();
+
+        for (int interval = 0; interval < SPEECH_ACTIVITY_SCORES.length; interval++)
+        {
+            double[] scores = SPEECH_ACTIVITY_SCORES[interval];
+
+            RELATIVE_SPEECH_ACTIVITIES[interval] = new double[scores.length][scores.length];
+            RELATIVE_SPEECH_ACTIVITIES_IN_SILENCE[interval] = new double[scores.length];
+            for (int i = 0; i < scores.length; i++)
+            {
+                for (int j = 0; j < scores.length; j++)
+                {
+                    RELATIVE_SPEECH_ACTIVITIES[interval][i][j] = Math.log(scores[i] / scores[j]);
+                }
+                RELATIVE_SPEECH_ACTIVITIES_IN_SILENCE[interval][i] = Math.log(scores[i] / MIN_SPEECH_ACTIVITY_SCORE);
+            }
+        }
+        for (int level = MIN_LEVEL; level <= MAX_LEVEL; level++)
+        {
+            IMMEDIATES[level] = (byte) (level / N1_SUBUNIT_LENGTH);
+        }
     }
 
     /**
@@ -232,24 +288,38 @@ public class DominantSpeakerIdentification<T>
 
         for (int b = 0, l = 0; b < bigLength; b++)
         {
-            byte sum = 0;
+            int sum = 0;
 
+            // Branch-free, so that the loop doesn't suffer from mispredictions
+            // when the levels vary.
             for (int lEnd = l + littleLengthPerBig; l < lEnd; l++)
             {
-                if (littles[l] > threshold)
-                {
-                    sum++;
-                }
-            }
-            if (bigs[b] != sum)
-            {
-                bigs[b] = sum;
-                changed = true;
+                sum += (threshold - littles[l]) >>> 31;
             }
+            changed |= bigs[b] != sum;
+            bigs[b] = (byte) sum;
         }
         return changed;
     }
 
+    /**
+     * Computes the speech activity scores of all the possible speech
+     * activities in a time-interval, see
+     * {@link #computeSpeechActivityScore(int, int, double)}.
+     *
+     * @return the speech activity scores, indexed by speech activity
+     */
+    private static double[] computeSpeechActivityScores(int nR, double lambda)
+    {
+        double[] scores = new double[nR + 1];
+
+        for (int vL = 0; vL <= nR; vL++)
+        {
+            scores[vL] = computeSpeechActivityScore(vL, nR, lambda);
+        }
+        return scores;
+    }
+
     private static double computeSpeechActivityScore(
             int vL,
             int nR,
@@ -270,12 +340,12 @@ public class DominantSpeakerIdentification<T>
     /**
      * The background task which repeatedly makes the (global) decision about speaker switches.
      */
-    private DecisionMaker decisionMaker;
+    private volatile DecisionMaker decisionMaker;
 
     /**
      * The identifier of the dominant speaker.
      */
-    private T dominantId;
+    private volatile T dominantId;
 
     /**
      * The last/latest time at which this <tt>DominantSpeakerIdentification</tt>
@@ -289,7 +359,7 @@ public class DominantSpeakerIdentification<T>
      * The time in milliseconds of the most recent (audio) level report or
      * measurement (regardless of the <tt>Speaker</tt>).
      */
-    private long lastLevelChangedTime;
+    private volatile long lastLevelChangedTime;
 
     /**
      * The last/latest time at which this <tt>DominantSpeakerIdentification</tt>
@@ -314,6 +384,33 @@ public class DominantSpeakerIdentification<T>
      */
     private final Map<T, Speaker<T>> speakers = new HashMap<>();
 
+    /**
+     * A copy of {@link #speakers}, which is replaced when a <tt>Speaker</tt>
+     * is added or removed, so that audio levels are processed without taking
+     * the lock of this instance.
+     */
+    private volatile Map<T, Speaker<T>> speakersById = Collections.emptyMap();
+
+    /**
+     * The <tt>Speaker</tt>s registered with {@link #registerSpeaker(Object)},
+     * indexed by handle. Unregistered handles are <tt>null</tt>. Like
+     * {@link #speakersById}, it is replaced when a <tt>Speaker</tt> is
+     * registered or unregistered, under the lock of this instance.
+     */
+    private volatile Speaker<T>[] speakersByHandle = newSpeakerArray(0);
+
+    /**
+     * Whether decisions only consider the dominant speaker and the loudest
+     * speakers, see {@link #setDecisionCandidatesLoudestOnly(boolean)}.
+     */
+    private boolean decisionCandidatesLoudestOnly = false;
+
+    /**
+     * The candidates of the current decision, when
+     * {@link #decisionCandidatesLoudestOnly}. Reused across decisions.
+     */
+    private Speaker<T>[] decisionCandidates = newSpeakerArray(1);
+
     /**
      * The special ID to use to indicate silence (no speakers).
      *
@@ -327,19 +424,55 @@ public class DominantSpeakerIdentification<T>
      */
     private final long timeoutToSilenceInterval;
 
+    /**
+     * The lock which guards the loudest speaker list, i.e. {@link #loudest}
+     * and the fields which follow it, and the energy ranking options. It is
+     * separate from the lock of this instance, which is held during decisions.
+     */
+    private final Object loudestSyncRoot = new Object();
+
     /**
      * The <tt>Speaker</tt>s in the multipoint conference with the highest
-     * current energy levels.
+     * current energy levels, in decreasing order of energy score, in the
+     * first {@link #loudestCount} elements. Each one knows its index in
+     * {@link Speaker#loudestIndex}. Has room for one more than
+     * {@link #numLoudestToTrack} speakers, so that a speaker can be inserted
+     * before the quietest one is dropped.
      */
-    private final ArrayList<Speaker<T>> loudest = new ArrayList<>();
+    private Speaker<T>[] loudest = newSpeakerArray(1);
+
+    /**
+     * The energy scores with which the <tt>Speaker</tt>s in {@link #loudest}
+     * were ranked.
+     */
+    private int[] loudestScores = new int[1];
+
+    /**
+     * The number of <tt>Speaker</tt>s in {@link #loudest}.
+     */
+    private int loudestCount = 0;
+
+    /**
+     * A lower bound of the times of the last levels of the <tt>Speaker</tt>s
+     * in {@link #loudest}, which avoids looking for expired speakers when none
+     * of them can have expired.
+     */
+    private long loudestMinLastLevelChangedTime = Long.MAX_VALUE;
 
     private final Clock clock;
 
     /**
-     * The executor used to schedule {@link #decisionMaker}.
+     * The executor used to schedule {@link #decisionMaker}, if
+     * {@link #scheduler} is {@code null}.
      */
     private final ScheduledExecutorService executor;
 
+    /**
+     * The scheduler shared with other instances used to schedule
+     * {@link #decisionMaker}, if any.
+     */
+    private final DecisionScheduler scheduler;
+
     /**
      * The number of current loudest speakers to keep track of.
      */
@@ -354,7 +487,7 @@ public class DominantSpeakerIdentification<T>
     /**
      * Alpha factor for exponential smoothing of energy values, multiplied by 100.
      */
-    private int energyAlphaPct = 50;
+    private volatile int energyAlphaPct = 50;
 
     /**
      * Initializes a new <tt>DominantSpeakerIdentification</tt> instance.
@@ -383,9 +516,34 @@ public class DominantSpeakerIdentification<T>
      * non-null (as long as there are any speakers in the conference).
      */
     public DominantSpeakerIdentification(Clock clock, ScheduledExecutorService executor, long silenceTimeout)
+    {
+        this(clock, executor, null, silenceTimeout);
+    }
+
+    /**
+     * Initializes a new <tt>DominantSpeakerIdentification</tt> instance whose
+     * periodic decisions are run by a {@link DecisionScheduler}, which is
+     * meant to be shared by many instances.
+     *
+     * @param clock The clock to use
+     * @param scheduler The scheduler which runs the periodic decision-making.
+     * @param silenceTimeout the interval of no speech after which we switch to silence, see
+     * {@link #DominantSpeakerIdentification(Clock, ScheduledExecutorService, long)}.
+     */
+    public DominantSpeakerIdentification(Clock clock, @NotNull DecisionScheduler scheduler, long silenceTimeout)
+    {
+        this(clock, null, scheduler, silenceTimeout);
+    }
+
+    private DominantSpeakerIdentification(
+        Clock clock,
+        ScheduledExecutorService executor,
+        DecisionScheduler scheduler,
+        long silenceTimeout)
     {
         this.clock = clock;
         this.executor = executor;
+        this.scheduler = scheduler;
         this.timeoutToSilenceInterval = silenceTimeout;
         enableSilence = silenceTimeout > 0;
     }
@@ -393,17 +551,55 @@ public class DominantSpeakerIdentification<T>
     /**
      * Set energy ranking options
      */
-    public synchronized void setLoudestConfig(int numLoudestToTrack_, int energyExpireTimeMs_, int energyAlphaPct_)
+    public void setLoudestConfig(int numLoudestToTrack_, int energyExpireTimeMs_, int energyAlphaPct_)
     {
-        numLoudestToTrack = numLoudestToTrack_;
-        energyExpireTimeMs = energyExpireTimeMs_;
-        energyAlphaPct = energyAlphaPct_;
-        logger.trace(() -> "numLoudestToTrack = " + numLoudestToTrack);
-        logger.trace(() -> "energyExpireTimeMs = " + energyExpireTimeMs);
-        logger.trace(() -> "energyAlphaPct = " + energyAlphaPct);
-
-        while (loudest.size() > numLoudestToTrack)
-            loudest.remove(numLoudestToTrack);
+        synchronized (loudestSyncRoot)
+        {
+            numLoudestToTrack = numLoudestToTrack_;
+            energyExpireTimeMs = energyExpireTimeMs_;
+            energyAlphaPct = energyAlphaPct_;
+            logger.trace(() -> "numLoudestToTrack = " + numLoudestToTrack);
+            logger.trace(() -> "energyExpireTimeMs = " + energyExpireTimeMs);
+            logger.trace(() -> "energyAlphaPct = " + energyAlphaPct);
+
+            Speaker<T>[] newLoudest = newSpeakerArray(numLoudestToTrack + 1);
+            int[] newLoudestScores = new int[numLoudestToTrack + 1];
+            int newLoudestCount = Math.min(loudestCount, numLoudestToTrack);
+
+            System.arraycopy(loudest, 0, newLoudest, 0, newLoudestCount);
+            System.arraycopy(loudestScores, 0, newLoudestScores, 0, newLoudestCount);
+            for (int i = newLoudestCount; i < loudestCount; i++)
+            {
+                loudest[i].loudestIndex = -1;
+            }
+            loudest = newLoudest;
+            loudestScores = newLoudestScores;
+            loudestCount = newLoudestCount;
+        }
+    }
+
+    /**
+     * Sets whether decisions only consider the dominant speaker and the
+     * speakers in the loudest speaker list (see
+     * {@link #setLoudestConfig(int, int, int)}) as candidates, as opposed to
+     * all speakers. This makes the cost of a decision independent of the
+     * number of speakers, which matters in very large conferences, at the
+     * expense of ignoring speakers who are not currently among the loudest.
+     * Has no effect if the loudest speakers are not tracked.
+     * <p>
+     * It also changes who is nominated when there is no dominant speaker: the
+     * loudest speaker, instead of an arbitrary one (the first in the order of
+     * the speakers map).
+     */
+    public synchronized void setDecisionCandidatesLoudestOnly(boolean decisionCandidatesLoudestOnly)
+    {
+        this.decisionCandidatesLoudestOnly = decisionCandidatesLoudestOnly;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> DominantSpeakerIdentification<T>.Speaker<T>[] newSpeakerArray(int length)
+    {
+        return (DominantSpeakerIdentification<T>.Speaker<T>[]) new DominantSpeakerIdentification<?>.Speaker<?>[length];
     }
 
     /**
@@ -462,7 +658,10 @@ public class DominantSpeakerIdentification<T>
                     // id
                     speakerJSONObject.put("id", speaker.id.toString());
                     // levels
-                    speakerJSONObject.put("levels", speaker.getLevels());
+                    synchronized (speaker)
+                    {
+                        speakerJSONObject.put("levels", speaker.getLevels());
+                    }
                     speakersArray.add(speakerJSONObject);
                 }
                 jsonObject.put("speakers", speakersArray);
@@ -495,113 +694,204 @@ public class DominantSpeakerIdentification<T>
      * @return the <tt>Speaker</tt> in this multipoint conference identified by {@code id}.
      */
     @NotNull
-    private synchronized Speaker<T> getOrCreateSpeaker(T id)
+    private Speaker<T> getOrCreateSpeaker(T id)
     {
-        Speaker<T> speaker = speakers.get(id);
+        Speaker<T> speaker = speakersById.get(id);
 
-        if (speaker == null)
+        if (speaker != null)
         {
+            return speaker;
+        }
+        synchronized (this)
+        {
+            speaker = speakers.get(id);
+            if (speaker != null)
+            {
+                return speaker;
+            }
+
             speaker = new Speaker<>(id);
             speakers.put(id, speaker);
+            speakersById = new HashMap<>(speakers);
 
             // Since we've created a new Speaker in the multipoint conference,
             // we'll very likely need to make a decision whether there have been
             // speaker switch events soon.
             maybeStartDecisionMaker();
+            return speaker;
         }
-        return speaker;
     }
 
     /**
-     * Update loudest speaker list.
+     * Update loudest speaker list. Must be called with {@link #loudestSyncRoot}
+     * held.
      * @param speaker the speaker with a new energy level
      * @param level the energy level
+     * @param energyScore the energy score of the speaker, updated with
+     * {@code level}
      * @param now the current time
      * @return The current ranking statistics.
      */
-    private synchronized SpeakerRanking updateLoudestList(Speaker<T> speaker, int level, long now)
+    private SpeakerRanking updateLoudestList(Speaker<T> speaker, int level, int energyScore, long now)
     {
+        T dominantId = this.dominantId;
         boolean isDominant = dominantId != null && dominantId.equals(speaker.id);
 
         if (level < 0)
         {
             /* Ignore this level, it is too old. Just gather the stats. */
-            int rank = 0;
-            while (rank < loudest.size() && loudest.get(rank) != speaker)
-                ++rank;
+            int rank = speaker.loudestIndex >= 0 ? speaker.loudestIndex : loudestCount;
 
-            return new SpeakerRanking(isDominant, rank, speaker.energyScore);
+            return SpeakerRanking.of(isDominant, rank, energyScore);
         }
 
-        /* exponential smoothing. round to nearest. */
-        speaker.energyScore = (energyAlphaPct * level + (100 - energyAlphaPct) * speaker.energyScore + 50) / 100;
-
         if (numLoudestToTrack == 0)
-            return new SpeakerRanking(isDominant, 0, speaker.energyScore);
+            return SpeakerRanking.of(isDominant, 0, energyScore);
 
         long oldestValid = now - energyExpireTimeMs;
 
-        logger.trace(() -> "Want to add " + speaker.id.toString()
-            + " with score " + speaker.energyScore + ". Last level = " + level + ".");
+        if (logger.isTraceEnabled())
+        {
+            logger.trace("Want to add " + speaker.id.toString()
+                + " with score " + energyScore + ". Last level = " + level + ".");
+        }
 
-        int i = 0;
-        while (i < loudest.size())
+        if (loudestMinLastLevelChangedTime < oldestValid)
         {
-            Speaker<T> cur = loudest.get(i);
-            if (cur.getLastLevelChangedTime() < oldestValid)
-            {
-                logger.trace(() -> "Removing " + cur.id.toString() + ". old.");
-                loudest.remove(i);
-                continue;
-            }
-            if (cur == speaker)
+            removeExpiredLoudest(oldestValid);
+        }
+        if (speaker.loudestIndex >= 0)
+        {
+            if (logger.isTraceEnabled())
             {
-                logger.trace(() -> "Removing " + cur.id.toString() + ". same.");
-                loudest.remove(i);
-                continue;
+                logger.trace("Removing " + speaker.id.toString() + ". same.");
             }
-            ++i;
+            removeLoudest(speaker.loudestIndex);
         }
 
+        // The list is sorted by decreasing energy score, and a speaker is
+        // ranked after the speakers with the same score.
         int rank = 0;
-        while (rank < loudest.size())
+        int end = loudestCount;
+        while (rank < end)
         {
-            Speaker<T> cur = loudest.get(rank);
-            if (cur.energyScore < speaker.energyScore)
-                break;
-            ++rank;
+            int mid = (rank + end) >>> 1;
+            if (loudestScores[mid] < energyScore)
+                end = mid;
+            else
+                rank = mid + 1;
         }
 
         if (rank < numLoudestToTrack)
         {
-            final int pos = rank;
-            logger.trace(() -> "Adding " + speaker.id.toString() + " at position " + pos + ".");
-            loudest.add(rank, speaker);
+            if (logger.isTraceEnabled())
+            {
+                logger.trace("Adding " + speaker.id.toString() + " at position " + rank + ".");
+            }
+            System.arraycopy(loudest, rank, loudest, rank + 1, loudestCount - rank);
+            System.arraycopy(loudestScores, rank, loudestScores, rank + 1, loudestCount - rank);
+            loudest[rank] = speaker;
+            loudestScores[rank] = energyScore;
+            loudestCount++;
+            for (int i = rank; i < loudestCount; i++)
+            {
+                loudest[i].loudestIndex = i;
+            }
+            if (now < loudestMinLastLevelChangedTime)
+            {
+                loudestMinLastLevelChangedTime = now;
+            }
 
-            if (loudest.size() > numLoudestToTrack)
-                loudest.remove(numLoudestToTrack);
+            if (loudestCount > numLoudestToTrack)
+                removeLoudest(numLoudestToTrack);
         }
 
         if (logger.isTraceEnabled())
         {
-            i = 0;
-            while (i < loudest.size())
+            for (int i = 0; i < loudestCount; i++)
             {
-                Speaker<T> cur = loudest.get(i);
-                logger.trace("New list: " + i + ": " + cur.id.toString() + ": " + cur.energyScore + ".");
-                ++i;
+                Speaker<T> cur = loudest[i];
+                logger.trace("New list: " + i + ": " + cur.id.toString() + ": " + loudestScores[i] + ".");
             }
         }
 
-        return new SpeakerRanking(isDominant, rank, speaker.energyScore);
+        return SpeakerRanking.of(isDominant, rank, energyScore);
+    }
+
+    /**
+     * Removes the <tt>Speaker</tt>s whose last level is older than a specific
+     * time from {@link #loudest}, and updates
+     * {@link #loudestMinLastLevelChangedTime}. Must be called with
+     * {@link #loudestSyncRoot} held.
+     */
+    private void removeExpiredLoudest(long oldestValid)
+    {
+        int count = 0;
+        long minLastLevelChangedTime = Long.MAX_VALUE;
+
+        for (int i = 0; i < loudestCount; i++)
+        {
+            Speaker<T> cur = loudest[i];
+            long lastLevelChangedTime = cur.lastLevelChangedTime;
+
+            if (lastLevelChangedTime < oldestValid)
+            {
+                if (logger.isTraceEnabled())
+                {
+                    logger.trace("Removing " + cur.id.toString() + ". old.");
+                }
+                cur.loudestIndex = -1;
+            }
+            else
+            {
+                loudest[count] = cur;
+                loudestScores[count] = loudestScores[i];
+                cur.loudestIndex = count;
+                count++;
+                if (lastLevelChangedTime < minLastLevelChangedTime)
+                {
+                    minLastLevelChangedTime = lastLevelChangedTime;
+                }
+            }
+        }
+        Arrays.fill(loudest, count, loudestCount, null);
+        loudestCount = count;
+        loudestMinLastLevelChangedTime = minLastLevelChangedTime;
+    }
+
+    /**
+     * Removes the <tt>Speaker</tt> at a specific index from {@link #loudest}.
+     * Must be called with {@link #loudestSyncRoot} held.
+     */
+    private void removeLoudest(int index)
+    {
+        loudest[index].loudestIndex = -1;
+        loudestCount--;
+        System.arraycopy(loudest, index + 1, loudest, index, loudestCount - index);
+        System.arraycopy(loudestScores, index + 1, loudestScores, index, loudestCount - index);
+        loudest[loudestCount] = null;
+        for (int i = index; i < loudestCount; i++)
+        {
+            loudest[i].loudestIndex = i;
+        }
     }
 
     /**
      * Query whether a particular endpoint is currently one of the loudest speakers.
      */
-    public synchronized boolean isAmongLoudest(T id)
+    public boolean isAmongLoudest(T id)
     {
-        return loudest.stream().anyMatch(speaker -> speaker.id.equals(id));
+        synchronized (loudestSyncRoot)
+        {
+            for (int i = 0; i < loudestCount; i++)
+            {
+                if (loudest[i].id.equals(id))
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
     }
 
     /**
@@ -610,39 +900,170 @@ public class DominantSpeakerIdentification<T>
     @Override
     public SpeakerRanking levelChanged(T id, int level)
     {
-        Speaker<T> speaker;
         long now = clock.millis();
+        Speaker<T> speaker = getOrCreateSpeaker(id);
 
-        synchronized (this)
+        levelsReceived(now);
+
+        // The level is processed under the locks of the Speaker and of the
+        // loudest list, and not the lock of this instance, so that it doesn't
+        // wait for decisions, and the levels of different Speakers are mostly
+        // processed in parallel.
+        int cookedLevel;
+        int energyScore;
+
+        synchronized (speaker)
         {
-            speaker = getOrCreateSpeaker(id);
+            cookedLevel = speaker.levelChanged(level, now);
+            energyScore = speaker.updateEnergyScore(cookedLevel);
+        }
+        synchronized (loudestSyncRoot)
+        {
+            return updateLoudestList(speaker, cookedLevel, energyScore, now);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The levels are processed under a single lock of the loudest list, and
+     * the registered <tt>Speaker</tt>s are looked up by handle, so a batch
+     * costs much less than a call to {@link #levelChanged(Object, int)} per
+     * level. The energy rankings are not returned, use
+     * {@link #isAmongLoudest(Object)}.
+     * <p>
+     * <tt>timeMs</tt> must be read from the <tt>Clock</tt> this instance was
+     * initialized with, since it is compared with the times of the previous
+     * levels: the level of a speaker with an earlier time than its previous
+     * level is discarded as late.
+     */
+    @Override
+    public int levelsChanged(int[] handles, int[] levels, int count, long timeMs)
+    {
+        Speaker<T>[] speakersByHandle = this.speakersByHandle;
+        int skipped = 0;
+
+        levelsReceived(timeMs);
 
-            // Note that this ActiveSpeakerDetector is still in use. When it is
-            // not in use long enough, its DecisionMaker i.e. background thread
-            // will prepare itself and, consequently, this
-            // DominantSpeakerIdentification for garbage collection.
-            if (lastLevelChangedTime < now)
+        // The lock of the loudest list is held for the whole batch, and the
+        // lock of each Speaker is taken inside it. The other paths never
+        // take the lock of the loudest list while holding that of a Speaker.
+        synchronized (loudestSyncRoot)
+        {
+            for (int i = 0; i < count; i++)
             {
-                lastLevelChangedTime = now;
+                int handle = handles[i];
+                Speaker<T> speaker = handle >= 0 && handle < speakersByHandle.length ? speakersByHandle[handle] : null;
+
+                if (speaker == null)
+                {
+                    skipped++;
+                    continue;
+                }
 
-                // A report or measurement of an audio level indicates that this
-                // DominantSpeakerIdentification is in use and, consequently,
-                // that it'll very likely need to make a decision whether there
-                // have been speaker switch events soon.
+                int cookedLevel;
+                int energyScore;
+
+                synchronized (speaker)
+                {
+                    cookedLevel = speaker.levelChanged(levels[i], timeMs);
+                    energyScore = speaker.updateEnergyScore(cookedLevel);
+                }
+                updateLoudestList(speaker, cookedLevel, energyScore, timeMs);
+            }
+        }
+        return skipped;
+    }
+
+    /**
+     * Notes that this instance is still in use because levels have been
+     * received at a specific time, and starts the decisions if needed.
+     *
+     * @param now the time at which levels have been received
+     */
+    private void levelsReceived(long now)
+    {
+        // Note that this ActiveSpeakerDetector is still in use. When it is
+        // not in use long enough, its DecisionMaker i.e. background thread
+        // will prepare itself and, consequently, this
+        // DominantSpeakerIdentification for garbage collection.
+        if (lastLevelChangedTime < now)
+        {
+            lastLevelChangedTime = now;
+
+            // A report or measurement of an audio level indicates that this
+            // DominantSpeakerIdentification is in use and, consequently,
+            // that it'll very likely need to make a decision whether there
+            // have been speaker switch events soon.
+            if (decisionMaker == null)
+            {
                 maybeStartDecisionMaker();
             }
         }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A registered <tt>Speaker</tt> is not removed when it is idle.
+     */
+    @Override
+    public synchronized int registerSpeaker(@NotNull T id)
+    {
+        Speaker<T> speaker = getOrCreateSpeaker(id);
+
+        if (speaker.handle >= 0)
+        {
+            return speaker.handle;
+        }
+
+        Speaker<T>[] speakersByHandle = this.speakersByHandle;
+        int handle = 0;
+
+        while (handle < speakersByHandle.length && speakersByHandle[handle] != null)
+        {
+            handle++;
+        }
+
+        Speaker<T>[] newSpeakersByHandle = newSpeakerArray(Math.max(speakersByHandle.length, handle + 1));
+
+        System.arraycopy(speakersByHandle, 0, newSpeakersByHandle, 0, speakersByHandle.length);
+        newSpeakersByHandle[handle] = speaker;
+        speaker.handle = handle;
+        this.speakersByHandle = newSpeakersByHandle;
+        return handle;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The <tt>Speaker</tt> is then removed when it is idle, unless it is
+     * registered again.
+     */
+    @Override
+    public synchronized void unregisterSpeaker(int handle)
+    {
+        Speaker<T>[] speakersByHandle = this.speakersByHandle;
+
+        if (handle < 0 || handle >= speakersByHandle.length || speakersByHandle[handle] == null)
+        {
+            return;
+        }
+
+        Speaker<T>[] newSpeakersByHandle = speakersByHandle.clone();
 
-        int cookedLevel = speaker.levelChanged(level, now);
-        return updateLoudestList(speaker, cookedLevel, now);
+        newSpeakersByHandle[handle].handle = -1;
+        newSpeakersByHandle[handle] = null;
+        this.speakersByHandle = newSpeakersByHandle;
     }
 
     /**
      * Makes the decision whether there has been a speaker switch event. If
      * there has been such an event, notifies the registered listeners that a
-     * new speaker is dominating the multipoint conference.
+     * new speaker is dominating the multipoint conference. Package-private for
+     * the benchmarks.
      */
-    private void makeDecision(long now)
+    void makeDecision(long now)
     {
         // If we have to fire events to any registered listeners eventually, we
         // will want to do it outside the synchronized block.
@@ -686,19 +1107,17 @@ public class DominantSpeakerIdentification<T>
                     ? null
                     : speakers.get(dominantId);
 
-            // If there is no dominant speaker, nominate one at random and then
+            int candidateCount = updateDecisionCandidates();
+            Speaker<T>[] candidates = decisionCandidates;
+
+            // If there is no dominant speaker, nominate one at random (or the
+            // loudest one, if the candidates are the loudest speakers) and then
             // let the other speakers compete with the nominated one.
             if (dominantSpeaker == null)
             {
-                Map.Entry<T, Speaker<T>> s = speakers.entrySet().iterator().next();
-
-                dominantSpeaker = s.getValue();
-                newDominantId = s.getKey();
-            }
-            else
-            {
-                newDominantId = dominantSpeaker.id;
+                dominantSpeaker = candidateCount > 0 ? candidates[0] : speakers.values().iterator().next();
             }
+            newDominantId = dominantSpeaker.id;
             // At this point dominantSpeaker==null iff inSilence==true.
 
             if (dominantSpeaker != null)
@@ -712,9 +1131,9 @@ public class DominantSpeakerIdentification<T>
             // time-interval.
             double newDominantC2 = C2;
 
-            for (Map.Entry<T, Speaker<T>> s : speakers.entrySet())
+            for (int i = 0; i < candidateCount; i++)
             {
-                Speaker<T> speaker = s.getValue();
+                Speaker<T> speaker = candidates[i];
 
                 // The dominant speaker does not compete with itself. In other
                 // words, there is no use detecting a speaker switch from the
@@ -735,10 +1154,11 @@ public class DominantSpeakerIdentification<T>
                         ++interval)
                 {
                     // When in a silence period we use MIN_SPEECH_ACTIVITY_SCORE as the scores to compete against.
-                    double dominantSpeakerScore = dominantSpeaker == null ? MIN_SPEECH_ACTIVITY_SCORE
-                            : dominantSpeaker.getSpeechActivityScore(interval);
                     relativeSpeechActivities[interval]
-                        = Math.log(speaker.getSpeechActivityScore(interval) / dominantSpeakerScore);
+                        = dominantSpeaker == null
+                            ? RELATIVE_SPEECH_ACTIVITIES_IN_SILENCE[interval][speaker.getSpeechActivity(interval)]
+                            : RELATIVE_SPEECH_ACTIVITIES[interval][speaker.getSpeechActivity(interval)]
+                                [dominantSpeaker.getSpeechActivity(interval)];
                 }
 
                 double c1 = relativeSpeechActivities[0];
@@ -751,7 +1171,7 @@ public class DominantSpeakerIdentification<T>
                     // among themselves by their relative speech activities in
                     // the middle time-interval.
                     newDominantC2 = c2;
-                    newDominantId = s.getKey();
+                    newDominantId = speaker.id;
                 }
             }
 
@@ -785,6 +1205,49 @@ public class DominantSpeakerIdentification<T>
         }
     }
 
+    /**
+     * Copies the <tt>Speaker</tt>s which compete in a decision to
+     * {@link #decisionCandidates}: all of them, or the loudest ones if
+     * {@link #decisionCandidatesLoudestOnly}. The loudest ones are copied so
+     * that the loudest list can change during the decision. Must be called
+     * with the lock of this instance held.
+     *
+     * @return the number of candidates
+     */
+    private int updateDecisionCandidates()
+    {
+        if (decisionCandidatesLoudestOnly)
+        {
+            synchronized (loudestSyncRoot)
+            {
+                if (numLoudestToTrack > 0)
+                {
+                    if (decisionCandidates.length < loudestCount)
+                    {
+                        decisionCandidates = newSpeakerArray(loudest.length);
+                    }
+                    System.arraycopy(loudest, 0, decisionCandidates, 0, loudestCount);
+                    Arrays.fill(decisionCandidates, loudestCount, decisionCandidates.length, null);
+                    return loudestCount;
+                }
+            }
+        }
+
+        if (decisionCandidates.length < speakers.size())
+        {
+            decisionCandidates = newSpeakerArray(speakers.size() * 2);
+        }
+
+        int count = 0;
+
+        for (Speaker<T> speaker : speakers.values())
+        {
+            decisionCandidates[count++] = speaker;
+        }
+        Arrays.fill(decisionCandidates, count, decisionCandidates.length, null);
+        return count;
+    }
+
     /**
      * Starts a background thread which is to repeatedly make the (global)
      * decision about speaker switches if such a background thread has not been
@@ -803,7 +1266,14 @@ public class DominantSpeakerIdentification<T>
             this.decisionMaker = decisionMaker;
             try
             {
-                executor.execute(decisionMaker);
+                if (scheduler != null)
+                {
+                    scheduler.schedule(decisionMaker, 0);
+                }
+                else
+                {
+                    executor.execute(decisionMaker);
+                }
                 scheduled = true;
             }
             finally
@@ -920,23 +1390,34 @@ public class DominantSpeakerIdentification<T>
     private synchronized void timeoutIdleLevels(long now)
     {
         Iterator<Map.Entry<T, Speaker<T>>> i = speakers.entrySet().iterator();
+        boolean removed = false;
 
         while (i.hasNext())
         {
             Speaker<T> speaker = i.next().getValue();
             long idle = now - speaker.getLastLevelChangedTime();
 
-            // Remove a non-dominant Speaker if he/she has been idle for far too
-            // long.
-            if ((SPEAKER_IDLE_TIMEOUT < idle) && ((dominantId == null) || (speaker.id != dominantId)))
+            // Remove a non-dominant, unregistered Speaker if he/she has been
+            // idle for far too long.
+            if ((SPEAKER_IDLE_TIMEOUT < idle)
+                    && ((dominantId == null) || (speaker.id != dominantId))
+                    && speaker.handle < 0)
             {
                 i.remove();
+                removed = true;
             }
             else if (LEVEL_IDLE_TIMEOUT < idle)
             {
-                speaker.levelTimedOut();
+                synchronized (speaker)
+                {
+                    speaker.levelTimedOut();
+                }
             }
         }
+        if (removed)
+        {
+            speakersById = new HashMap<>(speakers);
+        }
     }
 
     /**
@@ -944,11 +1425,14 @@ public class DominantSpeakerIdentification<T>
      * decision about speaker switches. Weakly references an associated
      * <tt>DominantSpeakerIdentification</tt> instance in order to eventually
      * detect that the multipoint conference has actually expired and that the
-     * background <tt>Thread</tt> should perish.
+     * background <tt>Thread</tt> should perish. Runs either on the executor of
+     * the <tt>DominantSpeakerIdentification</tt>, or on its
+     * {@link DecisionScheduler}.
      *
      * @author Lyubomir Marinov
      */
     private static class DecisionMaker
+        extends DecisionScheduler.Task
         implements Runnable
     {
         /**
@@ -983,54 +1467,66 @@ public class DominantSpeakerIdentification<T>
         @Override
         public void run()
         {
-            boolean exit = false;
-
             DominantSpeakerIdentification<?> algorithm = this.algorithm.get();
+            long sleep = runOnce(algorithm);
 
-            if (algorithm == null)
+            if (sleep >= 0)
             {
-                exit = true;
+                algorithm.executor.schedule(this, sleep, TimeUnit.MILLISECONDS);
             }
-            else
+        }
+
+        /**
+         * Runs {@link #algorithm} once when scheduled by a
+         * {@link DecisionScheduler}, which schedules it again as needed.
+         */
+        @Override
+        long runOnce()
+        {
+            return runOnce(this.algorithm.get());
+        }
+
+        /**
+         * Runs a specific <tt>DominantSpeakerIdentification</tt> once.
+         *
+         * @param algorithm the value of {@link #algorithm}
+         * @return a negative value if this <tt>DecisionMaker</tt> is to exit,
+         * or the time in milliseconds until it is to run again
+         */
+        private long runOnce(DominantSpeakerIdentification<?> algorithm)
+        {
+            if (algorithm == null)
             {
-                long sleep;
-                try
-                {
-                    sleep = algorithm.runInDecisionMaker(this);
-                }
-                catch (Exception e)
-                {
-                    // If an exception occurs we do not re-schedule.
-                    sleep = -1;
-                }
+                return -1;
+            }
 
-                // A negative sleep value is contracted to mean that this DecisionMaker should not re-schedule itself.
-                if (sleep < 0)
-                {
-                    exit = true;
-                }
-                else
-                {
-                    algorithm.executor.schedule(this, sleep, TimeUnit.MILLISECONDS);
-                }
+            long sleep;
+            try
+            {
+                sleep = algorithm.runInDecisionMaker(this);
+            }
+            catch (Exception e)
+            {
+                // If an exception occurs we do not re-schedule.
+                sleep = -1;
             }
 
-            if (exit)
+            // A negative sleep value is contracted to mean that this DecisionMaker should not re-schedule itself.
+            if (sleep < 0)
             {
                 // Notify the algorithm that this DecisionMaker will no longer run. Subsequently, the algorithm may
                 // decide to create and schedule another one if and when it's needed.
-                algorithm = this.algorithm.get();
-
-                if (algorithm != null)
-                {
-                    algorithm.decisionMakerExited(this);
-                }
+                algorithm.decisionMakerExited(this);
             }
+            return sleep;
         }
     }
 
     /**
-     * Represents a speaker in a multipoint conference identified by an ID.
+     * Represents a speaker in a multipoint conference identified by an ID. The
+     * state of its audio levels is guarded by its own lock, and the state of
+     * its speech activity evaluation is guarded by the lock of the
+     * <tt>DominantSpeakerIdentification</tt>, which makes decisions.
      *
      * @author Lyubomir Marinov
      */
@@ -1040,17 +1536,11 @@ public class DominantSpeakerIdentification<T>
 
         /**
          * The last {@link #clock} time in millis at which this speaker was not silent. We consider it being silent if
-         * {@link #longSpeechActivityScore} == {@link #MIN_SPEECH_ACTIVITY_SCORE} to allow short bursts of activity
-         * to not interrupt a silence period.
+         * its speech activity score for the long time-interval is {@link #MIN_SPEECH_ACTIVITY_SCORE} to allow short
+         * bursts of activity to not interrupt a silence period.
          */
         private long lastNonSilence = -1;
 
-        /**
-         * The speech activity score of this <tt>Speaker</tt> for the immediate
-         * time-interval.
-         */
-        private double immediateSpeechActivityScore = MIN_SPEECH_ACTIVITY_SCORE;
-
         /**
          * The time in milliseconds of the most recent invocation of
          * {@link #levelChanged(int,long)} i.e. the last time at which an actual
@@ -1060,29 +1550,24 @@ public class DominantSpeakerIdentification<T>
          * <tt>DominantSpeakerIdentification</tt> will presume that this
          * <tt>Speaker</tt> was muted for the duration of a certain frame.
          */
-        private long lastLevelChangedTime = clock.millis();
+        private volatile long lastLevelChangedTime = clock.millis();
 
         /**
          * The (history of) audio levels received or measured for this
-         * <tt>Speaker</tt>.
+         * <tt>Speaker</tt>, as a ring buffer which starts at
+         * {@link #levelsHead} with the last level and continues (wrapping
+         * around) with older levels.
          */
         private final byte[] levels;
 
-        private final byte[] longs = new byte[LONG_COUNT];
-
         /**
-         * The speech activity score of this <tt>Speaker</tt> for the long
-         * time-interval.
+         * The index in {@link #levels} of the last level.
          */
-        private double longSpeechActivityScore = MIN_SPEECH_ACTIVITY_SCORE;
+        private int levelsHead = 0;
 
-        private final byte[] mediums = new byte[LONG_COUNT * N3];
+        private final byte[] longs = new byte[LONG_COUNT];
 
-        /**
-         * The speech activity score of this <tt>Speaker</tt> for the medium
-         * time-interval.
-         */
-        private double mediumSpeechActivityScore = MIN_SPEECH_ACTIVITY_SCORE;
+        private final byte[] mediums = new byte[LONG_COUNT * N3];
 
         /**
          * The minimum (audio) level received or measured for this
@@ -1109,10 +1594,23 @@ public class DominantSpeakerIdentification<T>
         private int nextMinLevelWindowLength;
 
         /** Exponential smoothing of filtered energy values.
-         *  Synchronized by parent class.
+         *  Synchronized by this instance.
          */
         int energyScore;
 
+        /**
+         * The handle of this <tt>Speaker</tt> if it is registered, see
+         * {@link #registerSpeaker(Object)}, or -1. Synchronized by the
+         * <tt>DominantSpeakerIdentification</tt>.
+         */
+        int handle = -1;
+
+        /**
+         * The index of this <tt>Speaker</tt> in {@link #loudest}, or -1.
+         * Synchronized by {@link #loudestSyncRoot}.
+         */
+        int loudestIndex = -1;
+
         /**
          * The identifier of this <tt>Speaker</tt> which is unique within this {@link DominantSpeakerIdentification}.
          */
@@ -1143,20 +1641,25 @@ public class DominantSpeakerIdentification<T>
             byte minLevel = (byte) (this.minLevel + N1_SUBUNIT_LENGTH);
             boolean changed = false;
 
-            for (int i = 0; i < immediates.length; ++i)
-            {
-                byte level = levels[i];
+            // The levels are in a ring buffer, so go through them in two runs:
+            // from the head to the end of the buffer, and then from its start.
+            int i = 0;
 
-                if (level < minLevel)
-                    level = MIN_LEVEL;
+            for (int l = levelsHead; l < levels.length; ++i, ++l)
+            {
+                byte level = levels[l];
+                byte immediate = level < minLevel ? 0 : IMMEDIATES[level];
 
-                byte immediate = (byte) (level / N1_SUBUNIT_LENGTH);
+                changed |= immediates[i] != immediate;
+                immediates[i] = immediate;
+            }
+            for (int l = 0; i < immediates.length; ++i, ++l)
+            {
+                byte level = levels[l];
+                byte immediate = level < minLevel ? 0 : IMMEDIATES[level];
 
-                if (immediates[i] != immediate)
-                {
-                    immediates[i] = immediate;
-                    changed = true;
-                }
+                changed |= immediates[i] != immediate;
+                immediates[i] = immediate;
             }
             return changed;
         }
@@ -1171,55 +1674,36 @@ public class DominantSpeakerIdentification<T>
             return computeBigs(immediates, mediums, MEDIUM_THRESHOLD);
         }
 
-        /**
-         * Computes/evaluates the speech activity score of this <tt>Speaker</tt>
-         * for the immediate time-interval.
-         */
-        private void evaluateImmediateSpeechActivityScore()
-        {
-            immediateSpeechActivityScore = computeSpeechActivityScore(immediates[0], N1, 0.78);
-        }
-
         /**
          * Computes/evaluates the speech activity score of this <tt>Speaker</tt>
          * for the long time-interval.
          */
         private void evaluateLongSpeechActivityScore(long now)
         {
-            longSpeechActivityScore = computeSpeechActivityScore(longs[0], N3, 47);
-            if (longSpeechActivityScore > MIN_SPEECH_ACTIVITY_SCORE)
+            if (SPEECH_ACTIVITY_SCORES[2][longs[0]] > MIN_SPEECH_ACTIVITY_SCORE)
             {
                 lastNonSilence = now;
             }
         }
 
         /**
-         * Computes/evaluates the speech activity score of this <tt>Speaker</tt>
-         * for the medium time-interval.
-         */
-        private void evaluateMediumSpeechActivityScore()
-        {
-            mediumSpeechActivityScore = computeSpeechActivityScore(mediums[0], N2, 24);
-        }
-
-        /**
-         * Evaluates the speech activity scores of this <tt>Speaker</tt> for the
+         * Evaluates the speech activities of this <tt>Speaker</tt> for the
          * immediate, medium, and long time-intervals. Invoked when it is time
-         * to decide whether there has been a speaker switch event.
+         * to decide whether there has been a speaker switch event. The speech
+         * activity scores are then looked up by {@link #getSpeechActivity(int)}.
          */
-        synchronized void evaluateSpeechActivityScores(long now)
+        void evaluateSpeechActivityScores(long now)
         {
-            if (computeImmediates())
+            boolean immediatesChanged;
+
+            // Snapshot the levels, which may change concurrently.
+            synchronized (this)
             {
-                evaluateImmediateSpeechActivityScore();
-                if (computeMediums())
-                {
-                    evaluateMediumSpeechActivityScore();
-                    if (computeLongs())
-                    {
-                        evaluateLongSpeechActivityScore(now);
-                    }
-                }
+                immediatesChanged = computeImmediates();
+            }
+            if (immediatesChanged && computeMediums() && computeLongs())
+            {
+                evaluateLongSpeechActivityScore(now);
             }
         }
 
@@ -1230,7 +1714,7 @@ public class DominantSpeakerIdentification<T>
          * @return the time in milliseconds at which an actual (audio) level
          * was reported or measured for this <tt>Speaker</tt> last
          */
-        public synchronized long getLastLevelChangedTime()
+        public long getLastLevelChangedTime()
         {
             return lastLevelChangedTime;
         }
@@ -1254,7 +1738,7 @@ public class DominantSpeakerIdentification<T>
 
             for (int s = src.length - 1; s >= 0; --s)
             {
-                sb.append(src[s]);
+                sb.append(src[(levelsHead + s) % src.length]);
                 sb.append(',');
             }
 
@@ -1263,30 +1747,49 @@ public class DominantSpeakerIdentification<T>
         }
 
         /**
-         * Gets the speech activity score of this <tt>Speaker</tt> for a
-         * specific time-interval.
+         * Gets the speech activity of this <tt>Speaker</tt> for a specific
+         * time-interval, i.e. the index of its speech activity score in
+         * {@link #SPEECH_ACTIVITY_SCORES}.
          *
          * @param interval <tt>0</tt> for the immediate time-interval,
          * <tt>1</tt> for the medium time-interval, or <tt>2</tt> for the long
          * time-interval
-         * @return the speech activity score of this <tt>Speaker</tt> for the
+         * @return the speech activity of this <tt>Speaker</tt> for the
          * time-interval specified by <tt>index</tt>
          */
-        double getSpeechActivityScore(int interval)
+        int getSpeechActivity(int interval)
         {
             switch (interval)
             {
             case 0:
-                return immediateSpeechActivityScore;
+                return immediates[0];
             case 1:
-                return mediumSpeechActivityScore;
+                return mediums[0];
             case 2:
-                return longSpeechActivityScore;
+                return longs[0];
             default:
                 throw new IllegalArgumentException("interval " + interval);
             }
         }
 
+        /**
+         * Updates the energy score of this <tt>Speaker</tt> with a new level,
+         * by exponential smoothing.
+         *
+         * @param cookedLevel the level as returned by
+         * {@link #levelChanged(int, long)}, or -1 if it is not to be counted
+         * @return the energy score
+         */
+        int updateEnergyScore(int cookedLevel)
+        {
+            if (cookedLevel >= 0)
+            {
+                /* exponential smoothing. round to nearest. */
+                energyScore = (energyAlphaPct * cookedLevel + (100 - energyAlphaPct) * energyScore + 50) / 100;
+            }
+            return energyScore;
+        }
+
         /**
          * Notifies this <tt>Speaker</tt> that a new audio level has been
          * received or measured at a specific time.
@@ -1299,7 +1802,7 @@ public class DominantSpeakerIdentification<T>
          * level adjustment has taken place. If negative, the audio level
          * was ignored.
          */
-        public synchronized int levelChanged(int level, long time)
+        public int levelChanged(int level, long time)
         {
             // It sounds relatively reasonable that late audio levels should
             // better be discarded.
@@ -1319,9 +1822,10 @@ public class DominantSpeakerIdentification<T>
                     b = (byte) level;
 
                 // Push the specified level into the history of audio levels
-                // received or measured for this Speaker.
-                System.arraycopy(levels, 0, levels, 1, levels.length - 1);
-                levels[0] = b;
+                // received or measured for this Speaker, overwriting the
+                // oldest one.
+                levelsHead = (levelsHead == 0 ? levels.length : levelsHead) - 1;
+                levels[levelsHead] = b;
 
                 // Determine the minimum level received or measured for this
                 // Speaker.
@@ -1341,7 +1845,7 @@ public class DominantSpeakerIdentification<T>
          * this <tt>Speaker</tt> will not have a level within a certain
          * time-frame of a <tt>DominantSpeakerIdentification</tt> algorithm.
          */
-        public synchronized void levelTimedOut()
+        public void levelTimedOut()
         {
             levelChanged(MIN_LEVEL, lastLevelChangedTime);
         }
@@ -21,6 +21,55 @@ package org.jitsi.utils.dsi;
  */
 public class SpeakerRanking
 {
+    /**
+     * The highest energy ranking for which instances are cached by
+     * {@link #of(boolean, int, int)}.
+     */
+    private static final int MAX_CACHED_RANKING = 31;
+
+    /**
+     * The highest energy score for which instances are cached by
+     * {@link #of(boolean, int, int)}. Energy scores are smoothed audio levels,
+     * so they don't exceed the maximum audio level (127).
+     */
+    private static final int MAX_CACHED_SCORE = 127;
+
+    /**
+     * The cached instances, indexed by {@link #cacheIndex(boolean, int, int)}.
+     * They are created lazily, and races are harmless because they are
+     * immutable.
+     */
+    private static final SpeakerRanking[] cache
+        = new SpeakerRanking[2 * (MAX_CACHED_RANKING + 1) * (MAX_CACHED_SCORE + 1)];
+
+    /**
+     * Gets a <tt>SpeakerRanking</tt> with specific values. Instances are
+     * immutable, so the common ones are cached to avoid allocating one per
+     * audio level.
+     */
+    static SpeakerRanking of(boolean isDominant, int energyRanking, int energyScore)
+    {
+        if (energyRanking < 0 || energyRanking > MAX_CACHED_RANKING
+            || energyScore < 0 || energyScore > MAX_CACHED_SCORE)
+        {
+            return new SpeakerRanking(isDominant, energyRanking, energyScore);
+        }
+
+        int index = cacheIndex(isDominant, energyRanking, energyScore);
+        SpeakerRanking ranking = cache[index];
+        if (ranking == null)
+        {
+            ranking = new SpeakerRanking(isDominant, energyRanking, energyScore);
+            cache[index] = ranking;
+        }
+        return ranking;
+    }
+
+    private static int cacheIndex(boolean isDominant, int energyRanking, int energyScore)
+    {
+        return ((energyRanking * (MAX_CACHED_SCORE + 1)) + energyScore) * 2 + (isDominant ? 1 : 0);
+    }
+
     /**
      * Whether the endpoint is currently the dominant speaker.
      */
@@ -93,6 +93,21 @@ public class DiagnosticContext
             .addField("time", TimeUtils.formatTimeAsFullMillis(ts.getEpochSecond(), ts.getNano()));
     }
 
+    /**
+     * Starts the definition of a time series in a {@link TimeSeriesSink},
+     * whose points have the current values of this context. Unlike
+     * {@link #makeTimeSeriesPoint(String)}, the context is written only once,
+     * so later changes to this context are not reflected in the series.
+     *
+     * @param sink the sink to record the time series in
+     * @param timeSeriesName the name of the time series
+     */
+    public TimeSeriesSink.SeriesBuilder newTimeSeries(
+        TimeSeriesSink sink, String timeSeriesName)
+    {
+        return sink.newSeries(timeSeriesName).context(this);
+    }
+
     public static class TimeSeriesPoint
         extends HashMap<String, Object>
     {
@@ -0,0 +1,222 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils.logging;
+
+import org.jetbrains.annotations.*;
+import org.jitsi.utils.*;
+import org.json.simple.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+
+import static org.jitsi.utils.logging.TimeSeriesSink.*;
+
+/**
+ * Converts a file written by a {@link TimeSeriesSink} to JSON lines, with one
+ * object per point in the same form as the points logged by
+ * {@link TimeSeriesLogger} for {@link DiagnosticContext#makeTimeSeriesPoint(
+ * String, java.time.Instant)}: the context of the series, its name in
+ * "series", the timestamp in milliseconds in "time" (as formatted by
+ * {@link TimeUtils#formatTimeAsFullMillis(long, int)}), and the values of the
+ * columns.
+ * <p>
+ * Usage: {@code java org.jitsi.utils.logging.TimeSeriesReader <file>}, which
+ * writes to the standard output.
+ */
+public class TimeSeriesReader
+{
+    /**
+     * Converts a file to JSON lines.
+     * @param in the file written by a {@link TimeSeriesSink}.
+     * @param out where to write the JSON lines.
+     * @return the number of points which were converted.
+     * @throws IOException if reading or writing fails, or the file is not in
+     * the expected format.
+     */
+    public static long toJsonLines(@NotNull Path in, @NotNull Writer out)
+        throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(in, StandardOpenOption.READ))
+        {
+            ByteBuffer buffer
+                = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return toJsonLines(buffer, out);
+        }
+        catch (BufferUnderflowException | IndexOutOfBoundsException e)
+        {
+            throw new IOException("Truncated time series file: " + in, e);
+        }
+    }
+
+    private static long toJsonLines(ByteBuffer buffer, Writer out)
+        throws IOException
+    {
+        if (buffer.remaining() < 8
+            || buffer.getInt() != MAGIC
+            || buffer.getInt() != VERSION)
+        {
+            throw new IOException("Not a time series file.");
+        }
+
+        List<String> strings = new ArrayList<>();
+        List<SeriesDefinition> series = new ArrayList<>();
+        long points = 0;
+        while (buffer.hasRemaining())
+        {
+            byte type = buffer.get();
+            switch (type)
+            {
+            case END:
+                return points;
+            case STRING:
+                checkId(buffer.getInt(), strings.size());
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                strings.add(new String(bytes, StandardCharsets.UTF_8));
+                break;
+            case SERIES:
+                checkId(buffer.getInt(), series.size());
+                series.add(new SeriesDefinition(buffer, strings));
+                break;
+            case POINT:
+                int id = buffer.getInt();
+                if (id < 0 || id >= series.size())
+                {
+                    throw new IOException("Undefined series: " + id);
+                }
+                out.write(series.get(id).toJson(buffer, strings));
+                out.write('\n');
+                points++;
+                break;
+            default:
+                throw new IOException("Unknown record type: " + type);
+            }
+        }
+        return points;
+    }
+
+    private static void checkId(int id, int expected)
+        throws IOException
+    {
+        if (id != expected)
+        {
+            throw new IOException("Unexpected id " + id + ", expected " + expected);
+        }
+    }
+
+    private static String getString(List<String> strings, long id)
+        throws IOException
+    {
+        if (id == NULL_STRING)
+        {
+            return null;
+        }
+        if (id < 0 || id >= strings.size())
+        {
+            throw new IOException("Undefined string: " + id);
+        }
+        return strings.get((int) id);
+    }
+
+    public static void main(String[] args)
+        throws IOException
+    {
+        if (args.length != 1)
+        {
+            System.err.println("Usage: TimeSeriesReader <file>");
+            System.exit(1);
+        }
+        Writer out = new BufferedWriter(
+            new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        toJsonLines(Paths.get(args[0]), out);
+        out.flush();
+    }
+
+    /**
+     * A series, as read from its {@link TimeSeriesSink#SERIES} record.
+     */
+    private static class SeriesDefinition
+    {
+        private final Map<String, Object> context = new LinkedHashMap<>();
+
+        private final String[] columnNames;
+
+        private final ColumnType[] columnTypes;
+
+        SeriesDefinition(ByteBuffer buffer, List<String> strings)
+            throws IOException
+        {
+            String name = getString(strings, buffer.getInt());
+            int contextSize = buffer.getInt();
+            for (int i = 0; i < contextSize; i++)
+            {
+                String key = getString(strings, buffer.getInt());
+                context.put(key, getString(strings, buffer.getInt()));
+            }
+            context.put("series", name);
+
+            int columns = buffer.getInt();
+            columnNames = new String[columns];
+            columnTypes = new ColumnType[columns];
+            for (int i = 0; i < columns; i++)
+            {
+                columnNames[i] = getString(strings, buffer.getInt());
+                int type = buffer.get();
+                if (type < 0 || type >= ColumnType.values().length)
+                {
+                    throw new IOException("Unknown column type: " + type);
+                }
+                columnTypes[i] = ColumnType.values()[type];
+            }
+        }
+
+        /**
+         * Reads the rest of a {@link TimeSeriesSink#POINT} record of this
+         * series, and formats it as JSON.
+         */
+        String toJson(ByteBuffer buffer, List<String> strings)
+            throws IOException
+        {
+            Map<String, Object> point = new LinkedHashMap<>(context);
+            long timeMs = buffer.getLong();
+            point.put(
+                "time",
+                TimeUtils.formatTimeAsFullMillis(
+                    Math.floorDiv(timeMs, 1000L), (int) Math.floorMod(timeMs, 1000L) * 1_000_000));
+            for (int i = 0; i < columnNames.length; i++)
+            {
+                long value = buffer.getLong();
+                switch (columnTypes[i])
+                {
+                case LONG:
+                    point.put(columnNames[i], value);
+                    break;
+                case DOUBLE:
+                    point.put(columnNames[i], Double.longBitsToDouble(value));
+                    break;
+                case STRING:
+                    point.put(columnNames[i], getString(strings, value));
+                    break;
+                }
+            }
+            return JSONValue.toJSONString(point);
+        }
+    }
+}
@@ -0,0 +1,557 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils.logging;
+
+import org.jetbrains.annotations.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Records time series points in a compact binary file, as a cheaper
+ * alternative to {@link TimeSeriesLogger} for points at per-packet
+ * granularity. {@link TimeSeriesReader} converts the file to JSON lines
+ * offline.
+ * <p>
+ * A {@link Series} has a name, the context of its points (e.g. the values of
+ * a {@link DiagnosticContext}) and typed columns. They are all written once,
+ * when the series is defined, and strings are interned, so a point consists
+ * only of the series id, a timestamp and 8 bytes per column. Points are
+ * stored as rows, one record per point, in the order in which they are
+ * recorded. Recording a point reuses a per-thread {@link Point} and copies it
+ * to a memory-mapped file, so it doesn't allocate. Writers reserve the room
+ * for their records atomically and don't otherwise synchronize.
+ * <p>
+ * The file has a fixed maximum size, and points which don't fit are dropped
+ * and counted in {@link #getDroppedCount()}. Points recorded concurrently with
+ * {@link #close()} may be lost.
+ *
+ * <h2>File format</h2>
+ * All numbers are big-endian. The file starts with {@link #MAGIC} and
+ * {@link #VERSION} (4 bytes each), followed by records which start with a
+ * one-byte type:
+ * <ul>
+ * <li>{@link #STRING}: id (int), length in bytes (int), UTF-8 bytes.</li>
+ * <li>{@link #SERIES}: id (int), name (string id), number of context entries
+ * (int), context keys and values (string ids), number of columns (int),
+ * column names (string id) and {@link ColumnType} ordinals (byte).</li>
+ * <li>{@link #POINT}: series id (int), timestamp in milliseconds (long), and
+ * a long per column: the value, the raw bits of a double, or a string id (-1
+ * for {@code null}).</li>
+ * <li>{@link #END} (zero), or the end of the file, ends the records.</li>
+ * </ul>
+ * Strings and series are defined before they are used.
+ */
+public class TimeSeriesSink
+    implements Closeable
+{
+    /**
+     * The first 4 bytes of the file: "JTS" and a zero byte.
+     */
+    static final int MAGIC = 0x4a545300;
+
+    static final int VERSION = 1;
+
+    static final byte END = 0;
+    static final byte STRING = 1;
+    static final byte SERIES = 2;
+    static final byte POINT = 3;
+
+    /**
+     * The string id which stands for {@code null}.
+     */
+    static final int NULL_STRING = -1;
+
+    /**
+     * The type of a column.
+     */
+    public enum ColumnType
+    {
+        LONG,
+        DOUBLE,
+        STRING
+    }
+
+    @NotNull
+    private final FileChannel channel;
+
+    @NotNull
+    private final MappedByteBuffer buffer;
+
+    /**
+     * The position at which the next record is written. A record is reserved
+     * by advancing it, and published by writing its type byte last. It may
+     * go past the end of the buffer when a record doesn't fit.
+     */
+    private final AtomicInteger position = new AtomicInteger(8);
+
+    private volatile boolean closed = false;
+
+    /**
+     * The interned strings.
+     */
+    private final ConcurrentMap<String, Integer> stringIds
+        = new ConcurrentHashMap<>();
+
+    private int nextSeriesId = 0;
+
+    private final LongAdder droppedCount = new LongAdder();
+
+    /**
+     * The {@link Point} each thread reuses, see {@link Series#point(long)}.
+     */
+    private final ThreadLocal<Point> points = ThreadLocal.withInitial(Point::new);
+
+    /**
+     * Creates (or truncates) a file and maps it for writing.
+     * @param path the file to write to.
+     * @param maxBytes the maximum size of the file, which is reserved (as a
+     * sparse file, where supported) upfront.
+     * @throws IOException if the file can't be created or mapped.
+     */
+    public TimeSeriesSink(@NotNull Path path, int maxBytes)
+        throws IOException
+    {
+        if (maxBytes < 8)
+        {
+            throw new IllegalArgumentException("maxBytes too small: " + maxBytes);
+        }
+        channel = FileChannel.open(
+            path,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        try
+        {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, maxBytes);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            channel.close();
+            throw e;
+        }
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+    }
+
+    /**
+     * Starts the definition of a series.
+     * @param name the name of the series.
+     */
+    @NotNull
+    public SeriesBuilder newSeries(@NotNull String name)
+    {
+        return new SeriesBuilder(name);
+    }
+
+    /**
+     * Gets the number of points which were dropped because the file was full
+     * or closed.
+     */
+    public long getDroppedCount()
+    {
+        return droppedCount.sum();
+    }
+
+    /**
+     * Gets the number of bytes written so far.
+     */
+    public int getBytesWritten()
+    {
+        return Math.min(position.get(), buffer.capacity() - 1);
+    }
+
+    /**
+     * Flushes the written records to the file and closes it. Points recorded
+     * afterwards are dropped.
+     */
+    @Override
+    public synchronized void close()
+        throws IOException
+    {
+        if (closed)
+        {
+            return;
+        }
+        closed = true;
+        buffer.force();
+        channel.close();
+    }
+
+    /**
+     * Gets the id of a string, writing its definition if this is the first
+     * time it is used.
+     * @return the id, or {@link #NULL_STRING} for {@code null}, or
+     * {@link Integer#MIN_VALUE} if it couldn't be written.
+     */
+    private int intern(String s)
+    {
+        if (s == null)
+        {
+            return NULL_STRING;
+        }
+        Integer id = stringIds.get(s);
+        if (id != null)
+        {
+            return id;
+        }
+        synchronized (this)
+        {
+            id = stringIds.get(s);
+            if (id != null)
+            {
+                return id;
+            }
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            int start = reserve(1 + 4 + 4 + bytes.length);
+            if (start < 0)
+            {
+                return Integer.MIN_VALUE;
+            }
+            int newId = stringIds.size();
+            buffer.putInt(start + 1, newId);
+            buffer.putInt(start + 5, bytes.length);
+            for (int i = 0; i < bytes.length; i++)
+            {
+                buffer.put(start + 9 + i, bytes[i]);
+            }
+            buffer.put(start, STRING);
+            stringIds.put(s, newId);
+            return newId;
+        }
+    }
+
+    /**
+     * Reserves room for a record, keeping room for the {@link #END} marker.
+     * @return the position of the record, or -1 if it doesn't fit.
+     */
+    private int reserve(int length)
+    {
+        // The room after the last record is zeros, which reads as END.
+        int limit = buffer.capacity() - 1;
+
+        // Checking first keeps the position from growing (and overflowing)
+        // once the file is full.
+        if (closed || position.get() > limit - length)
+        {
+            return -1;
+        }
+        int start = position.getAndAdd(length);
+        return start <= limit - length ? start : -1;
+    }
+
+    /**
+     * Defines a series, see {@link #newSeries(String)}.
+     */
+    public final class SeriesBuilder
+    {
+        @NotNull
+        private final String name;
+
+        private final Map<String, String> context = new LinkedHashMap<>();
+
+        private final List<String> columnNames = new ArrayList<>();
+
+        private final List<ColumnType> columnTypes = new ArrayList<>();
+
+        private SeriesBuilder(@NotNull String name)
+        {
+            this.name = name;
+        }
+
+        /**
+         * Adds context to all the points of the series, e.g. the values of a
+         * {@link DiagnosticContext}. Values are converted to strings.
+         */
+        @NotNull
+        public SeriesBuilder context(@NotNull Map<String, ?> context)
+        {
+            context.forEach((k, v) -> this.context.put(k, String.valueOf(v)));
+            return this;
+        }
+
+        /**
+         * Adds a column of longs, which will have the next index.
+         */
+        @NotNull
+        public SeriesBuilder longColumn(@NotNull String name)
+        {
+            return column(name, ColumnType.LONG);
+        }
+
+        /**
+         * Adds a column of doubles, which will have the next index.
+         */
+        @NotNull
+        public SeriesBuilder doubleColumn(@NotNull String name)
+        {
+            return column(name, ColumnType.DOUBLE);
+        }
+
+        /**
+         * Adds a column of strings, which will have the next index. Every
+         * distinct string is kept in memory and written to the file once, so
+         * the values should come from a small set.
+         */
+        @NotNull
+        public SeriesBuilder stringColumn(@NotNull String name)
+        {
+            return column(name, ColumnType.STRING);
+        }
+
+        @NotNull
+        private SeriesBuilder column(@NotNull String name, @NotNull ColumnType type)
+        {
+            columnNames.add(name);
+            columnTypes.add(type);
+            return this;
+        }
+
+        /**
+         * Writes the definition of the series.
+         * @throws IllegalStateException if the file is full or closed.
+         */
+        @NotNull
+        public Series build()
+        {
+            int nameId = intern(name);
+            int[] contextIds = new int[context.size() * 2];
+            int i = 0;
+            for (Map.Entry<String, String> entry : context.entrySet())
+            {
+                contextIds[i++] = intern(entry.getKey());
+                contextIds[i++] = intern(entry.getValue());
+            }
+            int[] columnNameIds = new int[columnNames.size()];
+            for (i = 0; i < columnNameIds.length; i++)
+            {
+                columnNameIds[i] = intern(columnNames.get(i));
+            }
+            ColumnType[] types = columnTypes.toArray(new ColumnType[0]);
+
+            synchronized (TimeSeriesSink.this)
+            {
+                int start = nameId == Integer.MIN_VALUE
+                    || Arrays.stream(contextIds).anyMatch(id -> id == Integer.MIN_VALUE)
+                    || Arrays.stream(columnNameIds).anyMatch(id -> id == Integer.MIN_VALUE)
+                    ? -1
+                    : reserve(1 + 4 + 4 + 4 + contextIds.length * 4 + 4 + types.length * 5);
+                if (start < 0)
+                {
+                    throw new IllegalStateException("The time series file is full or closed.");
+                }
+
+                int id = nextSeriesId++;
+                int p = start + 1;
+                buffer.putInt(p, id);
+                buffer.putInt(p += 4, nameId);
+                buffer.putInt(p += 4, context.size());
+                p += 4;
+                for (int contextId : contextIds)
+                {
+                    buffer.putInt(p, contextId);
+                    p += 4;
+                }
+                buffer.putInt(p, types.length);
+                p += 4;
+                for (int c = 0; c < types.length; c++)
+                {
+                    buffer.putInt(p, columnNameIds[c]);
+                    buffer.put(p + 4, (byte) types[c].ordinal());
+                    p += 5;
+                }
+                buffer.put(start, SERIES);
+                return new Series(id, types);
+            }
+        }
+    }
+
+    /**
+     * A series, whose points are recorded with {@link #point(long)}.
+     */
+    public final class Series
+    {
+        private final int id;
+
+        @NotNull
+        private final ColumnType[] types;
+
+        private Series(int id, @NotNull ColumnType[] types)
+        {
+            this.id = id;
+            this.types = types;
+        }
+
+        /**
+         * Gets the {@link Point} of the current thread, reset for a new point
+         * of this series. The values of the columns which are not set are 0,
+         * or {@code null} for strings.
+         * @param timestampMs the timestamp of the point, in milliseconds.
+         */
+        @NotNull
+        public Point point(long timestampMs)
+        {
+            return points.get().reset(this, timestampMs);
+        }
+
+        /**
+         * Records a point with a timestamp and the values of the first columns,
+         * which must be {@link ColumnType#LONG}.
+         * @return {@code true} if the point was written, {@code false} if it
+         * was dropped.
+         */
+        public boolean append(long timestampMs, long value0)
+        {
+            return point(timestampMs).set(0, value0).write();
+        }
+
+        /**
+         * Records a point with a timestamp and the values of the first columns,
+         * which must be {@link ColumnType#LONG}.
+         * @return {@code true} if the point was written, {@code false} if it
+         * was dropped.
+         */
+        public boolean append(long timestampMs, long value0, long value1)
+        {
+            return point(timestampMs).set(0, value0).set(1, value1).write();
+        }
+
+        /**
+         * Records a point with a timestamp and the values of the first columns,
+         * which must be {@link ColumnType#LONG}.
+         * @return {@code true} if the point was written, {@code false} if it
+         * was dropped.
+         */
+        public boolean append(long timestampMs, long value0, long value1, long value2)
+        {
+            return point(timestampMs).set(0, value0).set(1, value1).set(2, value2).write();
+        }
+    }
+
+    /**
+     * A point being recorded. Each thread reuses the same instance, so it must
+     * be written before the thread starts another point.
+     */
+    public final class Point
+    {
+        private Series series;
+
+        private long timestampMs;
+
+        private long[] values = new long[8];
+
+        private Point reset(@NotNull Series series, long timestampMs)
+        {
+            this.series = series;
+            this.timestampMs = timestampMs;
+            int n = series.types.length;
+            if (values.length < n)
+            {
+                values = new long[Math.max(n, values.length * 2)];
+            }
+            for (int i = 0; i < n; i++)
+            {
+                values[i] = series.types[i] == ColumnType.STRING ? NULL_STRING : 0;
+            }
+            return this;
+        }
+
+        private void check(int column, @NotNull ColumnType type)
+        {
+            if (series.types[column] != type)
+            {
+                throw new IllegalArgumentException(
+                    "Column " + column + " is " + series.types[column] + ", not " + type);
+            }
+        }
+
+        /**
+         * Sets the value of a {@link ColumnType#LONG} column.
+         */
+        @NotNull
+        public Point set(int column, long value)
+        {
+            check(column, ColumnType.LONG);
+            values[column] = value;
+            return this;
+        }
+
+        /**
+         * Sets the value of a {@link ColumnType#DOUBLE} column.
+         */
+        @NotNull
+        public Point set(int column, double value)
+        {
+            check(column, ColumnType.DOUBLE);
+            values[column] = Double.doubleToRawLongBits(value);
+            return this;
+        }
+
+        /**
+         * Sets the value of a {@link ColumnType#STRING} column.
+         * @param value the value, or {@code null}.
+         */
+        @NotNull
+        public Point set(int column, @Nullable String value)
+        {
+            check(column, ColumnType.STRING);
+            values[column] = intern(value);
+            return this;
+        }
+
+        /**
+         * Writes the point to the file.
+         * @return {@code true} if the point was written, {@code false} if it
+         * was dropped, either because the file is full or closed, or because
+         * one of its strings couldn't be written.
+         */
+        public boolean write()
+        {
+            int n = series.types.length;
+            for (int i = 0; i < n; i++)
+            {
+                if (values[i] == Integer.MIN_VALUE && series.types[i] == ColumnType.STRING)
+                {
+                    droppedCount.increment();
+                    return false;
+                }
+            }
+
+            int start = reserve(1 + 4 + 8 + n * 8);
+            if (start < 0)
+            {
+                droppedCount.increment();
+                return false;
+            }
+            buffer.putInt(start + 1, series.id);
+            buffer.putLong(start + 5, timestampMs);
+            int p = start + 13;
+            for (int i = 0; i < n; i++, p += 8)
+            {
+                buffer.putLong(p, values[i]);
+            }
+            buffer.put(start, POINT);
+            return true;
+        }
+    }
+}
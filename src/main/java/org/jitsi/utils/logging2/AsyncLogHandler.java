@@ -0,0 +1,630 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils.logging2;
+
+import org.jetbrains.annotations.*;
+import org.jitsi.utils.*;
+import org.jitsi.utils.queue.*;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+import java.util.logging.*;
+import java.util.logging.Formatter;
+
+/**
+ * A {@link Handler} which publishes records to another {@link Handler} on a
+ * dedicated thread, so that formatting and I/O don't run on the threads which
+ * log.
+ * <p>
+ * Records are put in a bounded, lock-free {@link MpscRingBuffer}. A single
+ * writer thread removes them in batches, publishes them to the delegate and
+ * flushes the delegate once per batch. When the ring is full, records are
+ * either dropped (and counted) or the logging thread waits for room, depending
+ * on the {@link OverflowPolicy}.
+ * <p>
+ * Closing the handler (which happens on JVM shutdown if it was created with
+ * {@code flushOnShutdown}) publishes the queued records and closes the
+ * delegate.
+ * <p>
+ * A delegate which implements {@link BatchFlushableHandler} is told not to
+ * flush after every record. The caller of a record is inferred on the logging
+ * thread, with {@link CallerInferringFormatter#inferCallerOf(LogRecord)} if
+ * the formatter of the delegate implements it, or else by
+ * {@link LogRecord#getSourceClassName()}.
+ */
+public class AsyncLogHandler
+    extends Handler
+{
+    /**
+     * The default capacity of the queue.
+     */
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    /**
+     * The maximum number of records published to the delegate between
+     * flushes.
+     */
+    private static final int MAX_BATCH_SIZE = 256;
+
+    /**
+     * The maximum time the writer thread waits for new records before checking
+     * again. Producers wake it up, so this is only a safety net.
+     */
+    private static final long MAX_PARK_NANOS
+        = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * The maximum time {@link #close()} waits for the writer thread.
+     */
+    private static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(5);
+
+    /**
+     * What to do with a record when the queue is full.
+     */
+    public enum OverflowPolicy
+    {
+        /**
+         * Drop the record and count it in {@link #getDroppedCount()}.
+         */
+        DROP,
+
+        /**
+         * Wait for room in the queue. Records logged from the writer thread
+         * itself (e.g. by the delegate) are still dropped, since nothing would
+         * make room for them.
+         */
+        BLOCK
+    }
+
+    /**
+     * The handler which formats and writes the records.
+     */
+    @NotNull
+    private final Handler delegate;
+
+    @NotNull
+    private final OverflowPolicy overflowPolicy;
+
+    @NotNull
+    private final MpscRingBuffer<LogRecord> queue;
+
+    @NotNull
+    private final Thread writer;
+
+    /**
+     * The thread registered to close this handler on shutdown, if any.
+     */
+    private final Thread shutdownHook;
+
+    /**
+     * Whether the writer thread is (about to be) parked waiting for records.
+     */
+    private volatile boolean writerWaiting = false;
+
+    private volatile boolean closed = false;
+
+    /**
+     * Whether {@link #close()} has published the last queued records and
+     * closed the delegate. Guarded by the lock of this instance.
+     */
+    private boolean delegateClosed = false;
+
+    /**
+     * The number of records which were added to the queue.
+     */
+    private final AtomicLong queuedCount = new AtomicLong();
+
+    /**
+     * The number of records which were dropped because the queue was full or
+     * the handler was closed.
+     */
+    private final LongAdder droppedCount = new LongAdder();
+
+    /**
+     * The number of records which were removed from the queue and published to
+     * the delegate. Only written by the thread which removes records.
+     */
+    private volatile long publishedCount = 0;
+
+    /**
+     * Notified when records have been published while {@link #flush()} waits
+     * for them, or when this handler is closed.
+     */
+    private final Object publishedLock = new Object();
+
+    /**
+     * The number of threads waiting in {@link #flush()}. Modified under
+     * {@link #publishedLock}.
+     */
+    private volatile int flushWaiters = 0;
+
+    /**
+     * Initializes a new {@link AsyncLogHandler} configured with
+     * {@link LogManager} properties, so that it can be installed in the
+     * logging configuration like the handlers of {@code java.util.logging}.
+     * The handler is closed on shutdown. The properties, prefixed with the
+     * name of this class and a dot, are:
+     * <ul>
+     * <li>{@code delegate}: the name of the class of the handler to publish
+     * records to, which must have a public no-arg constructor. Defaults to
+     * {@link ConsoleHandler}.</li>
+     * <li>{@code capacity}: the maximum number of queued records. Defaults to
+     * {@link #DEFAULT_CAPACITY}.</li>
+     * <li>{@code overflowPolicy}: the name of an {@link OverflowPolicy}.
+     * Defaults to {@link OverflowPolicy#DROP}.</li>
+     * <li>{@code level}: the level of this handler. Defaults to
+     * {@link Level#ALL}.</li>
+     * </ul>
+     */
+    public AsyncLogHandler()
+    {
+        this(
+            createDelegate(getProperty("delegate")),
+            getCapacityProperty(),
+            getOverflowPolicyProperty(),
+            true);
+
+        String level = getProperty("level");
+        if (level != null)
+        {
+            try
+            {
+                setLevel(Level.parse(level.trim()));
+            }
+            catch (IllegalArgumentException e)
+            {
+                reportError("Invalid level: " + level, e, ErrorManager.GENERIC_FAILURE);
+            }
+        }
+    }
+
+    /**
+     * Initializes a new {@link AsyncLogHandler} which drops records when its
+     * queue is full and is closed on shutdown.
+     * @param delegate the handler to publish records to.
+     */
+    public AsyncLogHandler(@NotNull Handler delegate)
+    {
+        this(delegate, DEFAULT_CAPACITY, OverflowPolicy.DROP, true);
+    }
+
+    /**
+     * Initializes a new {@link AsyncLogHandler}.
+     * @param delegate the handler to publish records to.
+     * @param capacity the maximum number of queued records.
+     * @param overflowPolicy what to do with records when the queue is full.
+     * @param flushOnShutdown whether to register a shutdown hook which closes
+     * this handler, publishing the queued records.
+     */
+    public AsyncLogHandler(
+        @NotNull Handler delegate,
+        int capacity,
+        @NotNull OverflowPolicy overflowPolicy,
+        boolean flushOnShutdown)
+    {
+        this.delegate = delegate;
+        this.overflowPolicy = overflowPolicy;
+        if (delegate instanceof BatchFlushableHandler)
+        {
+            // The writer thread flushes once per batch.
+            ((BatchFlushableHandler) delegate).setFlushOnPublish(false);
+        }
+        this.queue = new MpscRingBuffer<>(capacity);
+
+        writer = new Thread(this::runWriter, "AsyncLogHandler-writer");
+        writer.setDaemon(true);
+        writer.start();
+
+        if (flushOnShutdown)
+        {
+            shutdownHook = new Thread(this::close, "AsyncLogHandler-shutdown");
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+        }
+        else
+        {
+            shutdownHook = null;
+        }
+    }
+
+    /**
+     * Queues a record to be published to the delegate by the writer thread.
+     * {@inheritDoc}
+     */
+    @Override
+    public void publish(LogRecord record)
+    {
+        if (record == null || !isLoggable(record))
+        {
+            return;
+        }
+        if (closed)
+        {
+            droppedCount.increment();
+            return;
+        }
+
+        // The source class and method are inferred from the stack of the
+        // logging thread, so that has to happen here.
+        Formatter formatter = delegate.getFormatter();
+        if (formatter instanceof CallerInferringFormatter)
+        {
+            ((CallerInferringFormatter) formatter).inferCallerOf(record);
+        }
+        else
+        {
+            record.getSourceClassName();
+        }
+
+        if (!queue.offer(record) && !offerBlocking(record))
+        {
+            droppedCount.increment();
+            return;
+        }
+        queuedCount.incrementAndGet();
+
+        if (closed)
+        {
+            // close() may have drained the queue before the record was added.
+            dropAfterClose();
+        }
+        else if (writerWaiting)
+        {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * Drops (and counts) the records left in the queue by producers which
+     * raced with {@link #close()}, if it has already published the last
+     * queued records. Otherwise {@link #close()} will publish them.
+     */
+    private void dropAfterClose()
+    {
+        synchronized (this)
+        {
+            if (delegateClosed)
+            {
+                while (queue.poll() != null)
+                {
+                    droppedCount.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits for room for a record in the queue if the {@link #overflowPolicy}
+     * allows it.
+     * @return {@code true} if the record was queued.
+     */
+    private boolean offerBlocking(@NotNull LogRecord record)
+    {
+        if (overflowPolicy != OverflowPolicy.BLOCK
+            || Thread.currentThread() == writer)
+        {
+            return false;
+        }
+        try
+        {
+            while (!closed)
+            {
+                if (queue.offer(record, MAX_PARK_NANOS, TimeUnit.NANOSECONDS))
+                {
+                    return true;
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    /**
+     * Runs on the writer thread until this handler is closed.
+     */
+    private void runWriter()
+    {
+        List<LogRecord> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        while (!closed)
+        {
+            if (publishBatch(batch) > 0)
+            {
+                continue;
+            }
+
+            writerWaiting = true;
+            // Re-check after announcing that we're waiting, so that a record
+            // queued concurrently is not left until the next wake-up.
+            if (queue.size() == 0 && !closed)
+            {
+                LockSupport.parkNanos(this, MAX_PARK_NANOS);
+            }
+            writerWaiting = false;
+        }
+    }
+
+    /**
+     * Removes a batch of records from the queue, publishes them to the
+     * delegate and flushes it.
+     * @param batch an empty list to use for the batch.
+     * @return the number of records published.
+     */
+    private int publishBatch(@NotNull List<LogRecord> batch)
+    {
+        int n = queue.drainTo(batch, MAX_BATCH_SIZE);
+        if (n == 0)
+        {
+            return 0;
+        }
+        for (LogRecord record : batch)
+        {
+            try
+            {
+                delegate.publish(record);
+            }
+            catch (RuntimeException e)
+            {
+                reportError(null, e, ErrorManager.WRITE_FAILURE);
+            }
+        }
+        batch.clear();
+        try
+        {
+            delegate.flush();
+        }
+        catch (RuntimeException e)
+        {
+            reportError(null, e, ErrorManager.FLUSH_FAILURE);
+        }
+        publishedCount += n;
+        if (flushWaiters > 0)
+        {
+            notifyPublished();
+        }
+        return n;
+    }
+
+    /**
+     * Wakes up the threads waiting in {@link #flush()}.
+     */
+    private void notifyPublished()
+    {
+        synchronized (publishedLock)
+        {
+            publishedLock.notifyAll();
+        }
+    }
+
+    /**
+     * Waits (for a bounded time) until the records queued before this call
+     * have been published, and flushes the delegate.
+     */
+    @Override
+    public void flush()
+    {
+        long target = queuedCount.get();
+        if (Thread.currentThread() != writer)
+        {
+            awaitPublished(target);
+        }
+        delegate.flush();
+    }
+
+    /**
+     * Waits (for a bounded time) until a number of records have been
+     * published, or this handler is closed.
+     * @param target the value of {@link #publishedCount} to wait for.
+     */
+    private void awaitPublished(long target)
+    {
+        long deadline = System.nanoTime() + CLOSE_TIMEOUT.toNanos();
+        synchronized (publishedLock)
+        {
+            // The writer reads flushWaiters after updating publishedCount, and
+            // this reads publishedCount after updating flushWaiters, so one of
+            // them sees the other's update and no notification is missed.
+            flushWaiters++;
+            try
+            {
+                long remaining;
+                while (publishedCount < target
+                    && !closed
+                    && (remaining = deadline - System.nanoTime()) > 0)
+                {
+                    LockSupport.unpark(writer);
+                    TimeUnit.NANOSECONDS.timedWait(publishedLock, remaining);
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            finally
+            {
+                flushWaiters--;
+            }
+        }
+    }
+
+    /**
+     * Stops the writer thread, publishes the records which are still queued
+     * and closes the delegate. Records published afterwards are dropped.
+     */
+    @Override
+    public void close()
+    {
+        synchronized (this)
+        {
+            if (closed)
+            {
+                return;
+            }
+            closed = true;
+        }
+        notifyPublished();
+
+        LockSupport.unpark(writer);
+        if (Thread.currentThread() != writer)
+        {
+            try
+            {
+                writer.join(CLOSE_TIMEOUT.toMillis());
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized (this)
+        {
+            if (!writer.isAlive())
+            {
+                // The writer is done, so this is now the only consumer (along
+                // with dropAfterClose, which waits for this).
+                List<LogRecord> batch = new ArrayList<>(MAX_BATCH_SIZE);
+                int n;
+                do
+                {
+                    n = publishBatch(batch);
+                }
+                while (n > 0);
+            }
+            delegateClosed = true;
+        }
+
+        if (shutdownHook != null && Thread.currentThread() != shutdownHook)
+        {
+            try
+            {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            }
+            catch (IllegalStateException e)
+            {
+                // Shutdown is already in progress.
+            }
+        }
+
+        delegate.close();
+    }
+
+    /**
+     * Creates the delegate configured with the {@code delegate} property.
+     */
+    @NotNull
+    private static Handler createDelegate(String className)
+    {
+        if (className == null)
+        {
+            return new ConsoleHandler();
+        }
+        try
+        {
+            return (Handler) ClassLoader.getSystemClassLoader()
+                .loadClass(className.trim())
+                .getDeclaredConstructor()
+                .newInstance();
+        }
+        catch (ReflectiveOperationException | ClassCastException e)
+        {
+            throw new IllegalArgumentException("Can not create the delegate handler " + className, e);
+        }
+    }
+
+    private static int getCapacityProperty()
+    {
+        String capacity = getProperty("capacity");
+        try
+        {
+            return capacity == null ? DEFAULT_CAPACITY : Integer.parseInt(capacity.trim());
+        }
+        catch (NumberFormatException e)
+        {
+            return DEFAULT_CAPACITY;
+        }
+    }
+
+    @NotNull
+    private static OverflowPolicy getOverflowPolicyProperty()
+    {
+        String policy = getProperty("overflowPolicy");
+        try
+        {
+            return policy == null ? OverflowPolicy.DROP : OverflowPolicy.valueOf(policy.trim());
+        }
+        catch (IllegalArgumentException e)
+        {
+            return OverflowPolicy.DROP;
+        }
+    }
+
+    private static String getProperty(@NotNull String name)
+    {
+        return LogManager.getLogManager().getProperty(AsyncLogHandler.class.getName() + "." + name);
+    }
+
+    /**
+     * Gets the number of records waiting to be published.
+     */
+    public int getQueueSize()
+    {
+        return queue.size();
+    }
+
+    /**
+     * Gets the maximum number of records which can be queued.
+     */
+    public int getCapacity()
+    {
+        return queue.capacity();
+    }
+
+    /**
+     * Gets the number of records which were dropped because the queue was
+     * full or the handler was closed.
+     */
+    public long getDroppedCount()
+    {
+        return droppedCount.sum();
+    }
+
+    /**
+     * Gets the number of records which were published to the delegate.
+     */
+    public long getPublishedCount()
+    {
+        return publishedCount;
+    }
+
+    /**
+     * Gets a snapshot of the statistics of this handler.
+     */
+    @NotNull
+    public OrderedJsonObject getStats()
+    {
+        OrderedJsonObject stats = new OrderedJsonObject();
+        stats.put("queue_size", getQueueSize());
+        stats.put("capacity", getCapacity());
+        stats.put("published", getPublishedCount());
+        stats.put("dropped", getDroppedCount());
+        return stats;
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils.logging2;
+
+import java.util.logging.*;
+
+/**
+ * Implemented by {@link Handler}s which flush after every record by default,
+ * and can leave flushing to a caller which publishes records in batches and
+ * calls {@link Handler#flush()} once per batch, like {@link AsyncLogHandler}.
+ */
+public interface BatchFlushableHandler
+{
+    /**
+     * Sets whether the handler flushes after every record (the default).
+     * @param flushOnPublish {@code false} to only flush in
+     * {@link Handler#flush()} and {@link Handler#close()}.
+     */
+    void setFlushOnPublish(boolean flushOnPublish);
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils.logging2;
+
+import org.jetbrains.annotations.*;
+
+import java.util.logging.*;
+
+/**
+ * Implemented by {@link Formatter}s which infer the caller of a record from
+ * the stack of the thread which logged it. Handlers which format records on
+ * another thread, like {@link AsyncLogHandler}, call
+ * {@link #inferCallerOf(LogRecord)} before handing the record over.
+ */
+public interface CallerInferringFormatter
+{
+    /**
+     * Infers the caller of a record and stores it in the record, if that
+     * hasn't been done already. Must be called on the thread which logged the
+     * record.
+     * @param record the record.
+     */
+    void inferCallerOf(@NotNull LogRecord record);
+}
@@ -16,6 +16,7 @@
 
 package org.jitsi.utils.logging2;
 
+import java.util.*;
 import java.util.logging.*;
 
 /**
@@ -28,14 +29,68 @@ import java.util.logging.*;
 public class ContextLogRecord extends LogRecord
 {
     protected final String context;
+
+    /**
+     * The key-value pairs which {@link #context} was formatted from.
+     */
+    protected final Map<String, String> contextFields;
+
     public ContextLogRecord(Level level, String msg, String context)
+    {
+        this(level, msg, context, Collections.emptyMap());
+    }
+
+    /**
+     * @param contextFields the key-value pairs which {@code context} was
+     * formatted from (see {@link LogContext#getFields()}), for formatters
+     * which output them as separate fields. The map is not copied and must
+     * not be modified.
+     */
+    public ContextLogRecord(
+        Level level,
+        String msg,
+        String context,
+        Map<String, String> contextFields)
     {
         super(level, msg);
         this.context = context;
+        this.contextFields = contextFields;
     }
 
     public String getContext()
     {
         return context;
     }
+
+    public Map<String, String> getContextFields()
+    {
+        return contextFields;
+    }
+
+    /**
+     * The line number of the caller, once it has been inferred.
+     */
+    private int callerLineNumber = -1;
+
+    /**
+     * Whether the caller has been inferred, see
+     * {@link JitsiLogFormatter#inferCaller(LogRecord)}.
+     */
+    private boolean callerInferred = false;
+
+    boolean isCallerInferred()
+    {
+        return callerInferred;
+    }
+
+    int getCallerLineNumber()
+    {
+        return callerLineNumber;
+    }
+
+    void setCallerLineNumber(int callerLineNumber)
+    {
+        this.callerLineNumber = callerLineNumber;
+        this.callerInferred = true;
+    }
 }
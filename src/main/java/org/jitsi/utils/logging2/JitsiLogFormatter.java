@@ -16,12 +16,26 @@
 
 package org.jitsi.utils.logging2;
 
+import org.jetbrains.annotations.*;
+
 import java.io.*;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
+import java.util.concurrent.*;
+import java.util.function.*;
 import java.util.logging.*;
+import java.util.stream.*;
 
+/**
+ * Formats log records as single lines, with the context of
+ * {@link ContextLogRecord}s and the caller's class, method and line number.
+ * <p>
+ * Formatting doesn't take a lock: each thread reuses its own
+ * {@link StringBuilder}, and the date and time up to the second are only
+ * formatted when the second changes.
+ */
 public class JitsiLogFormatter extends Formatter
+    implements CallerInferringFormatter
 {
     /**
      * Program name logging property name
@@ -50,10 +64,48 @@ public class JitsiLogFormatter extends Formatter
     private static boolean timestampDisabled = false;
 
     /**
-     * The formatter to use for timestamps.
+     * The formatter to use for the part of timestamps up to the second. The
+     * milliseconds are appended separately, giving "yyyy-MM-dd HH:mm:ss.SSS ".
+     */
+    private static final DateTimeFormatter timestampSecondsFormatter =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.");
+
+    /**
+     * The maximum capacity of a thread's {@link StringBuilder} which is kept
+     * for reuse, so that one huge message doesn't pin memory forever.
+     */
+    private static final int MAX_REUSED_CAPACITY = 16 * 1024;
+
+    /**
+     * The maximum number of frames inspected to find the caller.
      */
-    private static final DateTimeFormatter timestampFormatter =
-            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS ");
+    private static final int MAX_STACK_DEPTH = 64;
+
+    private static final StackWalker stackWalker = StackWalker.getInstance();
+
+    /**
+     * Finds the first frame before the logger classes, see
+     * {@link #inferCaller(LogRecord)}.
+     */
+    private static final Function<Stream<StackWalker.StackFrame>, StackWalker.StackFrame> findCaller
+        = frames -> frames
+            .limit(MAX_STACK_DEPTH)
+            .dropWhile(frame -> !isLoggerImpl(frame.getClassName()))
+            .filter(frame -> !frame.getClassName().contains("org.jitsi.utils.logging"))
+            .findFirst()
+            .orElse(null);
+
+    /**
+     * The class names without their package, by class name.
+     */
+    private static final ConcurrentMap<String, String> shortClassNames
+        = new ConcurrentHashMap<>();
+
+    /**
+     * The reusable state of each thread which formats records.
+     */
+    private static final ThreadLocal<FormatBuffer> buffers
+        = ThreadLocal.withInitial(FormatBuffer::new);
 
     /**
      * The default constructor for <tt>JitsiLogFormatter</tt> which loads
@@ -70,9 +122,10 @@ public class JitsiLogFormatter extends Formatter
      * @return a formatted log record
      */
     @Override
-    public synchronized String format(LogRecord record)
+    public String format(LogRecord record)
     {
-        StringBuilder sb = new StringBuilder();
+        FormatBuffer buffer = buffers.get();
+        StringBuilder sb = buffer.builder();
 
         if (programName != null)
         {
@@ -84,7 +137,7 @@ public class JitsiLogFormatter extends Formatter
 
         if (!timestampDisabled)
         {
-            sb.append(timestampFormatter.format(ZonedDateTime.ofInstant(record.getInstant(), ZoneId.systemDefault())));
+            buffer.appendTimestamp(record.getMillis());
         }
 
         //log level
@@ -92,14 +145,14 @@ public class JitsiLogFormatter extends Formatter
         sb.append(": ");
 
         // Thread ID
-        sb.append("[").append(record.getThreadID()).append("] ");
+        sb.append('[').append(record.getThreadID()).append("] ");
 
         if (record instanceof ContextLogRecord)
         {
             String context = ((ContextLogRecord)record).getContext();
             if (!context.isEmpty())
             {
-                sb.append(context).append(" ");
+                sb.append(context).append(' ');
             }
         }
 
@@ -110,13 +163,13 @@ public class JitsiLogFormatter extends Formatter
 
         if (record.getSourceMethodName() != null)
         {
-            sb.append(".");
+            sb.append('.');
             sb.append(record.getSourceMethodName());
 
             //include the line number if we have it.
             if (lineNumber != -1)
             {
-                sb.append("#").append(lineNumber);
+                sb.append('#').append(lineNumber);
             }
         }
         sb.append(": ");
@@ -139,54 +192,128 @@ public class JitsiLogFormatter extends Formatter
         return sb.toString();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void inferCallerOf(@NotNull LogRecord record)
+    {
+        inferCaller(record);
+    }
+
     /**
      * Try to extract the name of the class and method that called the current
-     * log statement.
+     * log statement, if that hasn't been done for this record already.
+     * <p>
+     * This must be called on the thread which logged the record. Handlers
+     * which format records on another thread must call it before handing
+     * the record over.
      *
      * @param record the logrecord where class and method name should be stored.
      *
-     * @return the line number that the call was made from in the caller.
+     * @return the line number that the call was made from in the caller, or -1
+     * if it is not known.
      */
-    private int inferCaller(LogRecord record)
+    static int inferCaller(LogRecord record)
     {
-        // Get the stack trace.
-        StackTraceElement[] stack = (new Throwable()).getStackTrace();
+        if (record instanceof ContextLogRecord)
+        {
+            ContextLogRecord contextRecord = (ContextLogRecord) record;
+            if (!contextRecord.isCallerInferred())
+            {
+                contextRecord.setCallerLineNumber(doInferCaller(record));
+            }
+            return contextRecord.getCallerLineNumber();
+        }
+        return doInferCaller(record);
+    }
+
+    /**
+     * Finds the first frame before the logger classes in the current stack,
+     * and stores its class and method name in a record.
+     *
+     * @return the line number of the frame, or -1 if none was found.
+     */
+    private static int doInferCaller(LogRecord record)
+    {
+        StackWalker.StackFrame frame = stackWalker.walk(findCaller);
+        if (frame == null)
+        {
+            return -1;
+        }
+
+        String className = frame.getClassName();
+        record.setSourceClassName(
+            shortClassNames.computeIfAbsent(
+                className,
+                name -> name.substring(name.lastIndexOf('.') + 1)));
+        record.setSourceMethodName(frame.getMethodName());
+        return frame.getLineNumber();
+    }
+
+    private static boolean isLoggerImpl(String className)
+    {
+        return className.equals("org.jitsi.utils.logging2.LoggerImpl")
+            || className.equals("org.jitsi.utils.logging.LoggerImpl");
+    }
+
+    /**
+     * The state which a thread reuses across calls to {@link #format}.
+     */
+    private static final class FormatBuffer
+    {
+        private StringBuilder sb = new StringBuilder(256);
+
+        /**
+         * The epoch second of {@link #secondsPrefix}.
+         */
+        private long cachedEpochSecond = Long.MIN_VALUE;
 
-        //the line number that the caller made the call from
-        int lineNumber = -1;
+        /**
+         * The formatted date and time of {@link #cachedEpochSecond}.
+         */
+        private String secondsPrefix;
 
-        // First, search back to a method in the SIP Communicator Logger class.
-        int ix = 0;
-        while (ix < stack.length)
+        /**
+         * Gets the builder of this thread, emptied.
+         */
+        StringBuilder builder()
         {
-            StackTraceElement frame = stack[ix];
-            String cname = frame.getClassName();
-            if (cname.equals("org.jitsi.utils.logging2.LoggerImpl") ||
-                cname.equals("org.jitsi.utils.logging.LoggerImpl"))
+            if (sb.capacity() > MAX_REUSED_CAPACITY)
             {
-                break;
+                sb = new StringBuilder(256);
             }
-            ix++;
+            sb.setLength(0);
+            return sb;
         }
-        // Now search for the first frame
-        // before the SIP Communicator Logger class.
-        while (ix < stack.length)
+
+        /**
+         * Appends a timestamp in the format "yyyy-MM-dd HH:mm:ss.SSS ", in the
+         * system default time zone.
+         */
+        void appendTimestamp(long epochMillis)
         {
-            StackTraceElement frame = stack[ix];
-            lineNumber=stack[ix].getLineNumber();
-            String cname = frame.getClassName();
-            String shortName = cname.substring(cname.lastIndexOf(".") + 1);
-            if (!cname.contains("org.jitsi.utils.logging"))
+            long epochSecond = Math.floorDiv(epochMillis, 1000L);
+            if (epochSecond != cachedEpochSecond)
+            {
+                secondsPrefix = timestampSecondsFormatter.format(
+                    ZonedDateTime.ofInstant(
+                        Instant.ofEpochSecond(epochSecond),
+                        ZoneId.systemDefault()));
+                cachedEpochSecond = epochSecond;
+            }
+            int millis = (int) Math.floorMod(epochMillis, 1000L);
+            sb.append(secondsPrefix);
+            if (millis < 100)
             {
-                // We've found the relevant frame.
-                record.setSourceClassName(shortName);
-                record.setSourceMethodName(frame.getMethodName());
-                break;
+                sb.append('0');
             }
-            ix++;
+            if (millis < 10)
+            {
+                sb.append('0');
+            }
+            sb.append(millis).append(' ');
         }
-
-        return lineNumber;
     }
 
     /**
@@ -0,0 +1,181 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils.logging2;
+
+import org.jetbrains.annotations.*;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.util.logging.*;
+
+/**
+ * A {@link Handler} which writes records to a stream as JSON lines. With the
+ * default {@link JsonLogFormatter}, records are formatted straight into the
+ * (buffered) stream writer, without creating a {@link String} per record.
+ * Other formatters are used through {@link Formatter#format(LogRecord)}.
+ * <p>
+ * The stream is flushed after every record, like {@link ConsoleHandler}
+ * does, unless this is the delegate of an {@link AsyncLogHandler}, which
+ * flushes once per batch instead (see {@link #setFlushOnPublish(boolean)}).
+ */
+public class JsonLinesHandler
+    extends Handler
+    implements BatchFlushableHandler
+{
+    @NotNull
+    private final Writer writer;
+
+    /**
+     * Whether {@link #close()} closes the stream, as opposed to only flushing
+     * it.
+     */
+    private final boolean closeStream;
+
+    private boolean closed = false;
+
+    /**
+     * Whether the stream is flushed after every record.
+     */
+    private volatile boolean flushOnPublish = true;
+
+    /**
+     * Initializes a new {@link JsonLinesHandler} which writes to
+     * {@link System#err}, like {@link ConsoleHandler}. Like the handlers of
+     * {@code java.util.logging}, it is configured with the {@code level} and
+     * {@code formatter} {@link LogManager} properties, prefixed with the name
+     * of this class and a dot. They default to {@link Level#ALL} and
+     * {@link JsonLogFormatter}.
+     */
+    public JsonLinesHandler()
+    {
+        this(System.err, false);
+
+        LogManager manager = LogManager.getLogManager();
+        String prefix = JsonLinesHandler.class.getName();
+        String level = manager.getProperty(prefix + ".level");
+        String formatter = manager.getProperty(prefix + ".formatter");
+        try
+        {
+            if (level != null)
+            {
+                setLevel(Level.parse(level.trim()));
+            }
+            if (formatter != null)
+            {
+                setFormatter((Formatter) ClassLoader.getSystemClassLoader()
+                    .loadClass(formatter.trim())
+                    .getDeclaredConstructor()
+                    .newInstance());
+            }
+        }
+        catch (ReflectiveOperationException | RuntimeException e)
+        {
+            reportError("Invalid configuration", e, ErrorManager.GENERIC_FAILURE);
+        }
+    }
+
+    /**
+     * Initializes a new {@link JsonLinesHandler} which writes to a stream, and
+     * closes it when it is closed.
+     * @param out the stream to write to.
+     */
+    public JsonLinesHandler(@NotNull OutputStream out)
+    {
+        this(out, true);
+    }
+
+    private JsonLinesHandler(@NotNull OutputStream out, boolean closeStream)
+    {
+        this.writer = new BufferedWriter(
+            new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        this.closeStream = closeStream;
+        setFormatter(new JsonLogFormatter());
+    }
+
+    /**
+     * Sets whether the stream is flushed after every record (the default).
+     * {@link AsyncLogHandler} turns it off for its delegate.
+     */
+    @Override
+    public void setFlushOnPublish(boolean flushOnPublish)
+    {
+        this.flushOnPublish = flushOnPublish;
+    }
+
+    @Override
+    public synchronized void publish(LogRecord record)
+    {
+        if (closed || !isLoggable(record))
+        {
+            return;
+        }
+        try
+        {
+            Formatter formatter = getFormatter();
+            if (formatter instanceof JsonLogFormatter)
+            {
+                ((JsonLogFormatter) formatter).formatTo(record, writer);
+            }
+            else
+            {
+                writer.write(formatter.format(record));
+            }
+            if (flushOnPublish)
+            {
+                writer.flush();
+            }
+        }
+        catch (IOException | RuntimeException e)
+        {
+            reportError(null, e, ErrorManager.WRITE_FAILURE);
+        }
+    }
+
+    @Override
+    public synchronized void flush()
+    {
+        if (closed)
+        {
+            return;
+        }
+        try
+        {
+            writer.flush();
+        }
+        catch (IOException e)
+        {
+            reportError(null, e, ErrorManager.FLUSH_FAILURE);
+        }
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        flush();
+        closed = true;
+        if (closeStream)
+        {
+            try
+            {
+                writer.close();
+            }
+            catch (IOException e)
+            {
+                reportError(null, e, ErrorManager.CLOSE_FAILURE);
+            }
+        }
+    }
+}
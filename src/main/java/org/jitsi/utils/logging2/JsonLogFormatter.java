@@ -0,0 +1,365 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils.logging2;
+
+import org.jetbrains.annotations.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.logging.*;
+import java.util.logging.Formatter;
+
+/**
+ * Formats log records as JSON objects, one per line ("JSON lines"), for log
+ * pipelines which would otherwise have to parse the output of
+ * {@link JitsiLogFormatter}. For example:
+ * <pre>
+ * {"timestamp":1577836800000,"level":"INFO","thread":12,"logger":"org.jitsi.Foo",
+ *  "context":{"confId":"1","epId":"a"},"class":"Foo","method":"bar","line":42,
+ *  "message":"hello","exception":"java.lang.Exception: ..."}
+ * </pre>
+ * (without the line breaks). The timestamp is in milliseconds since the
+ * epoch. The context of a {@link ContextLogRecord} is written as an object,
+ * and the fields which are not known are omitted.
+ * <p>
+ * {@link #formatTo(LogRecord, Appendable)} writes directly to a
+ * {@link Writer}, which {@link JsonLinesHandler} uses to avoid building a
+ * {@link String} per record.
+ */
+public class JsonLogFormatter
+    extends Formatter
+    implements CallerInferringFormatter
+{
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * Formats a record as a line of JSON, including the terminating newline.
+     * @param record the record to format.
+     * @return the formatted record.
+     */
+    @Override
+    public String format(LogRecord record)
+    {
+        StringBuilder sb = new StringBuilder(256);
+        try
+        {
+            formatTo(record, sb);
+        }
+        catch (IOException e)
+        {
+            // StringBuilder doesn't throw.
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void inferCallerOf(@NotNull LogRecord record)
+    {
+        JitsiLogFormatter.inferCaller(record);
+    }
+
+    /**
+     * Formats a record as a line of JSON, including the terminating newline,
+     * and appends it to {@code out}.
+     * @param record the record to format.
+     * @param out where to write the formatted record.
+     * @throws IOException if {@code out} fails.
+     */
+    public void formatTo(@NotNull LogRecord record, @NotNull Appendable out)
+        throws IOException
+    {
+        out.append("{\"timestamp\":");
+        appendLong(out, record.getMillis());
+
+        out.append(",\"level\":");
+        appendString(out, record.getLevel().getName());
+
+        out.append(",\"thread\":");
+        appendLong(out, getThreadID(record));
+
+        if (record.getLoggerName() != null)
+        {
+            out.append(",\"logger\":");
+            appendString(out, record.getLoggerName());
+        }
+
+        if (record instanceof ContextLogRecord)
+        {
+            Map<String, String> fields
+                = ((ContextLogRecord) record).getContextFields();
+            if (!fields.isEmpty())
+            {
+                out.append(",\"context\":{");
+                boolean first = true;
+                for (Map.Entry<String, String> field : fields.entrySet())
+                {
+                    if (!first)
+                    {
+                        out.append(',');
+                    }
+                    first = false;
+                    appendString(out, field.getKey());
+                    out.append(':');
+                    appendString(out, field.getValue());
+                }
+                out.append('}');
+            }
+        }
+
+        int lineNumber = JitsiLogFormatter.inferCaller(record);
+        if (record.getSourceClassName() != null)
+        {
+            out.append(",\"class\":");
+            appendString(out, record.getSourceClassName());
+        }
+        if (record.getSourceMethodName() != null)
+        {
+            out.append(",\"method\":");
+            appendString(out, record.getSourceMethodName());
+        }
+        if (lineNumber != -1)
+        {
+            out.append(",\"line\":");
+            appendLong(out, lineNumber);
+        }
+
+        out.append(",\"message\":");
+        // formatMessage localizes and expands the parameters, but it is
+        // synchronized, so skip it for the usual plain messages.
+        Object[] parameters = record.getParameters();
+        appendString(
+            out,
+            record.getResourceBundle() == null && (parameters == null || parameters.length == 0)
+                ? record.getMessage()
+                : formatMessage(record));
+
+        if (record.getThrown() != null)
+        {
+            out.append(",\"exception\":\"");
+            PrintWriter pw = new PrintWriter(new EscapingWriter(out));
+            record.getThrown().printStackTrace(pw);
+            pw.flush();
+            out.append('"');
+        }
+
+        out.append("}\n");
+    }
+
+    /**
+     * Gets the ID of the thread of a record. {@link LogRecord#getThreadID()}
+     * is deprecated as of Java 16, but its replacement isn't available in
+     * Java 11.
+     */
+    @SuppressWarnings("deprecation")
+    private static int getThreadID(LogRecord record)
+    {
+        return record.getThreadID();
+    }
+
+    /**
+     * Appends a JSON string, or {@code null}.
+     */
+    private static void appendString(Appendable out, String s)
+        throws IOException
+    {
+        if (s == null)
+        {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        appendEscaped(out, s, 0, s.length());
+        out.append('"');
+    }
+
+    /**
+     * Appends characters, escaped for use in a JSON string.
+     */
+    private static void appendEscaped(
+        Appendable out, CharSequence s, int start, int end)
+        throws IOException
+    {
+        int unescaped = start;
+        for (int i = start; i < end; i++)
+        {
+            char c = s.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\')
+            {
+                continue;
+            }
+            appendRange(out, s, unescaped, i);
+            unescaped = i + 1;
+            switch (c)
+            {
+            case '"':
+                out.append("\\\"");
+                break;
+            case '\\':
+                out.append("\\\\");
+                break;
+            case '\n':
+                out.append("\\n");
+                break;
+            case '\r':
+                out.append("\\r");
+                break;
+            case '\t':
+                out.append("\\t");
+                break;
+            default:
+                out.append("\\u00")
+                    .append(HEX_DIGITS[c >> 4])
+                    .append(HEX_DIGITS[c & 0xf]);
+            }
+        }
+        appendRange(out, s, unescaped, end);
+    }
+
+    /**
+     * Appends a range of characters. {@link Writer#append(CharSequence, int,
+     * int)} creates a {@link String} for the range, so writers are written to
+     * directly.
+     */
+    private static void appendRange(
+        Appendable out, CharSequence s, int start, int end)
+        throws IOException
+    {
+        if (start == end)
+        {
+            return;
+        }
+        if (out instanceof Writer)
+        {
+            Writer writer = (Writer) out;
+            if (s instanceof String)
+            {
+                writer.write((String) s, start, end - start);
+                return;
+            }
+            if (s instanceof CharArraySequence)
+            {
+                writer.write(((CharArraySequence) s).chars, start, end - start);
+                return;
+            }
+        }
+        out.append(s, start, end);
+    }
+
+    /**
+     * Appends the decimal representation of a number without creating a
+     * {@link String}.
+     */
+    private static void appendLong(Appendable out, long value)
+        throws IOException
+    {
+        if (value < 0)
+        {
+            if (value == Long.MIN_VALUE)
+            {
+                out.append(Long.toString(value));
+                return;
+            }
+            out.append('-');
+            value = -value;
+        }
+        if (value >= 10)
+        {
+            appendLong(out, value / 10);
+        }
+        out.append((char) ('0' + value % 10));
+    }
+
+    /**
+     * A {@link Writer} which escapes what is written to it for use in a JSON
+     * string, and appends it to an {@link Appendable}.
+     */
+    private static class EscapingWriter
+        extends Writer
+    {
+        private final Appendable out;
+
+        EscapingWriter(Appendable out)
+        {
+            this.out = out;
+        }
+
+        @Override
+        public void write(@NotNull char[] cbuf, int off, int len)
+            throws IOException
+        {
+            appendEscaped(out, new CharArraySequence(cbuf), off, off + len);
+        }
+
+        @Override
+        public void write(@NotNull String str, int off, int len)
+            throws IOException
+        {
+            appendEscaped(out, str, off, off + len);
+        }
+
+        @Override
+        public void flush()
+        {
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+
+    /**
+     * A read-only {@link CharSequence} view of a char array.
+     */
+    private static class CharArraySequence
+        implements CharSequence
+    {
+        private final char[] chars;
+
+        CharArraySequence(char[] chars)
+        {
+            this.chars = chars;
+        }
+
+        @Override
+        public int length()
+        {
+            return chars.length;
+        }
+
+        @Override
+        public char charAt(int index)
+        {
+            return chars[index];
+        }
+
+        @Override
+        public @NotNull CharSequence subSequence(int start, int end)
+        {
+            return new String(chars, start, end - start);
+        }
+
+        @Override
+        public @NotNull String toString()
+        {
+            return new String(chars);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils.logging2;
+
+import org.jetbrains.annotations.*;
+import org.jitsi.utils.*;
+
+import java.time.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Decides which messages logged at a call site are actually logged, for call
+ * sites which may otherwise flood the logs (e.g. once per dropped packet).
+ * A limiter holds the state of one call site, and is meant to be kept in a
+ * (usually static) field next to it:
+ * <pre>
+ * private static final LogLimiter failureLogLimiter
+ *     = LogLimiter.perInterval(5, Duration.ofSeconds(10));
+ * ...
+ * logger.warn(failureLogLimiter, () -&gt; "Failed to handle packet", e);
+ * </pre>
+ * Deciding doesn't lock or allocate. The messages which are logged mention
+ * how many messages were suppressed since the previous one. The messages
+ * suppressed after the last one which is logged are only mentioned if the
+ * call site reports them with {@link #takeSuppressed()}, e.g. when it is
+ * closed.
+ * <p>
+ * See {@link Logger#warn(LogLimiter, java.util.function.Supplier)} and the
+ * other methods which take a {@link LogLimiter}.
+ */
+public abstract class LogLimiter
+{
+    /**
+     * The value returned by {@link #acquire()} when a message is suppressed.
+     */
+    public static final long SUPPRESSED = -1;
+
+    /**
+     * The number of messages which were suppressed since the previous message
+     * which was logged.
+     */
+    private final LongAdder suppressed = new LongAdder();
+
+    /**
+     * Gets a limiter which lets 1 in {@code n} messages through, starting with
+     * the first.
+     * @param n the sampling rate.
+     */
+    @NotNull
+    public static LogLimiter oneIn(int n)
+    {
+        if (n < 1)
+        {
+            throw new IllegalArgumentException("n must be positive: " + n);
+        }
+        return new Sampling(n);
+    }
+
+    /**
+     * Gets a limiter which lets through at most {@code maxMessages} messages
+     * per {@code interval}, in bursts of up to {@code maxMessages}. See
+     * {@link ConcurrentRateLimit}.
+     * @param maxMessages the maximum number of messages per interval.
+     * @param interval the interval.
+     */
+    @NotNull
+    public static LogLimiter perInterval(int maxMessages, @NotNull Duration interval)
+    {
+        return perInterval(maxMessages, interval, Clock.systemUTC());
+    }
+
+    /**
+     * Gets a limiter which lets through at most {@code maxMessages} messages
+     * per {@code interval}, as measured by {@code clock}.
+     * @param maxMessages the maximum number of messages per interval.
+     * @param interval the interval.
+     * @param clock the clock.
+     */
+    @NotNull
+    public static LogLimiter perInterval(
+        int maxMessages,
+        @NotNull Duration interval,
+        @NotNull Clock clock)
+    {
+        return new RateLimited(
+            new ConcurrentRateLimit(Duration.ZERO, maxMessages, interval, clock));
+    }
+
+    /**
+     * Decides whether to log a message.
+     * @return {@link #SUPPRESSED} if the message should be suppressed.
+     * Otherwise, the (possibly approximate) number of messages which were
+     * suppressed since the previous message which was logged.
+     */
+    public long acquire()
+    {
+        if (!tryAcquire())
+        {
+            suppressed.increment();
+            return SUPPRESSED;
+        }
+        return suppressed.sumThenReset();
+    }
+
+    /**
+     * Gets (and resets) the number of messages which were suppressed since
+     * the previous message which was logged, so that the call site can report
+     * them when it is not going to log again.
+     * @return the (possibly approximate) number of suppressed messages.
+     */
+    public long takeSuppressed()
+    {
+        return suppressed.sumThenReset();
+    }
+
+    /**
+     * Decides whether to let a message through.
+     * @return {@code true} if the message should be logged.
+     */
+    protected abstract boolean tryAcquire();
+
+    /**
+     * Appends a summary of the suppressed messages to a message which is
+     * logged, if there were any.
+     * @param msg the message which is logged.
+     * @param suppressed the number of suppressed messages, as returned by
+     * {@link #acquire()}.
+     * @return the message to log.
+     */
+    @NotNull
+    static String withSummary(@NotNull String msg, long suppressed)
+    {
+        if (suppressed <= 0)
+        {
+            return msg;
+        }
+        return msg + " (" + suppressed + " similar messages suppressed)";
+    }
+
+    /**
+     * Implements {@link #oneIn(int)}.
+     */
+    private static final class Sampling
+        extends LogLimiter
+    {
+        private final int n;
+
+        private final AtomicLong count = new AtomicLong();
+
+        Sampling(int n)
+        {
+            this.n = n;
+        }
+
+        @Override
+        protected boolean tryAcquire()
+        {
+            return count.getAndIncrement() % n == 0;
+        }
+    }
+
+    /**
+     * Implements {@link #perInterval(int, Duration)}.
+     */
+    private static final class RateLimited
+        extends LogLimiter
+    {
+        @NotNull
+        private final ConcurrentRateLimit rateLimit;
+
+        RateLimited(@NotNull ConcurrentRateLimit rateLimit)
+        {
+            this.rateLimit = rateLimit;
+        }
+
+        @Override
+        protected boolean tryAcquire()
+        {
+            return rateLimit.accept();
+        }
+    }
+}
@@ -110,6 +110,28 @@ public interface Logger
      */
     void debug(Supplier<String> msgSupplier);
 
+    /**
+     * Log a DEBUG message, unless {@code limiter} suppresses it.
+     * Only invokes the given supplier if the message is logged. The message
+     * mentions how many messages the limiter suppressed before it.
+     *
+     * @param limiter the {@link LogLimiter} of the call site.
+     * @param msgSupplier a {@link Supplier} which will return the
+     *                    log message when invoked
+     */
+    default void debug(LogLimiter limiter, Supplier<String> msgSupplier)
+    {
+        if (!isDebugEnabled())
+        {
+            return;
+        }
+        long suppressed = limiter.acquire();
+        if (suppressed != LogLimiter.SUPPRESSED)
+        {
+            debug(LogLimiter.withSummary(msgSupplier.get(), suppressed));
+        }
+    }
+
     /**
      * Check if a message with an INFO level would actually be logged by this
      * logger.
@@ -138,6 +160,28 @@ public interface Logger
      */
     void info(Supplier<String> msgSupplier);
 
+    /**
+     * Log an INFO message, unless {@code limiter} suppresses it.
+     * Only invokes the given supplier if the message is logged. The message
+     * mentions how many messages the limiter suppressed before it.
+     *
+     * @param limiter the {@link LogLimiter} of the call site.
+     * @param msgSupplier a {@link Supplier} which will return the
+     *                    log message when invoked
+     */
+    default void info(LogLimiter limiter, Supplier<String> msgSupplier)
+    {
+        if (!isInfoEnabled())
+        {
+            return;
+        }
+        long suppressed = limiter.acquire();
+        if (suppressed != LogLimiter.SUPPRESSED)
+        {
+            info(LogLimiter.withSummary(msgSupplier.get(), suppressed));
+        }
+    }
+
     /**
      * Check if a message with a WARN level would actually be logged by this
      * logger.
@@ -174,6 +218,64 @@ public interface Logger
      */
     void warn(Object msg, Throwable t);
 
+    /**
+     * Log a WARN message, unless {@code limiter} suppresses it.
+     * Only invokes the given supplier if the message is logged. The message
+     * mentions how many messages the limiter suppressed before it.
+     *
+     * @param limiter the {@link LogLimiter} of the call site.
+     * @param msgSupplier a {@link Supplier} which will return the
+     *                    log message when invoked
+     */
+    default void warn(LogLimiter limiter, Supplier<String> msgSupplier)
+    {
+        if (!isWarnEnabled())
+        {
+            return;
+        }
+        long suppressed = limiter.acquire();
+        if (suppressed != LogLimiter.SUPPRESSED)
+        {
+            warn(LogLimiter.withSummary(msgSupplier.get(), suppressed));
+        }
+    }
+
+    /**
+     * Log a WARN message with associated Throwable information,
+     * unless {@code limiter} suppresses it.
+     *
+     * @param limiter the {@link LogLimiter} of the call site.
+     * @param msgSupplier a {@link Supplier} which will return the
+     *                    log message when invoked
+     * @param t  Throwable associated with log message.
+     */
+    default void warn(LogLimiter limiter, Supplier<String> msgSupplier, Throwable t)
+    {
+        if (!isWarnEnabled())
+        {
+            return;
+        }
+        long suppressed = limiter.acquire();
+        if (suppressed != LogLimiter.SUPPRESSED)
+        {
+            warn(LogLimiter.withSummary(msgSupplier.get(), suppressed), t);
+        }
+    }
+
+    /**
+     * Check if a message with an ERROR level would actually be logged by this
+     * logger.
+     * <p>
+     * The default implementation returns {@code true}, so that implementations
+     * which predate this method keep logging errors.
+     * <p>
+     * @return true if the ERROR level is currently being logged
+     */
+    default boolean isErrorEnabled()
+    {
+        return true;
+    }
+
     /**
      * Log a ERROR message.
      * <p>
@@ -202,6 +304,50 @@ public interface Logger
      */
     void error(Object msg, Throwable t);
 
+    /**
+     * Log an ERROR message, unless {@code limiter} suppresses it.
+     * Only invokes the given supplier if the message is logged. The message
+     * mentions how many messages the limiter suppressed before it.
+     *
+     * @param limiter the {@link LogLimiter} of the call site.
+     * @param msgSupplier a {@link Supplier} which will return the
+     *                    log message when invoked
+     */
+    default void error(LogLimiter limiter, Supplier<String> msgSupplier)
+    {
+        if (!isErrorEnabled())
+        {
+            return;
+        }
+        long suppressed = limiter.acquire();
+        if (suppressed != LogLimiter.SUPPRESSED)
+        {
+            error(LogLimiter.withSummary(msgSupplier.get(), suppressed));
+        }
+    }
+
+    /**
+     * Log an ERROR message with associated Throwable information,
+     * unless {@code limiter} suppresses it.
+     *
+     * @param limiter the {@link LogLimiter} of the call site.
+     * @param msgSupplier a {@link Supplier} which will return the
+     *                    log message when invoked
+     * @param t  Throwable associated with log message.
+     */
+    default void error(LogLimiter limiter, Supplier<String> msgSupplier, Throwable t)
+    {
+        if (!isErrorEnabled())
+        {
+            return;
+        }
+        long suppressed = limiter.acquire();
+        if (suppressed != LogLimiter.SUPPRESSED)
+        {
+            error(LogLimiter.withSummary(msgSupplier.get(), suppressed), t);
+        }
+    }
+
     /**
      * Set logging level for all handlers to ERROR
      */
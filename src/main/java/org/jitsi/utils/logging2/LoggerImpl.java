@@ -17,6 +17,7 @@
 package org.jitsi.utils.logging2;
 
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.function.*;
 import java.util.logging.*;
 
@@ -101,21 +102,72 @@ public class LoggerImpl implements Logger
         loggerDelegate.removeHandler(handler);
     }
 
-    private boolean isLoggable(Level level)
+    /**
+     * Whether a level is loggable according to {@link #minLogLevel} and the delegate, i.e. regardless of level
+     * overrides.
+     */
+    private boolean isLoggableWithoutOverride(Level level)
     {
         return level.intValue() >= minLogLevel.intValue() && loggerDelegate.isLoggable(level);
     }
 
+    private boolean isLoggable(Level level)
+    {
+        if (isLoggableWithoutOverride(level))
+        {
+            return true;
+        }
+        Level override = logContext.getLevelOverride();
+        return override != null && level.intValue() >= override.intValue();
+    }
+
+    /**
+     * Passes a record to the delegate, or directly to its handlers (and those of its parents, as
+     * {@link java.util.logging.Logger#log(LogRecord)} would) if it is only loggable because of a level override of
+     * the {@link LogContext}.
+     * <p>
+     * Handlers apply their own level too, and e.g. {@link ConsoleHandler} defaults to {@link Level#INFO}, which would
+     * make overrides to lower levels useless. So the level of a record which is only loggable because of an override
+     * is replaced with an {@link OverriddenLevel} of the same name, which passes the level check of any handler which
+     * is not turned {@link Level#OFF}.
+     */
+    private void publish(LogRecord lr)
+    {
+        if (isLoggableWithoutOverride(lr.getLevel()))
+        {
+            loggerDelegate.log(lr);
+            return;
+        }
+
+        lr.setLevel(OverriddenLevel.of(lr.getLevel()));
+        Filter filter = loggerDelegate.getFilter();
+        if (filter != null && !filter.isLoggable(lr))
+        {
+            return;
+        }
+        java.util.logging.Logger logger = loggerDelegate;
+        while (logger != null)
+        {
+            for (Handler handler : logger.getHandlers())
+            {
+                handler.publish(lr);
+            }
+            logger = logger.getUseParentHandlers() ? logger.getParent() : null;
+        }
+    }
+
     private void log(Level level, Object msg, Throwable thrown)
     {
         if (!isLoggable(level))
         {
             return;
         }
-        LogRecord lr = new ContextLogRecord(level, msg.toString(), logContext.getFormattedContext());
+        LogContext.Snapshot context = logContext.getSnapshot();
+        LogRecord lr = new ContextLogRecord(
+            level, msg.toString(), context.getFormatted(), context.getFields());
         lr.setThrown(thrown);
         lr.setLoggerName(this.loggerDelegate.getName());
-        loggerDelegate.log(lr);
+        publish(lr);
     }
 
     private void log(Level level, Object msg)
@@ -124,9 +176,11 @@ public class LoggerImpl implements Logger
         {
             return;
         }
-        LogRecord lr = new ContextLogRecord(level, msg.toString(), logContext.getFormattedContext());
+        LogContext.Snapshot context = logContext.getSnapshot();
+        LogRecord lr = new ContextLogRecord(
+            level, msg.toString(), context.getFormatted(), context.getFields());
         lr.setLoggerName(this.loggerDelegate.getName());
-        loggerDelegate.log(lr);
+        publish(lr);
     }
 
     private void log(Level level, Supplier<String> msgSupplier)
@@ -135,9 +189,11 @@ public class LoggerImpl implements Logger
         {
             return;
         }
-        LogRecord lr = new ContextLogRecord(level, msgSupplier.get(), logContext.getFormattedContext());
+        LogContext.Snapshot context = logContext.getSnapshot();
+        LogRecord lr = new ContextLogRecord(
+            level, msgSupplier.get(), context.getFormatted(), context.getFields());
         lr.setLoggerName(this.loggerDelegate.getName());
-        loggerDelegate.log(lr);
+        publish(lr);
     }
 
     @Override
@@ -298,6 +354,12 @@ public class LoggerImpl implements Logger
         log(Level.WARNING, msg, t);
     }
 
+    @Override
+    public boolean isErrorEnabled()
+    {
+        return isLoggable(Level.SEVERE);
+    }
+
     @Override
     public void error(Object msg)
     {
@@ -335,4 +397,29 @@ public class LoggerImpl implements Logger
     }
 
     static Function<String, java.util.logging.Logger> loggerFactory = java.util.logging.Logger::getLogger;
+
+    /**
+     * The level of a record which is only loggable because of a level override. It has the name of the original
+     * level, so that it is formatted the same, and the highest value short of {@link Level#OFF}.
+     */
+    static final class OverriddenLevel
+        extends Level
+    {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The instances by original level. Levels are registered globally when created, so they are reused.
+         */
+        private static final Map<Level, OverriddenLevel> instances = new ConcurrentHashMap<>();
+
+        private OverriddenLevel(Level level)
+        {
+            super(level.getName(), Level.OFF.intValue() - 1, level.getResourceBundleName());
+        }
+
+        static OverriddenLevel of(Level level)
+        {
+            return instances.computeIfAbsent(level, OverriddenLevel::new);
+        }
+    }
 }
@@ -19,7 +19,9 @@ package org.jitsi.utils.queue;
 import org.jetbrains.annotations.*;
 import org.jitsi.utils.logging.*;
 
+import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 /**
  * Asynchronously reads items from provided {@link #queue} on separate thread
@@ -47,10 +49,10 @@ final class AsyncQueueHandler<T>
     private final ExecutorService executor;
 
     /**
-     * An {@link BlockingQueue} whose items read on separate thread and
+     * An {@link QueueBackend} whose items read on separate thread and
      * processed by provided {@link #handler}.
      */
-    private final BlockingQueue<T> queue;
+    private final QueueBackend<T> queue;
 
     /**
      * The {@link Handler} used to handle items read from
@@ -73,23 +75,51 @@ final class AsyncQueueHandler<T>
     private final long maxSequentiallyHandledItems;
 
     /**
-     * A flag which indicates if reading of {@link #queue} is allowed
-     * to continue.
+     * The maximum number of items passed to {@link Handler#handleItems} at
+     * once. Values less than 2 mean that items are handled one by one with
+     * {@link Handler#handleItem}.
      */
-    private boolean running = true;
+    private final int maxBatchSize;
 
     /**
-     * Synchronization object of current instance state, in particular
-     * used to resolve races between {@link #handleQueueItemsUntilEmpty()}
-     * and {@link #reader} exit. In particular synchronization object used to
-     * access to field {@link #readerFuture}.
+     * The list which batches are drained into. Re-used between batches, which
+     * is safe because there is at most one {@link #reader} running.
      */
-    private final Object syncRoot = new Object();
+    private final List<T> batch;
 
     /**
-     * Stores <tt>Future</tt> of currently executing {@link #reader}
+     * No {@link #reader} is scheduled or running.
      */
-    private Future<?> readerFuture;
+    private static final int IDLE = 0;
+
+    /**
+     * A {@link #reader} has been submitted to {@link #executor} but hasn't
+     * started yet.
+     */
+    private static final int SCHEDULED = 1;
+
+    /**
+     * A {@link #reader} is running.
+     */
+    private static final int RUNNING = 2;
+
+    /**
+     * This handler has been cancelled, no {@link #reader} will run again.
+     */
+    private static final int CANCELLED = 3;
+
+    /**
+     * The state of this handler, one of {@link #IDLE}, {@link #SCHEDULED},
+     * {@link #RUNNING} or {@link #CANCELLED}. Only the thread which moves the
+     * state out of {@link #IDLE} submits a {@link #reader}, which guarantees
+     * there is at most one in flight without taking a lock on the hot path.
+     */
+    private final AtomicInteger state = new AtomicInteger(IDLE);
+
+    /**
+     * Stores <tt>Future</tt> of the most recently submitted {@link #reader}
+     */
+    private volatile Future<?> readerFuture;
 
     /**
      * Whether canceling this {@link AsyncQueueHandler} is allowed to interrupt {@link #readerFuture} (if it's running).
@@ -105,9 +135,15 @@ final class AsyncQueueHandler<T>
         @Override
         public void run()
         {
+            if (!state.compareAndSet(SCHEDULED, RUNNING))
+            {
+                // Cancelled before we started.
+                return;
+            }
+
             long sequentiallyHandledItems = 0;
 
-            while (running)
+            while (state.get() == RUNNING)
             {
                 if (maxSequentiallyHandledItems > 0 &&
                     sequentiallyHandledItems >= maxSequentiallyHandledItems)
@@ -116,18 +152,44 @@ final class AsyncQueueHandler<T>
                     return;
                 }
 
-                T item;
-
-                synchronized (syncRoot)
+                if (maxBatchSize > 1)
                 {
-                    item = queue.poll();
+                    int drained = drainBatch(sequentiallyHandledItems);
+                    if (drained == 0)
+                    {
+                        if (stopIfEmpty())
+                        {
+                            return;
+                        }
+                        continue;
+                    }
+
+                    sequentiallyHandledItems += drained;
 
-                    if (item == null)
+                    try
+                    {
+                        handler.handleItems(batch);
+                    }
+                    catch (Throwable e)
+                    {
+                        logger.error("Failed to handle items: ", e);
+                    }
+                    finally
+                    {
+                        batch.clear();
+                    }
+                    continue;
+                }
+
+                T item = queue.poll();
+
+                if (item == null)
+                {
+                    if (stopIfEmpty())
                     {
-                        running = false;
-                        readerFuture = null;
                         return;
                     }
+                    continue;
                 }
 
                 sequentiallyHandledItems++;
@@ -144,6 +206,59 @@ final class AsyncQueueHandler<T>
         }
     };
 
+    /**
+     * Drains the next batch of items from {@link #queue} into {@link #batch}.
+     * @param sequentiallyHandledItems the number of items already handled by
+     * the current {@link #reader} run, which limits the size of the batch when
+     * cooperative multi-tasking is enabled.
+     * @return the number of items drained.
+     */
+    private int drainBatch(long sequentiallyHandledItems)
+    {
+        int limit = maxBatchSize;
+        if (maxSequentiallyHandledItems > 0)
+        {
+            limit = (int) Math.min(
+                limit,
+                maxSequentiallyHandledItems - sequentiallyHandledItems);
+        }
+
+        return queue.drainTo(batch, limit);
+    }
+
+    /**
+     * Called by {@link #reader} when it found {@link #queue} empty. Moves the
+     * state to {@link #IDLE}, unless an item was added concurrently: its
+     * producer may have seen the state as {@link #RUNNING} and relied on this
+     * reader to handle it.
+     * @return {@code true} if the reader should exit, {@code false} if it
+     * should continue reading.
+     */
+    private boolean stopIfEmpty()
+    {
+        if (!state.compareAndSet(RUNNING, IDLE))
+        {
+            // Cancelled.
+            return true;
+        }
+
+        if (queue.size() == 0)
+        {
+            return true;
+        }
+
+        if (state.compareAndSet(IDLE, RUNNING))
+        {
+            // The item may not be completely published yet.
+            Thread.onSpinWait();
+            return false;
+        }
+
+        // A producer has already scheduled a new reader (or we were
+        // cancelled).
+        return true;
+    }
+
     /**
      * Constructs instance of {@link AsyncQueueHandler} which is capable of
      * asynchronous reading provided queue from thread borrowed from executor to
@@ -158,27 +273,73 @@ final class AsyncQueueHandler<T>
      * releasing thread and re-acquiring it from {@link #executor}.
      */
     AsyncQueueHandler(
-        @NotNull BlockingQueue<T> queue,
+        @NotNull QueueBackend<T> queue,
         @NotNull Handler<T> handler,
         @NotNull String id,
         @NotNull ExecutorService executor,
         long maxSequentiallyHandledItems,
         boolean interruptOnCancel)
+    {
+        this(
+            queue,
+            handler,
+            id,
+            executor,
+            maxSequentiallyHandledItems,
+            1,
+            interruptOnCancel);
+    }
+
+    /**
+     * Constructs instance of {@link AsyncQueueHandler} which is capable of
+     * asynchronous reading provided queue from thread borrowed from executor to
+     * process items with provided handler, optionally in batches.
+     * @param queue thread-safe queue which holds items to process
+     * @param handler an implementation of handler routine which will be
+     * invoked per each item or batch of items placed in the queue.
+     * @param id optional identifier of current handler for debug purpose
+     * @param executor optional executor service to borrow threads from
+     * @param maxSequentiallyHandledItems maximum number of items sequentially
+     * handled on thread borrowed from {@link #executor} before temporary
+     * releasing thread and re-acquiring it from {@link #executor}. Every item
+     * in a batch counts towards this limit.
+     * @param maxBatchSize maximum number of items passed to
+     * {@link Handler#handleItems} at once. Values less than 2 disable
+     * batching.
+     */
+    AsyncQueueHandler(
+        @NotNull QueueBackend<T> queue,
+        @NotNull Handler<T> handler,
+        @NotNull String id,
+        @NotNull ExecutorService executor,
+        long maxSequentiallyHandledItems,
+        int maxBatchSize,
+        boolean interruptOnCancel)
     {
         this.executor = executor;
         this.queue = queue;
         this.handler = handler;
         this.id = id;
         this.maxSequentiallyHandledItems = maxSequentiallyHandledItems;
+        this.maxBatchSize = maxBatchSize;
+        this.batch = maxBatchSize > 1 ? new ArrayList<>(maxBatchSize) : null;
         this.interruptOnCancel = interruptOnCancel;
     }
 
     /**
-     * Attempts to stop execution of {@link #reader} if running
+     * Stops execution of {@link #reader} if running. Once cancelled, this
+     * handler never schedules a {@link #reader} again.
      */
     void cancel()
     {
-        cancel(interruptOnCancel);
+        state.set(CANCELLED);
+
+        Future<?> future = readerFuture;
+        if (future != null)
+        {
+            future.cancel(interruptOnCancel);
+            readerFuture = null;
+        }
     }
 
     /**
@@ -187,12 +348,9 @@ final class AsyncQueueHandler<T>
      */
     void handleQueueItemsUntilEmpty()
     {
-        synchronized (syncRoot)
+        if (state.get() == IDLE && state.compareAndSet(IDLE, SCHEDULED))
         {
-            if (readerFuture == null || readerFuture.isDone())
-            {
-                rescheduleReader();
-            }
+            scheduleReader();
         }
     }
 
@@ -207,38 +365,34 @@ final class AsyncQueueHandler<T>
             logger.debug("Yielding AsyncQueueHandler with ID = " + id);
         }
 
-        rescheduleReader();
-    }
-
-    /**
-     * Attempts to cancel currently running reader.
-     * @param mayInterruptIfRunning indicates if {@link #reader} allowed
-     * to be interrupted if running
-     */
-    private void cancel(boolean mayInterruptIfRunning)
-    {
-        synchronized (syncRoot)
+        if (state.compareAndSet(RUNNING, SCHEDULED))
         {
-            running = false;
-
-            if (readerFuture != null)
-            {
-                readerFuture.cancel(mayInterruptIfRunning);
-                readerFuture = null;
-            }
+            scheduleReader();
         }
     }
 
     /**
-     * Reschedules execution of {@link #reader} on {@link #executor}'s thread.
+     * Submits {@link #reader} to {@link #executor}. Must only be called by
+     * the thread which moved {@link #state} to {@link #SCHEDULED}.
      */
-    private void rescheduleReader()
+    private void scheduleReader()
     {
-        synchronized (syncRoot)
+        try
         {
-            running = true;
             readerFuture = executor.submit(reader);
         }
+        catch (RejectedExecutionException e)
+        {
+            // Allow a later call to try again.
+            state.compareAndSet(SCHEDULED, IDLE);
+            throw e;
+        }
+
+        if (state.get() == CANCELLED)
+        {
+            // Raced with cancel(), which may have missed the new future.
+            cancel();
+        }
     }
 
     /**
@@ -252,5 +406,18 @@ final class AsyncQueueHandler<T>
          * @param item the item to do something with.
          */
         void handleItem(T item);
+
+        /**
+         * Does something with a batch of items. The list is re-used after
+         * this method returns, so implementations must not retain it.
+         * @param items the items to do something with, in queue order.
+         */
+        default void handleItems(List<T> items)
+        {
+            for (T item : items)
+            {
+                handleItem(item);
+            }
+        }
     }
 }
@@ -15,8 +15,9 @@
  */
 package org.jitsi.utils.queue;
 
-import org.jitsi.utils.logging.*;
+import org.jitsi.utils.logging2.*;
 
+import java.time.*;
 import java.util.concurrent.atomic.*;
 
 /**
@@ -31,7 +32,16 @@ public class CountingErrorHandler implements ErrorHandler
      * The {@link Logger} used by the {@link PacketQueue} class and its
      * instances for logging output.
      */
-    private static final Logger logger = Logger.getLogger(PacketQueue.class);
+    private static final Logger logger
+        = new LoggerImpl(PacketQueue.class.getName());
+
+    /**
+     * Limits the logging of failures, which may happen for every packet. Each
+     * instance has its own, so that a noisy queue doesn't suppress the
+     * failures of others.
+     */
+    private final LogLimiter failureLogLimiter
+        = LogLimiter.perInterval(10, Duration.ofSeconds(10));
 
     /**
      * The number of dropped packets.
@@ -58,10 +68,25 @@ public class CountingErrorHandler implements ErrorHandler
     @Override
     public void packetHandlingFailed(Throwable t)
     {
-        logger.error("Failed to handle packet: ", t);
+        logger.error(failureLogLimiter, () -> "Failed to handle packet", t);
         numExceptions.incrementAndGet();
     }
 
+    /**
+     * Reports the failures which were suppressed since the last one which was
+     * logged.
+     * {@inheritDoc}
+     */
+    @Override
+    public void queueClosed()
+    {
+        long suppressed = failureLogLimiter.takeSuppressed();
+        if (suppressed > 0)
+        {
+            logger.error(() -> "Failed to handle " + suppressed + " more packets, not logged individually.");
+        }
+    }
+
     /**
      * Get the number of dropped packets.
      * @return
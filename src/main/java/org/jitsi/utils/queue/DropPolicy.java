@@ -0,0 +1,211 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils.queue;
+
+import org.jetbrains.annotations.*;
+
+import java.time.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/**
+ * Decides what a {@link PacketQueue} drops when a packet is added while it
+ * is full.
+ * <p>
+ * Every dropped packet, including the added packet itself if it is rejected,
+ * must be passed to the {@code onDropped} callback. {@link PacketQueue} uses
+ * it to update its {@link PacketQueue.Observer}, call
+ * {@link ErrorHandler#packetDropped()} and release the packet with
+ * {@link PacketQueue#releasePacket}.
+ * <p>
+ * The built-in policies insert into {@link QueueBackend#backendFor}, so that
+ * only packets which compete with the new packet for room are dropped.
+ *
+ * @param <T> the type of the packets.
+ */
+public interface DropPolicy<T>
+{
+    /**
+     * Inserts a packet in a backend, dropping packets if it is full.
+     * @param backend the backend to insert the packet in.
+     * @param pkt the packet to insert.
+     * @param onDropped must be invoked for every dropped packet.
+     * @return {@code true} if {@code pkt} was inserted, {@code false} if it
+     * was dropped.
+     */
+    boolean offer(
+        @NotNull QueueBackend<T> backend,
+        @NotNull T pkt,
+        @NotNull Consumer<? super T> onDropped);
+
+    /**
+     * Gets a policy which drops the oldest packets to make room for new ones.
+     * This is the default policy of {@link PacketQueue}.
+     */
+    static <T> DropPolicy<T> dropOldest()
+    {
+        return (backend, pkt, onDropped) -> {
+            backend.backendFor(pkt).offerDroppingOldest(pkt, onDropped);
+            return true;
+        };
+    }
+
+    /**
+     * Gets a policy which drops new packets while the queue is full.
+     */
+    static <T> DropPolicy<T> dropNewest()
+    {
+        return (backend, pkt, onDropped) -> {
+            if (backend.backendFor(pkt).offer(pkt))
+            {
+                return true;
+            }
+            onDropped.accept(pkt);
+            return false;
+        };
+    }
+
+    /**
+     * Gets a policy which applies backpressure: the thread adding a packet
+     * waits for the queue to have room for up to {@code timeout}, and the new
+     * packet is dropped if it doesn't. A thread which is interrupted while
+     * waiting drops the packet and keeps its interrupt status.
+     * <p>
+     * Note that this makes {@link PacketQueue#add} block, so it should not be
+     * used on threads which serve other queues.
+     * @param timeout the maximum time to wait for room in the queue.
+     */
+    static <T> DropPolicy<T> blockWithTimeout(@NotNull Duration timeout)
+    {
+        return new BlockWithTimeout<>(timeout);
+    }
+
+    /**
+     * Gets a policy which, when the queue is full, drops the oldest packet
+     * which matches a predicate (e.g. one which is not a keyframe). If no
+     * queued packet matches, the new packet is dropped if it matches, and
+     * otherwise the oldest packet is dropped.
+     * <p>
+     * Backends which can not remove packets from the middle of the queue
+     * (such as {@link MpscRingBuffer}) never find a matching queued packet.
+     * @param droppable whether a packet may be dropped in favor of others.
+     */
+    static <T> DropPolicy<T> dropFirstMatching(
+        @NotNull Predicate<? super T> droppable)
+    {
+        return new DropFirstMatching<>(droppable);
+    }
+
+    /**
+     * Implements {@link #blockWithTimeout(Duration)}.
+     */
+    final class BlockWithTimeout<T>
+        implements DropPolicy<T>
+    {
+        /**
+         * The maximum time to wait for room, in nanoseconds.
+         */
+        private final long timeoutNanos;
+
+        /**
+         * Initializes a new {@link BlockWithTimeout} instance.
+         * @param timeout the maximum time to wait for room in the queue.
+         */
+        BlockWithTimeout(@NotNull Duration timeout)
+        {
+            this.timeoutNanos = timeout.toNanos();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean offer(
+            @NotNull QueueBackend<T> backend,
+            @NotNull T pkt,
+            @NotNull Consumer<? super T> onDropped)
+        {
+            try
+            {
+                if (backend.backendFor(pkt)
+                    .offer(pkt, timeoutNanos, TimeUnit.NANOSECONDS))
+                {
+                    return true;
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+
+            onDropped.accept(pkt);
+            return false;
+        }
+    }
+
+    /**
+     * Implements {@link #dropFirstMatching(Predicate)}.
+     */
+    final class DropFirstMatching<T>
+        implements DropPolicy<T>
+    {
+        /**
+         * Whether a packet may be dropped in favor of others.
+         */
+        @NotNull
+        private final Predicate<? super T> droppable;
+
+        /**
+         * Initializes a new {@link DropFirstMatching} instance.
+         * @param droppable whether a packet may be dropped in favor of others.
+         */
+        DropFirstMatching(@NotNull Predicate<? super T> droppable)
+        {
+            this.droppable = droppable;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean offer(
+            @NotNull QueueBackend<T> backend,
+            @NotNull T pkt,
+            @NotNull Consumer<? super T> onDropped)
+        {
+            QueueBackend<T> target = backend.backendFor(pkt);
+            while (!target.offer(pkt))
+            {
+                T dropped = target.removeFirst(droppable);
+                if (dropped == null)
+                {
+                    if (droppable.test(pkt))
+                    {
+                        onDropped.accept(pkt);
+                        return false;
+                    }
+                    dropped = target.poll();
+                }
+
+                if (dropped != null)
+                {
+                    onDropped.accept(dropped);
+                }
+            }
+            return true;
+        }
+    }
+}
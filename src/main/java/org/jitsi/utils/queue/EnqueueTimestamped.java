@@ -0,0 +1,42 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils.queue;
+
+/**
+ * A packet which carries the time it was added to a {@link PacketQueue}.
+ * When {@link QueueStatistics#TRACK_TIMES} is enabled,
+ * {@link QueueStatisticsObserver} stores the time in the packet itself, so
+ * tracking wait times needs no per-packet allocation and no shared map.
+ * Other packets are tracked in a map, which is considerably more expensive.
+ * <p>
+ * The slot holds a single time, so a packet should not be in more than one
+ * queue with tracking enabled at the same time.
+ */
+public interface EnqueueTimestamped
+{
+    /**
+     * Gets the time the packet was last added to a queue, as previously set
+     * with {@link #setEnqueueTimeNanos(long)}.
+     */
+    long getEnqueueTimeNanos();
+
+    /**
+     * Sets the time the packet is being added to a queue.
+     * @param enqueueTimeNanos the time, in nanoseconds, in an arbitrary
+     * time base chosen by the queue's observer.
+     */
+    void setEnqueueTimeNanos(long enqueueTimeNanos);
+}
@@ -24,7 +24,8 @@ public interface ErrorHandler
 {
     /**
      * Called when a packet is dropped from the queue because a new packet
-     * was added while it was full.
+     * was added while it was full. Depending on the queue's
+     * {@link DropPolicy}, the dropped packet may be the new one.
      */
     default void packetDropped() {}
 
@@ -33,4 +34,9 @@ public interface ErrorHandler
      * @param t
      */
     default void packetHandlingFailed(Throwable t) {}
+
+    /**
+     * Called when the queue is closed.
+     */
+    default void queueClosed() {}
 }
@@ -0,0 +1,318 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils.queue;
+
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/**
+ * A {@link QueueBackend} composed of several lanes, each with its own
+ * {@link QueueBackend} (and therefore its own capacity). Items are put in a
+ * lane chosen by a selector function, and are removed from the lanes either
+ * in strict priority order or by weighted round-robin.
+ * <p>
+ * When a lane is full, the oldest item of that lane is dropped, so a burst
+ * in one lane never evicts items from another. Use
+ * {@link #perLaneDropPolicy(List)} to drop differently in each lane.
+ *
+ * @param <T> the type of the items.
+ */
+public class LanedQueueBackend<T>
+    implements QueueBackend<T>
+{
+    /**
+     * The lanes. Lower indices have higher priority.
+     */
+    @NotNull
+    private final QueueBackend<T>[] lanes;
+
+    /**
+     * Selects the index of the lane for an item.
+     */
+    @NotNull
+    private final ToIntFunction<? super T> laneSelector;
+
+    /**
+     * The number of items removed from a lane in a row before moving on to
+     * the next one, or {@code null} to serve lanes by strict priority.
+     */
+    private final int[] weights;
+
+    /**
+     * The sum of the capacities of all lanes.
+     */
+    private final int capacity;
+
+    /**
+     * The lane currently served by weighted round-robin. Only accessed by the
+     * consumer, so not synchronized. A race with another consumer (e.g. when
+     * draining on close) only affects fairness, not correctness.
+     */
+    private int currentLane = 0;
+
+    /**
+     * The number of items which may still be removed from
+     * {@link #currentLane} before moving on to the next lane.
+     */
+    private int currentLaneCredit;
+
+    /**
+     * Initializes a new {@link LanedQueueBackend} which serves its lanes by
+     * strict priority: an item is only removed from a lane when all lanes
+     * with a lower index are empty.
+     * @param lanes the lanes, in decreasing order of priority.
+     * @param laneSelector returns the index of the lane for an item.
+     */
+    public LanedQueueBackend(
+        @NotNull List<? extends QueueBackend<T>> lanes,
+        @NotNull ToIntFunction<? super T> laneSelector)
+    {
+        this(lanes, laneSelector, null);
+    }
+
+    /**
+     * Initializes a new {@link LanedQueueBackend} instance.
+     * @param lanes the lanes.
+     * @param laneSelector returns the index of the lane for an item.
+     * @param weights the number of items removed from each lane in a row
+     * when serving lanes by weighted round-robin, or {@code null} to serve
+     * lanes by strict priority.
+     */
+    @SuppressWarnings("unchecked")
+    public LanedQueueBackend(
+        @NotNull List<? extends QueueBackend<T>> lanes,
+        @NotNull ToIntFunction<? super T> laneSelector,
+        int[] weights)
+    {
+        if (lanes.isEmpty())
+        {
+            throw new IllegalArgumentException("At least one lane required");
+        }
+        if (weights != null)
+        {
+            if (weights.length != lanes.size())
+            {
+                throw new IllegalArgumentException(
+                    "Expected " + lanes.size() + " weights, got "
+                        + weights.length);
+            }
+            for (int weight : weights)
+            {
+                if (weight <= 0)
+                {
+                    throw new IllegalArgumentException(
+                        "Weights must be positive: " + weight);
+                }
+            }
+        }
+
+        this.lanes = lanes.toArray(new QueueBackend[0]);
+        this.laneSelector = laneSelector;
+        this.weights = weights == null ? null : weights.clone();
+        this.currentLaneCredit = weights == null ? 0 : weights[0];
+
+        long totalCapacity = 0;
+        for (QueueBackend<T> lane : this.lanes)
+        {
+            totalCapacity += lane.capacity();
+        }
+        this.capacity = (int) Math.min(totalCapacity, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Gets the index of the lane for a specific item.
+     * @param item the item.
+     * @return the index of the lane.
+     * @throws IllegalArgumentException if the lane selector returns an index
+     * which is not that of a lane.
+     */
+    public int laneOf(@NotNull T item)
+    {
+        int lane = laneSelector.applyAsInt(item);
+        if (lane < 0 || lane >= lanes.length)
+        {
+            throw new IllegalArgumentException(
+                "Lane selector returned " + lane + " for " + item
+                    + ", expected a lane index in [0, " + lanes.length + ")");
+        }
+        return lane;
+    }
+
+    /**
+     * Gets the number of lanes.
+     */
+    public int laneCount()
+    {
+        return lanes.length;
+    }
+
+    /**
+     * Gets a specific lane.
+     * @param index the index of the lane.
+     */
+    @NotNull
+    public QueueBackend<T> lane(int index)
+    {
+        return lanes[index];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean offer(@NotNull T item)
+    {
+        return lanes[laneOf(item)].offer(item);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Only items from the lane of {@code item} are evicted.
+     */
+    @Override
+    public void offerDroppingOldest(
+        @NotNull T item,
+        @NotNull Consumer<? super T> onDropped)
+    {
+        lanes[laneOf(item)].offerDroppingOldest(item, onDropped);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Only waits for room in the lane of {@code item}.
+     */
+    @Override
+    public boolean offer(@NotNull T item, long timeout, @NotNull TimeUnit unit)
+        throws InterruptedException
+    {
+        return lanes[laneOf(item)].offer(item, timeout, unit);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Returns the lane of {@code item}.
+     */
+    @Override
+    @NotNull
+    public QueueBackend<T> backendFor(@NotNull T item)
+    {
+        return lanes[laneOf(item)];
+    }
+
+    /**
+     * Gets a {@link DropPolicy} which applies a separate policy to each lane.
+     * A packet is offered to its lane with that lane's policy, so only
+     * packets of the same lane are dropped in its favor.
+     * @param lanePolicies the policy of each lane.
+     */
+    @NotNull
+    public DropPolicy<T> perLaneDropPolicy(
+        @NotNull List<? extends DropPolicy<T>> lanePolicies)
+    {
+        if (lanePolicies.size() != lanes.length)
+        {
+            throw new IllegalArgumentException(
+                "Expected " + lanes.length + " policies, got "
+                    + lanePolicies.size());
+        }
+
+        List<DropPolicy<T>> policies = new ArrayList<>(lanePolicies);
+        return (backend, pkt, onDropped) -> {
+            int lane = laneOf(pkt);
+            return policies.get(lane).offer(lanes[lane], pkt, onDropped);
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T poll()
+    {
+        return weights == null ? pollByPriority() : pollByWeight();
+    }
+
+    /**
+     * Removes an item from the non-empty lane with the lowest index.
+     */
+    private T pollByPriority()
+    {
+        for (QueueBackend<T> lane : lanes)
+        {
+            T item = lane.poll();
+            if (item != null)
+            {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes an item by weighted round-robin: up to {@code weights[i]} items
+     * are taken from lane {@code i} before moving to the next non-empty lane.
+     */
+    private T pollByWeight()
+    {
+        // Visit every lane once, plus the current one again in case we
+        // started with no credit left for it.
+        for (int i = 0; i <= lanes.length; i++)
+        {
+            if (currentLaneCredit > 0)
+            {
+                T item = lanes[currentLane].poll();
+                if (item != null)
+                {
+                    currentLaneCredit--;
+                    return item;
+                }
+            }
+
+            currentLane = (currentLane + 1) % lanes.length;
+            currentLaneCredit = weights[currentLane];
+        }
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size()
+    {
+        int size = 0;
+        for (QueueBackend<T> lane : lanes)
+        {
+            size += lane.size();
+        }
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int capacity()
+    {
+        return capacity;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils.queue;
+
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/**
+ * A {@link QueueBackend} backed by a {@link LinkedBlockingQueue}. This is the
+ * default backend of {@link PacketQueue}, and the only one which supports
+ * unbounded capacity.
+ *
+ * @param <T> the type of the items.
+ */
+public class LinkedBlockingQueueBackend<T>
+    implements QueueBackend<T>
+{
+    /**
+     * The queue which holds the items.
+     */
+    @NotNull
+    private final BlockingQueue<T> queue;
+
+    /**
+     * The maximum number of items in {@link #queue}.
+     */
+    private final int capacity;
+
+    /**
+     * Initializes a new {@link LinkedBlockingQueueBackend} instance.
+     * @param capacity the capacity of the queue. {@link Integer#MAX_VALUE} for
+     * unbounded.
+     */
+    public LinkedBlockingQueueBackend(int capacity)
+    {
+        this.capacity = capacity;
+        this.queue = new LinkedBlockingQueue<>(capacity);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean offer(@NotNull T item)
+    {
+        return queue.offer(item);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean offer(@NotNull T item, long timeout, @NotNull TimeUnit unit)
+        throws InterruptedException
+    {
+        return queue.offer(item, timeout, unit);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Items are removed with {@link BlockingQueue#remove(Object)}, i.e.
+     * compared with {@link Object#equals}.
+     */
+    @Override
+    public T removeFirst(@NotNull Predicate<? super T> predicate)
+    {
+        for (T item : queue)
+        {
+            // The consumer may remove the item concurrently, in which case we
+            // move on to the next one.
+            if (predicate.test(item) && queue.remove(item))
+            {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T poll()
+    {
+        return queue.poll();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int drainTo(@NotNull Collection<? super T> c, int maxItems)
+    {
+        return queue.drainTo(c, maxItems);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size()
+    {
+        return queue.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int capacity()
+    {
+        return capacity;
+    }
+}
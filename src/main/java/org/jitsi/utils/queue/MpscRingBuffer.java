@@ -0,0 +1,198 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils.queue;
+
+import org.jetbrains.annotations.*;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * A bounded, array-backed, lock-free {@link QueueBackend}. Adding an item
+ * does not allocate and does not take a lock, which makes it suitable for
+ * queues on the packet path.
+ * <p>
+ * This is a variant of Dmitry Vyukov's bounded queue: every slot carries a
+ * sequence number which tells producers and the consumer whether the slot is
+ * free or holds a published item. The consumer side also advances with a
+ * compare-and-set, because producers which use the inherited
+ * {@link QueueBackend#offerDroppingOldest} make room by polling the oldest
+ * item themselves when the ring is full, so there may briefly be more than
+ * one thread removing items.
+ *
+ * @param <T> the type of the items.
+ */
+public final class MpscRingBuffer<T>
+    implements QueueBackend<T>
+{
+    /**
+     * The maximum number of items in the ring.
+     */
+    private final int capacity;
+
+    /**
+     * The number of slots in the ring. This is {@link #capacity}, except that
+     * the algorithm needs at least two slots to tell a full slot from a free
+     * one.
+     */
+    private final int slots;
+
+    /**
+     * The slots. Visibility of the items is guaranteed by the volatile
+     * accesses to {@link #sequences}.
+     */
+    private final Object[] items;
+
+    /**
+     * The sequence number of each slot. A slot at position {@code pos} is
+     * free for writing when its sequence is {@code pos}, and holds a published
+     * item when its sequence is {@code pos + 1}.
+     */
+    private final AtomicLongArray sequences;
+
+    /**
+     * The position at which the next item will be inserted.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * The position from which the next item will be removed.
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * Initializes a new {@link MpscRingBuffer} instance.
+     * @param capacity the number of items the ring can hold. Must be positive
+     * and bounded, because all slots are allocated upfront.
+     */
+    public MpscRingBuffer(int capacity)
+    {
+        if (capacity <= 0 || capacity == Integer.MAX_VALUE)
+        {
+            throw new IllegalArgumentException(
+                "A ring buffer requires a positive, bounded capacity: "
+                    + capacity);
+        }
+
+        this.capacity = capacity;
+        this.slots = Math.max(2, capacity);
+        this.items = new Object[slots];
+        this.sequences = new AtomicLongArray(slots);
+        for (int i = 0; i < slots; i++)
+        {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean offer(@NotNull T item)
+    {
+        long pos = tail.get();
+        while (true)
+        {
+            int slot = (int) (pos % slots);
+            long diff = sequences.get(slot) - pos;
+
+            if (diff == 0)
+            {
+                if (slots > capacity && pos - head.get() >= capacity)
+                {
+                    return false;
+                }
+                if (tail.compareAndSet(pos, pos + 1))
+                {
+                    items[slot] = item;
+                    sequences.set(slot, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            }
+            else if (diff < 0)
+            {
+                // The slot still holds the item from the previous lap.
+                return false;
+            }
+            else
+            {
+                // Another producer claimed this position, catch up.
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public T poll()
+    {
+        long pos = head.get();
+        while (true)
+        {
+            int slot = (int) (pos % slots);
+            long diff = sequences.get(slot) - (pos + 1);
+
+            if (diff == 0)
+            {
+                if (head.compareAndSet(pos, pos + 1))
+                {
+                    T item = (T) items[slot];
+                    items[slot] = null;
+                    sequences.set(slot, pos + slots);
+                    return item;
+                }
+                pos = head.get();
+            }
+            else if (diff < 0)
+            {
+                // Empty, or the producer of this slot hasn't published its
+                // item yet. It will schedule the reader after it does.
+                return null;
+            }
+            else
+            {
+                // Another thread removed the item at this position.
+                pos = head.get();
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size()
+    {
+        // Read head first, so that a concurrent poll can't make us see a
+        // negative size.
+        long currentHead = head.get();
+        long size = tail.get() - currentHead;
+
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int capacity()
+    {
+        return capacity;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils.queue;
+
+import org.jetbrains.annotations.*;
+
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
+
+/**
+ * Implements the default {@link QueueBackend#offer(Object, long, TimeUnit)},
+ * so that its back-off isn't part of the {@link QueueBackend} interface.
+ */
+final class OfferWithBackoff
+{
+    /**
+     * The maximum time {@link #offer(QueueBackend, Object, long, TimeUnit)}
+     * waits before checking for room again.
+     */
+    private static final long MAX_BACKOFF_NANOS
+        = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private OfferWithBackoff()
+    {
+    }
+
+    /**
+     * Inserts an item in a backend, polling with a short back-off for up to a
+     * timeout while the backend is full.
+     * @return {@code true} if the item was inserted, {@code false} if the
+     * backend was still full after the timeout.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    static <T> boolean offer(
+        @NotNull QueueBackend<T> backend,
+        @NotNull T item,
+        long timeout,
+        @NotNull TimeUnit unit)
+        throws InterruptedException
+    {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!backend.offer(item))
+        {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0)
+            {
+                return false;
+            }
+            if (Thread.interrupted())
+            {
+                throw new InterruptedException();
+            }
+            LockSupport.parkNanos(Math.min(remaining, MAX_BACKOFF_NANOS));
+        }
+        return true;
+    }
+}
@@ -24,6 +24,7 @@ import java.lang.SuppressWarnings;
 import java.time.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.*;
 
 /**
  * An abstract queue of packets.
@@ -61,9 +62,9 @@ public class PacketQueue<T>
     }
 
     /**
-     * The underlying {@link BlockingQueue} which holds packets.
+     * The underlying {@link QueueBackend} which holds packets.
      */
-    @NotNull private final BlockingQueue<T> queue;
+    @NotNull private final QueueBackend<T> queue;
 
     /**
      * The {@link Observer} instance optionally used to collect and print
@@ -101,6 +102,20 @@ public class PacketQueue<T>
     @NotNull
     private ErrorHandler errorHandler = new ErrorHandler(){};
 
+    /**
+     * Decides which packets are dropped when a packet is added while
+     * {@link #queue} is full.
+     */
+    @NotNull
+    private DropPolicy<T> dropPolicy = DropPolicy.dropOldest();
+
+    /**
+     * Handles packets dropped by {@link #dropPolicy}. Kept in a field to
+     * avoid allocating a new lambda on every {@link #add}.
+     */
+    @NotNull
+    private final Consumer<T> droppedPacketHandler = this::onPacketDropped;
+
     /**
      * Creates a queue observer.
      */
@@ -170,10 +185,52 @@ public class PacketQueue<T>
         ExecutorService executor,
         Clock clock,
         boolean interruptOnClose)
+    {
+        this(
+            new LinkedBlockingQueueBackend<>(capacity),
+            enableStatistics,
+            id,
+            packetHandler,
+            executor,
+            clock,
+            interruptOnClose);
+    }
+
+    /**
+     * Initializes a new {@link PacketQueue} instance which stores its packets
+     * in a specific {@link QueueBackend}.
+     * @param backend the storage for the packets of the queue. Its capacity
+     * is the capacity of the queue.
+     * @param enableStatistics whether detailed statistics should be gathered by
+     * constructing an {@link Observer}.
+     * (In the base {@link PacketQueue} class this will be a {@link QueueStatisticsObserver}
+     * but subclasses can override this).
+     * This might affect performance. A value of {@code null} indicates that
+     * the default {@link #enableStatisticsDefault} value will be used.
+     * @param id the ID of the packet queue, to be used for logging.
+     * @param packetHandler An handler to be used by the queue for
+     * packets read from it.  The queue will start its own tasks on
+     * {@param executor}, which will read packets from the queue and execute
+     * {@code handler.handlePacket} on them.
+     * @param executor An executor service to use to execute
+     * packetHandler for items added to queue.
+     * @param clock If {@param enableStatistics} is true (or resolves as true),
+     *              a clock to use to construct the {@link Observer}.
+     * @param interruptOnClose whether the running task (if any) should be interrupted when the queue is closed. This
+     * is useful when the queue is closed from within a task.
+     */
+    public PacketQueue(
+        @NotNull QueueBackend<T> backend,
+        Boolean enableStatistics,
+        @NotNull String id,
+        @NotNull PacketHandler<T> packetHandler,
+        ExecutorService executor,
+        Clock clock,
+        boolean interruptOnClose)
     {
         this.id = id;
-        this.capacity = capacity;
-        queue = new LinkedBlockingQueue<>(capacity);
+        this.capacity = backend.capacity();
+        queue = backend;
 
         asyncQueueHandler = new AsyncQueueHandler<>(
             queue,
@@ -181,6 +238,7 @@ public class PacketQueue<T>
             id,
             executor,
             packetHandler.maxSequentiallyProcessedPackets(),
+            packetHandler.maxBatchSize(),
             interruptOnClose);
 
         if (enableStatistics == null)
@@ -227,30 +285,35 @@ public class PacketQueue<T>
         if (closed)
             return;
 
-        while (!queue.offer(pkt))
+        // Register the packet before it becomes visible to the reader, and
+        // before the drop policy possibly rejects it.
+        if (observer != null)
         {
-            // Drop from the head of the queue.
-            T p = queue.poll();
-            if (p != null)
-            {
-                if (observer != null)
-                {
-                    observer.dropped(p);
-                }
-                errorHandler.packetDropped();
+            observer.added(pkt);
+        }
 
-                // Call release on dropped packet to allow proper implementation
-                // of object pooling by PacketQueue users
-                releasePacket(p);
-            }
+        if (dropPolicy.offer(queue, pkt, droppedPacketHandler))
+        {
+            asyncQueueHandler.handleQueueItemsUntilEmpty();
         }
+    }
 
+    /**
+     * Handles a packet which was dropped by {@link #dropPolicy}: either a
+     * queued packet or the packet being added.
+     * @param p the dropped packet.
+     */
+    private void onPacketDropped(T p)
+    {
         if (observer != null)
         {
-            observer.added(pkt);
+            observer.dropped(p);
         }
+        errorHandler.packetDropped();
 
-        asyncQueueHandler.handleQueueItemsUntilEmpty();
+        // Call release on dropped packet to allow proper implementation
+        // of object pooling by PacketQueue users
+        releasePacket(p);
     }
 
     /**
@@ -270,6 +333,7 @@ public class PacketQueue<T>
             while ((item = queue.poll()) != null) {
                 releasePacket(item);
             }
+            errorHandler.queueClosed();
         }
     }
 
@@ -297,6 +361,13 @@ public class PacketQueue<T>
         return capacity;
     }
 
+    /** Get the {@link QueueBackend} which holds the packets of this queue. */
+    @NotNull
+    QueueBackend<T> backend()
+    {
+        return queue;
+    }
+
     /** Get the ID of this queue. */
     public String id()
     {
@@ -332,6 +403,17 @@ public class PacketQueue<T>
         this.errorHandler = errorHandler;
     }
 
+    /**
+     * Sets the policy which decides which packets are dropped when a packet
+     * is added while the queue is full. The default is
+     * {@link DropPolicy#dropOldest()}.
+     * @param dropPolicy the policy to set.
+     */
+    public void setDropPolicy(@NotNull DropPolicy<T> dropPolicy)
+    {
+        this.dropPolicy = dropPolicy;
+    }
+
     /**
      * A simple interface to handle packets.
      * @param <T> the type of the packets.
@@ -346,6 +428,42 @@ public class PacketQueue<T>
          */
         boolean handlePacket(T pkt);
 
+        /**
+         * Does something with a batch of packets. This is only used when
+         * {@link #maxBatchSize()} is greater than 1, in which case it is
+         * called instead of {@link #handlePacket} with the packets drained
+         * from the queue at once. This allows implementations to amortize
+         * per-call overhead (e.g. by using vectored socket writes).
+         * <p>
+         * The list is re-used by the queue after this method returns, so
+         * implementations must not retain a reference to it.
+         * @param pkts the packets to do something with, in queue order.
+         * @return {@code true} if the operation was successful, and
+         * {@code false} otherwise.
+         */
+        default boolean handlePackets(List<T> pkts)
+        {
+            boolean success = true;
+            for (T pkt : pkts)
+            {
+                success &= handlePacket(pkt);
+            }
+            return success;
+        }
+
+        /**
+         * Specifies the maximum number of packets passed to
+         * {@link #handlePackets} at once. Every packet in a batch counts
+         * towards {@link #maxSequentiallyProcessedPackets()}.
+         * @return a value greater than 1 to enable batching, or a value less
+         * than or equal to 1 to handle packets one by one with
+         * {@link #handlePacket}.
+         */
+        default int maxBatchSize()
+        {
+            return 1;
+        }
+
         /**
          * Specifies the number of packets allowed to be processed sequentially
          * without yielding control to executor's thread. Specifying positive
@@ -420,5 +538,29 @@ public class PacketQueue<T>
                 errorHandler.packetHandlingFailed(t);
             }
         }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void handleItems(List<T> items)
+        {
+            if (observer != null)
+            {
+                for (T item : items)
+                {
+                    observer.removed(item);
+                }
+            }
+
+            try
+            {
+                handler.handlePackets(items);
+            }
+            catch (Throwable t)
+            {
+                errorHandler.packetHandlingFailed(t);
+            }
+        }
     }
 }
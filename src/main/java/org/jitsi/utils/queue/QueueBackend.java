@@ -0,0 +1,138 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils.queue;
+
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/**
+ * The bounded storage which holds the items of a {@link PacketQueue}.
+ * Implementations must be safe to use from multiple producer threads
+ * concurrently with a single consumer thread.
+ *
+ * @param <T> the type of the items.
+ */
+public interface QueueBackend<T>
+{
+    /**
+     * Inserts an item if there is room for it.
+     * @param item the item to insert.
+     * @return {@code true} if the item was inserted, {@code false} if the
+     * backend is full.
+     */
+    boolean offer(@NotNull T item);
+
+    /**
+     * Inserts an item, waiting up to a timeout for room if the backend is
+     * full. The default implementation polls with a short back-off, since
+     * lock-free backends have nothing to wait on.
+     * @param item the item to insert.
+     * @param timeout the maximum time to wait.
+     * @param unit the unit of {@code timeout}.
+     * @return {@code true} if the item was inserted, {@code false} if the
+     * backend was still full after the timeout.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    default boolean offer(@NotNull T item, long timeout, @NotNull TimeUnit unit)
+        throws InterruptedException
+    {
+        return OfferWithBackoff.offer(this, item, timeout, unit);
+    }
+
+    /**
+     * Gets the part of this backend which an item is inserted in. Composite
+     * backends (e.g. {@link LanedQueueBackend}) return the sub-backend for
+     * {@code item}, so that a {@link DropPolicy} only drops items which
+     * compete with it for room. Other backends return themselves.
+     * @param item the item.
+     * @return the backend which {@code item} is inserted in.
+     */
+    @NotNull
+    default QueueBackend<T> backendFor(@NotNull T item)
+    {
+        return this;
+    }
+
+    /**
+     * Removes the oldest item which matches a predicate. The default
+     * implementation does not support removing items from the middle of the
+     * backend and always returns {@code null}.
+     * @param predicate the predicate to match.
+     * @return the removed item, or {@code null} if no item was removed.
+     */
+    default T removeFirst(@NotNull Predicate<? super T> predicate)
+    {
+        return null;
+    }
+
+    /**
+     * Removes the oldest item.
+     * @return the oldest item, or {@code null} if the backend is empty.
+     */
+    T poll();
+
+    /**
+     * Removes at most {@code maxItems} of the oldest items and adds them, in
+     * order, to a collection.
+     * @param c the collection to add the items to.
+     * @param maxItems the maximum number of items to remove.
+     * @return the number of items removed.
+     */
+    default int drainTo(@NotNull Collection<? super T> c, int maxItems)
+    {
+        int n = 0;
+        T item;
+        while (n < maxItems && (item = poll()) != null)
+        {
+            c.add(item);
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Gets the (possibly approximate, if there are concurrent modifications)
+     * number of items in this backend.
+     */
+    int size();
+
+    /**
+     * Gets the maximum number of items this backend can hold.
+     */
+    int capacity();
+
+    /**
+     * Inserts an item, evicting the oldest items until there is room for it.
+     * @param item the item to insert.
+     * @param onDropped invoked for every evicted item.
+     */
+    default void offerDroppingOldest(
+        @NotNull T item,
+        @NotNull Consumer<? super T> onDropped)
+    {
+        while (!offer(item))
+        {
+            T dropped = poll();
+            if (dropped != null)
+            {
+                onDropped.accept(dropped);
+            }
+        }
+    }
+}
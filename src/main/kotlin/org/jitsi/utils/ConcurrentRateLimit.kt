@@ -0,0 +1,182 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils
+
+import java.time.Clock
+import java.time.Duration
+import java.time.Instant
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import java.util.function.Function
+
+/**
+ * A thread-safe, lock-free alternative to [RateLimit], configured in the same way:
+ * - there must be at least [defaultMinInterval] between accepted requests
+ * - requests are accepted at a rate of [maxRequests] per [interval], with bursts of up to [maxRequests]
+ *
+ * This is a token bucket, implemented with the generic cell rate algorithm (GCRA): the whole state is kept in a single
+ * [AtomicLong] and updated with a compare-and-set, and accepting a request doesn't allocate. Unlike [RateLimit], which
+ * remembers the time of every accepted request, the rate limit is spread over the [interval]: after a burst, requests
+ * are accepted again as soon as the rate allows rather than when the first request of the burst leaves the interval.
+ *
+ * Times are tracked with millisecond resolution, and [interval] can be at most a few hours.
+ */
+class ConcurrentRateLimit @JvmOverloads constructor(
+    /** Never accept a request unless at least [defaultMinInterval] has passed since the last request */
+    private val defaultMinInterval: Duration = 10.secs,
+    /** Accept at most [maxRequests] per [interval]. */
+    private val maxRequests: Int = 3,
+    /** Accept at most [maxRequests] per [interval]. */
+    private val interval: Duration = 60.secs,
+    private val clock: Clock = Clock.systemUTC()
+) {
+    init {
+        if (maxRequests < 1 || interval.toMillis() < maxRequests) {
+            throw IllegalArgumentException(
+                "Must allow at least one request per interval and at most one per ms: $maxRequests per $interval"
+            )
+        }
+        if (interval.toMillis() > DELTA_MASK) {
+            throw IllegalArgumentException("The interval must be at most $DELTA_MASK ms: $interval")
+        }
+    }
+
+    /** The time between requests at the sustained rate (the "emission interval" of the GCRA). */
+    private val emissionIntervalMs = interval.toMillis() / maxRequests
+
+    /** How far ahead of the sustained rate requests may be (the "tolerance" of the GCRA). */
+    private val toleranceMs = interval.toMillis() - emissionIntervalMs
+
+    private val defaultMinIntervalMs = defaultMinInterval.toMillis()
+
+    /** Times are stored relative to this [Clock.millis] time, so that they fit in the upper bits of [state]. */
+    private val originMs = clock.millis()
+
+    /**
+     * The theoretical arrival time (TAT) of the next request in the upper bits, and the time between the
+     * last accepted request and the TAT in the lower bits. [NEVER] if no request has been accepted.
+     */
+    private val state = AtomicLong(NEVER)
+
+    /** Return true if the request should be accepted and false otherwise. */
+    fun accept(): Boolean = acceptAt(clock.millis(), defaultMinIntervalMs)
+
+    /** Return true if the request should be accepted and false otherwise.
+     * [now] is the current time.
+     * [minInterval] can be specified per [accept] call to support varying minimum intervals
+     *  (e.g., based on round-trip times).
+     *  */
+    @JvmOverloads
+    fun accept(now: Instant, minInterval: Duration = defaultMinInterval): Boolean =
+        acceptAt(now.toEpochMilli(), minInterval.toMillis())
+
+    /**
+     * Like [accept], with the current time in [Clock.millis] of [clock] and the minimum interval in milliseconds.
+     */
+    fun acceptAt(nowMs: Long, minIntervalMs: Long): Boolean {
+        val now = (nowMs - originMs).coerceAtLeast(0)
+        while (true) {
+            val current = state.get()
+            val tat = if (current == NEVER) {
+                now
+            } else {
+                val tat = current ushr DELTA_BITS
+                val lastAccepted = tat - (current and DELTA_MASK)
+                if (now - lastAccepted < minIntervalMs || tat - now > toleranceMs) {
+                    return false
+                }
+                maxOf(tat, now)
+            }
+            val newTat = tat + emissionIntervalMs
+            if (state.compareAndSet(current, (newTat shl DELTA_BITS) or (newTat - now))) {
+                return true
+            }
+        }
+    }
+
+    /**
+     * Whether this limit is in the same state as a new one at [nowMs], i.e. it can be discarded and re-created.
+     */
+    fun isIdle(nowMs: Long = clock.millis()): Boolean {
+        val current = state.get()
+        if (current == NEVER) {
+            return true
+        }
+        val now = nowMs - originMs
+        val tat = current ushr DELTA_BITS
+        val lastAccepted = tat - (current and DELTA_MASK)
+        return tat <= now && now - lastAccepted >= defaultMinIntervalMs
+    }
+
+    companion object {
+        private const val DELTA_BITS = 24
+        private const val DELTA_MASK = (1L shl DELTA_BITS) - 1
+        private const val NEVER = 0L
+    }
+}
+
+/**
+ * A [ConcurrentRateLimit] per key (e.g. per endpoint or per conference), all with the same configuration. Limits are
+ * created when first used, and limits which have been idle for a whole [interval] are discarded, so that a large and
+ * changing set of keys doesn't leak memory.
+ *
+ * A request for a key whose limit is being discarded concurrently may be accepted even though the limit would
+ * reject it, at most once per discarded limit.
+ */
+class KeyedRateLimit<K : Any> @JvmOverloads constructor(
+    private val defaultMinInterval: Duration = 10.secs,
+    private val maxRequests: Int = 3,
+    private val interval: Duration = 60.secs,
+    private val clock: Clock = Clock.systemUTC()
+) {
+    private val limits = ConcurrentHashMap<K, ConcurrentRateLimit>()
+
+    private val createLimit = Function<K, ConcurrentRateLimit> {
+        ConcurrentRateLimit(defaultMinInterval, maxRequests, interval, clock)
+    }
+
+    private val defaultMinIntervalMs = defaultMinInterval.toMillis()
+
+    private val evictionIntervalMs = maxOf(interval, defaultMinInterval).toMillis()
+
+    /** The [Clock.millis] time at which idle limits will be discarded next. */
+    private val nextEvictionMs = AtomicLong(clock.millis() + evictionIntervalMs)
+
+    /** The number of keys which currently have a limit. */
+    val size: Int
+        get() = limits.size
+
+    /** Return true if a request for [key] should be accepted and false otherwise. */
+    fun accept(key: K): Boolean = accept(key, defaultMinIntervalMs)
+
+    /**
+     * Return true if a request for [key] should be accepted and false otherwise, using a specific minimum interval
+     * in milliseconds.
+     */
+    fun accept(key: K, minIntervalMs: Long): Boolean {
+        val nowMs = clock.millis()
+        maybeEvictIdle(nowMs)
+        val limit = limits[key] ?: limits.computeIfAbsent(key, createLimit)
+        return limit.acceptAt(nowMs, minIntervalMs)
+    }
+
+    private fun maybeEvictIdle(nowMs: Long) {
+        val next = nextEvictionMs.get()
+        if (nowMs >= next && nextEvictionMs.compareAndSet(next, nowMs + evictionIntervalMs)) {
+            limits.values.removeIf { it.isIdle(nowMs) }
+        }
+    }
+}
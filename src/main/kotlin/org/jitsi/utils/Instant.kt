@@ -91,6 +91,23 @@ fun Instant.isFinite(): Boolean = !this.isInfinite()
  */
 fun Clock.roundedMillis() = this.instant().toRoundedEpochMilli()
 
+/**
+ * Whether this is one of the system clocks, whose time can be read with [System.nanoTime].
+ */
+fun Clock.isSystemClock() = this == Clock.systemUTC() || this == Clock.systemDefaultZone()
+
+/**
+ * A time in nanoseconds for measuring elapsed time with this clock, which doesn't allocate for the system clocks.
+ * For the system clocks this is [System.nanoTime], and otherwise (e.g. for a [org.jitsi.utils.time.FakeClock]) the
+ * time since the epoch. Only differences between values read from the same clock are meaningful.
+ */
+@JvmOverloads
+fun Clock.nanoTime(isSystemClock: Boolean = isSystemClock()): Long = if (isSystemClock) {
+    System.nanoTime()
+} else {
+    instant().let { it.epochSecond * 1_000_000_000L + it.nano }
+}
+
 /**
  * Returns the maximum of two [Instant]s
  */
@@ -15,93 +15,186 @@
  */
 package org.jitsi.utils.logging2
 
-import java.lang.ref.Cleaner
-import java.lang.ref.WeakReference
+import java.util.logging.Level
 
 /**
  * Maintains a map of key-value pairs (both Strings) which holds arbitrary context to use as a prefix for log messages.
  * Sub-contexts can be created and will inherit any context values from their ancestors' context.
+ *
+ * Changing the context only increments a version counter. The combined context (the ancestors' and this context) is
+ * recomputed, and formatted, lazily the first time it is used after a change. Sub-contexts recognize that an ancestor
+ * has changed by comparing versions, so changing a context with many descendants is O(1).
+ *
+ * A context can also carry a level override, which lets loggers using it (or a sub-context) log messages below their
+ * configured level, e.g. to debug a single conference. Overrides are set on a context with [levelOverride], or for
+ * all contexts with a given key-value pair with [setLevelOverrideFor].
  */
 class LogContext private constructor(
-    /** All context inherited from the 'ancestors' of this [LogContext] */
-    ancestorsContext: Map<String, String>,
+    /** The [LogContext] this was created from, whose context is inherited. */
+    private val parent: LogContext?,
     /** The context held by this specific LogContext. */
     private var context: Map<String, String>
 ) {
     @JvmOverloads
-    constructor(context: Map<String, String> = emptyMap()) : this(
-        context = context.toMap(),
-        ancestorsContext = emptyMap()
-    )
+    constructor(context: Map<String, String> = emptyMap()) : this(parent = null, context = context.toMap())
 
     constructor(key: String, value: String) : this(context = mapOf(key to value))
 
-    private var ancestorsContext: Map<String, String> = ancestorsContext
-        set(newValue) {
-            field = newValue
-            updateFormattedContext()
-        }
+    /** Incremented whenever [context] or [ownLevelOverride] changes. */
+    @Volatile
+    private var version = 0L
+
+    /** The level override set on this context, if any. */
+    private var ownLevelOverride: Level? = null
+
+    /** The combined context as of the last time it was used. */
+    @Volatile
+    private var snapshot: Snapshot? = null
 
     /**
      * The formatted String representing the total context (the combination of the ancestors' context and this
      * context)
      */
-    var formattedContext: String = formatContext(ancestorsContext + context)
-        private set
-
-    @Synchronized
-    private fun updateFormattedContext() {
-        val combined = ancestorsContext + context
-        formattedContext = formatContext(combined)
-        updateChildren(combined)
-    }
-
-    /** Child [LogContext]s of this [LogContext] (which will be notified anytime this context changes) */
-    private val childContexts = mutableMapOf<Long, WeakReference<LogContext>>()
+    val formattedContext: String
+        get() = getSnapshot().formatted
 
-    private var nextKey = 0L
+    /**
+     * The total context (the combination of the ancestors' context and this context) as key-value pairs, with the
+     * ancestors' keys first. The map must not be modified.
+     */
+    val fields: Map<String, String>
+        get() = getSnapshot().fields
 
-    @Synchronized
-    fun createSubContext(childContextData: Map<String, String>) = LogContext(
-        ancestorsContext + context,
-        childContextData
-    ).also {
-        val key = nextKey++
-        childContexts[key] = WeakReference(it)
-        CLEANER.register(it) {
-            synchronized(this@LogContext) {
-                childContexts.remove(key)
+    /**
+     * The lowest level of messages which loggers using this context should log, regardless of their own level, or
+     * null if there is no override. Setting it affects sub-contexts which don't have their own override. Reading it
+     * is a single volatile read as long as no override was ever set.
+     *
+     * If not set on this context or an ancestor, the override is the lowest level set with [setLevelOverrideFor] for a
+     * key-value pair of this context.
+     */
+    var levelOverride: Level?
+        get() = if (overridesUsed) getSnapshot().levelOverride else null
+        set(value) {
+            synchronized(this) {
+                overridesUsed = true
+                ownLevelOverride = value
+                version++
             }
         }
+
+    /**
+     * The combined context as of now. Callers which need both the [formattedContext] and the [fields] (e.g. to create
+     * a log record) should read them from the same snapshot, so that they are consistent and only looked up once.
+     */
+    fun getSnapshot(): Snapshot {
+        val parentSnapshot = parent?.getSnapshot()
+        val rules = levelOverrideRules
+        val current = snapshot
+        if (current != null && current.version == version && current.parent === parentSnapshot &&
+            current.rules === rules
+        ) {
+            return current
+        }
+        return synchronized(this) {
+            val fields = if (parentSnapshot == null) context else parentSnapshot.fields + context
+            val explicitLevelOverride = ownLevelOverride ?: parentSnapshot?.explicitLevelOverride
+            Snapshot(
+                parentSnapshot,
+                version,
+                fields,
+                rules,
+                explicitLevelOverride,
+                explicitLevelOverride ?: findLevelOverride(rules, fields)
+            ).also { snapshot = it }
+        }
     }
 
+    fun createSubContext(childContextData: Map<String, String>) = LogContext(this, childContextData.toMap())
+
     fun addContext(key: String, value: String) = addContext(mapOf(key to value))
 
     @Synchronized
     fun removeContext(key: String) {
         context = context - key
-        updateFormattedContext()
+        version++
     }
 
     @Synchronized
     fun addContext(addedContext: Map<String, String>) {
         context = context + addedContext
-        updateFormattedContext()
-    }
-
-    /** Notify children of changes in this context */
-    @Synchronized
-    private fun updateChildren(newAncestorContext: Map<String, String>) = childContexts.values.forEach {
-        it.get()?.ancestorsContext = newAncestorContext
+        version++
     }
 
     override fun toString() = formattedContext
 
+    /**
+     * The combined context of a [LogContext] at a specific [version] of it, of its [parent]'s snapshot and of the
+     * level override [rules].
+     */
+    class Snapshot internal constructor(
+        internal val parent: Snapshot?,
+        internal val version: Long,
+        /** See [LogContext.fields]. */
+        val fields: Map<String, String>,
+        internal val rules: Map<Pair<String, String>, Level>,
+        /** The override set on the context or its closest ancestor which has one. */
+        internal val explicitLevelOverride: Level?,
+        internal val levelOverride: Level?
+    ) {
+        /** Formatted on first use, which may happen more than once if multiple threads race to do it. */
+        private var formattedOrNull: String? = null
+
+        /** See [LogContext.formattedContext]. */
+        val formatted: String
+            get() = formattedOrNull ?: formatContext(fields).also { formattedOrNull = it }
+    }
+
     companion object {
         const val CONTEXT_START_TOKEN = "["
         const val CONTEXT_END_TOKEN = "]"
 
-        private val CLEANER = Cleaner.create()
+        /** Whether a level override was ever set, so that there's nothing to check until one is. */
+        @Volatile
+        private var overridesUsed = false
+
+        /** The level overrides by key-value pair, see [setLevelOverrideFor]. Replaced on every change. */
+        @Volatile
+        private var levelOverrideRules: Map<Pair<String, String>, Level> = emptyMap()
+
+        /**
+         * Set a level override for all contexts which contain [key]=[value] (including inherited context), e.g.
+         * `setLevelOverrideFor("confId", "1234", Level.FINE)` to debug a single conference. A null [level] removes the
+         * override. Overrides set on a context with [levelOverride] take precedence.
+         */
+        @JvmStatic
+        @Synchronized
+        fun setLevelOverrideFor(key: String, value: String, level: Level?) {
+            overridesUsed = true
+            levelOverrideRules = if (level == null) {
+                levelOverrideRules - (key to value)
+            } else {
+                levelOverrideRules + ((key to value) to level)
+            }
+        }
+
+        /** Remove all the overrides set with [setLevelOverrideFor]. */
+        @JvmStatic
+        @Synchronized
+        fun clearLevelOverrides() {
+            levelOverrideRules = emptyMap()
+        }
+
+        private fun findLevelOverride(rules: Map<Pair<String, String>, Level>, fields: Map<String, String>): Level? {
+            var lowest: Level? = null
+            for ((keyValue, level) in rules) {
+                val matches = fields[keyValue.first] == keyValue.second
+                if (matches && (lowest == null || level.intValue() < lowest.intValue())) {
+                    lowest = level
+                }
+            }
+            return lowest
+        }
 
         private fun formatContext(context: Map<String, String>): String {
             val s = context.entries.joinToString(separator = " ") { "${it.key}=${it.value}" }
@@ -17,7 +17,10 @@ package org.jitsi.utils.queue
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings
 import org.jitsi.utils.OrderedJsonObject
+import org.jitsi.utils.isSystemClock
+import org.jitsi.utils.nanoTime
 import org.jitsi.utils.stats.BucketStats
+import org.jitsi.utils.stats.LogLinearHistogram
 import java.time.Clock
 import java.time.Duration
 import java.time.Instant
@@ -55,9 +58,14 @@ class QueueStatistics(queueSize: Int, val clock: Clock) {
     private val queueLengthStats = BucketStats(getQueueLengthBucketSizes(queueSize), "_queue_size_at_remove", "")
 
     /**
-     * Statistics about the time that packets were waiting in the queue.
+     * The time that packets were waiting in the queue, in nanoseconds.
      */
-    private val queueWaitStats = if (TRACK_TIMES) BucketStats(waitBucketSizes, "_queue_wait_time_ms", " ms") else null
+    private val queueWaitHistogram = if (TRACK_TIMES) LogLinearHistogram(MAX_TRACKED_WAIT_NANOS) else null
+
+    /**
+     * The time that dropped packets were waiting in the queue before being dropped, in nanoseconds.
+     */
+    private val queueDropWaitHistogram = if (TRACK_TIMES) LogLinearHistogram(MAX_TRACKED_WAIT_NANOS) else null
 
     /**
      * Gets a snapshot of the stats in JSON format.
@@ -80,7 +88,10 @@ class QueueStatistics(queueSize: Int, val clock: Clock) {
                 stats["average_remove_rate_pps"] = packetsRemoved / durationSecs
             }
             stats["queue_size_at_remove"] = queueLengthStats.toJson()
-            queueWaitStats?.let { stats["queue_wait_time"] = it.toJson() }
+            queueWaitHistogram?.let { stats["queue_wait_time_ns"] = it.toJson("_queue_wait_time_ns") }
+            queueDropWaitHistogram?.let {
+                stats["queue_wait_time_at_drop_ns"] = it.toJson("_queue_wait_time_at_drop_ns")
+            }
             return stats
         }
 
@@ -97,19 +108,34 @@ class QueueStatistics(queueSize: Int, val clock: Clock) {
     /**
      * Registers the removal of a packet.
      */
-    fun removed(queueSize: Int, waitTime: Duration?) {
+    fun removed(queueSize: Int, waitTime: Duration?) = removed(queueSize, waitTime?.toNanos() ?: -1)
+
+    /**
+     * Registers the removal of a packet which waited in the queue for [waitNanos] nanoseconds (or a negative value if
+     * unknown).
+     */
+    fun removed(queueSize: Int, waitNanos: Long) {
         totalPacketsRemoved.increment()
         queueLengthStats.addValue(queueSize.toLong())
-        if (waitTime != null) {
-            queueWaitStats?.addValue(waitTime.toMillis()) // TODO: measure in nanos?
+        if (waitNanos >= 0) {
+            queueWaitHistogram?.recordValue(waitNanos)
         }
     }
 
     /**
      * Registers that a packet was dropped.
      */
-    fun dropped() {
+    fun dropped() = dropped(-1)
+
+    /**
+     * Registers that a packet was dropped after waiting in the queue for [waitNanos] nanoseconds (or a negative value
+     * if unknown).
+     */
+    fun dropped(waitNanos: Long) {
         totalPacketsDropped.increment()
+        if (waitNanos >= 0) {
+            queueDropWaitHistogram?.recordValue(waitNanos)
+        }
     }
 
     companion object {
@@ -125,11 +151,17 @@ class QueueStatistics(queueSize: Int, val clock: Clock) {
         @field:Suppress("ktlint:standard:property-naming")
         var TRACK_TIMES = false
 
+        /** Waits longer than this are recorded in the highest bucket of the wait time histograms. */
+        private const val MAX_TRACKED_WAIT_NANOS = 60_000_000_000L
+
         private val queueStatsById = ConcurrentHashMap<String, QueueStatistics>()
 
-        internal fun globalStatsFor(queue: PacketQueue<*>, clock: Clock) = queueStatsById.computeIfAbsent(queue.id()) {
+        internal fun globalStatsFor(queue: PacketQueue<*>, clock: Clock) =
+            globalStatsFor(queue.id(), queue.capacity(), clock)
+
+        internal fun globalStatsFor(id: String, capacity: Int, clock: Clock) = queueStatsById.computeIfAbsent(id) {
             /* Assume all queues with the same ID have the same capacity and can use the same size buckets. */
-            QueueStatistics(queue.capacity(), clock)
+            QueueStatistics(capacity, clock)
         }
 
         fun getStatistics() = OrderedJsonObject().apply {
@@ -169,27 +201,40 @@ class QueueStatistics(queueSize: Int, val clock: Clock) {
 
             return list
         }
-
-        /**
-         * The queue waiting time bucket sizes.
-         */
-        private val waitBucketSizes = listOf(0L, 2, 5, 20, 50, 200, 500, 1000, Long.MAX_VALUE)
     }
 }
 
+/**
+ * Keeps the [QueueStatistics] of a [PacketQueue].
+ *
+ * When [QueueStatistics.TRACK_TIMES] is enabled, the wait times of packets which implement [EnqueueTimestamped] are
+ * tracked without allocating or locking: the enqueue time is stored in the packet. Other packets still fall back to a
+ * synchronized identity map, which boxes the time of each packet and takes a lock shared by the producers and the
+ * consumer. Packet types used in queues with times tracked in production should therefore implement
+ * [EnqueueTimestamped].
+ */
 class QueueStatisticsObserver<T>(
     val queue: PacketQueue<T>,
     val clock: Clock
 ) : PacketQueue.Observer<T> {
+    private val trackTimes = QueueStatistics.TRACK_TIMES
+
     /**
-     * A map of the time when objects were put in the queue
+     * A map of the time when objects were put in the queue, used for packets which can not carry it themselves (i.e.
+     * which don't implement [EnqueueTimestamped]).
      */
-    private val insertionTime = if (QueueStatistics.TRACK_TIMES) {
-        Collections.synchronizedMap(IdentityHashMap<Any, Instant>())
+    private val insertionTime = if (trackTimes) {
+        Collections.synchronizedMap(IdentityHashMap<Any, Long>())
     } else {
         null
     }
 
+    /**
+     * Whether [clock] is the system clock, in which case times are read with [System.nanoTime], which neither
+     * allocates nor goes backwards.
+     */
+    private val useNanoTime = clock.isSystemClock()
+
     private val localStats = if (QueueStatistics.DEBUG) QueueStatistics(queue.capacity(), clock) else null
     private val globalStats = QueueStatistics.globalStatsFor(queue, clock)
 
@@ -198,12 +243,52 @@ class QueueStatisticsObserver<T>(
      */
     private val queueSize = AtomicInteger(0)
 
+    /**
+     * If the queue is backed by a [LanedQueueBackend], the statistics of each of its lanes.
+     */
+    @Suppress("UNCHECKED_CAST")
+    private val lanes = (queue.backend() as? LanedQueueBackend<T>)?.let { backend ->
+        Lanes(
+            backend,
+            Array(backend.laneCount()) { LaneStatistics(queue.id(), it, backend.lane(it).capacity(), clock) }
+        )
+    }
+
+    private fun nowNanos(): Long = clock.nanoTime(useNanoTime)
+
+    private fun recordEnqueueTime(pkt: T) {
+        val now = nowNanos()
+        if (pkt is EnqueueTimestamped) {
+            pkt.enqueueTimeNanos = now
+        } else {
+            insertionTime?.put(pkt, now)
+        }
+    }
+
+    /**
+     * Gets the time [pkt] spent in the queue in nanoseconds, or -1 if times are not tracked.
+     */
+    private fun waitNanos(pkt: T): Long {
+        if (!trackTimes) {
+            return -1
+        }
+        val enqueueTime = if (pkt is EnqueueTimestamped) {
+            pkt.enqueueTimeNanos
+        } else {
+            insertionTime?.remove(pkt) ?: return -1
+        }
+        return nowNanos() - enqueueTime
+    }
+
     override fun added(pkt: T) {
         queueSize.incrementAndGet()
-        insertionTime?.put(pkt, clock.instant())
+        if (trackTimes) {
+            recordEnqueueTime(pkt)
+        }
 
         localStats?.added()
         globalStats.added()
+        lanes?.statsFor(pkt)?.added()
     }
 
     /**
@@ -211,13 +296,11 @@ class QueueStatisticsObserver<T>(
      */
     override fun removed(pkt: T) {
         val queueLength = queueSize.decrementAndGet()
-        val wait = insertionTime?.get(pkt)?.run {
-            val now = clock.instant()
-            Duration.between(this, now)
-        }
+        val wait = waitNanos(pkt)
 
         localStats?.removed(queueLength, wait)
         globalStats.removed(queueLength, wait)
+        lanes?.statsFor(pkt)?.removed(wait)
     }
 
     /**
@@ -225,14 +308,49 @@ class QueueStatisticsObserver<T>(
      */
     override fun dropped(pkt: T) {
         queueSize.decrementAndGet()
-        insertionTime?.remove(pkt) // TODO: track this time in stats?
+        val wait = waitNanos(pkt)
 
-        localStats?.dropped()
-        globalStats.dropped()
+        localStats?.dropped(wait)
+        globalStats.dropped(wait)
+        lanes?.statsFor(pkt)?.dropped(wait)
     }
 
     /**
      * Gets a snapshot of the stats in JSON format.
      */
-    override fun getStats(): OrderedJsonObject? = localStats?.stats
+    override fun getStats(): OrderedJsonObject? = localStats?.stats?.also { stats ->
+        lanes?.stats?.forEachIndexed { i, laneStats -> laneStats.localStats?.let { stats["lane_$i"] = it.stats } }
+    }
+
+    private class Lanes<T>(val backend: LanedQueueBackend<T>, val stats: Array<LaneStatistics>) {
+        fun statsFor(pkt: T) = stats[backend.laneOf(pkt!!)]
+    }
+
+    /**
+     * The statistics of a single lane of a [LanedQueueBackend]. The global statistics of lane `i` of a queue with ID
+     * `id` are available as `id_lane_i`.
+     */
+    private class LaneStatistics(queueId: String, index: Int, capacity: Int, clock: Clock) {
+        val localStats = if (QueueStatistics.DEBUG) QueueStatistics(capacity, clock) else null
+        private val globalStats = QueueStatistics.globalStatsFor("${queueId}_lane_$index", capacity, clock)
+        private val laneSize = AtomicInteger(0)
+
+        fun added() {
+            laneSize.incrementAndGet()
+            localStats?.added()
+            globalStats.added()
+        }
+
+        fun removed(waitNanos: Long) {
+            val laneLength = laneSize.decrementAndGet()
+            localStats?.removed(laneLength, waitNanos)
+            globalStats.removed(laneLength, waitNanos)
+        }
+
+        fun dropped(waitNanos: Long) {
+            laneSize.decrementAndGet()
+            localStats?.dropped(waitNanos)
+            globalStats.dropped(waitNanos)
+        }
+    }
 }
@@ -34,7 +34,12 @@ open class BucketStats(
      */
     thresholds: List<Long>,
     val averageMaxMinLabel: String = "",
-    val bucketLabel: String = ""
+    val bucketLabel: String = "",
+    /**
+     * An optional histogram to which all values are also added, used to report percentiles more precisely than the
+     * upper bounds which the thresholds allow.
+     */
+    private val histogram: LogLinearHistogram? = null
 ) {
     init {
         if (thresholds.size < 2) {
@@ -62,6 +67,7 @@ open class BucketStats(
         maxValue.maxAssign(value)
         minValue.minAssign(value)
         totalCount.increment()
+        histogram?.recordValue(value)
         if (!buckets.addValue(value)) discarded.increment()
     }
 
@@ -76,6 +82,7 @@ open class BucketStats(
         put("discarded", discarded.sum())
 
         put("buckets", getBucketsJson(snapshot.buckets, format))
+        histogram?.let { put("percentiles", it.snapshot.percentilesJson(averageMaxMinLabel)) }
     }
 
     val snapshot: Snapshot
@@ -182,6 +189,27 @@ class Buckets(private val thresholds: List<Long>) {
         return thresholdCounts.last()
     }
 
+    private fun findBucket(value: Long): LongAdder {
+        for (i in thresholdCounts.indices) {
+            if (value < thresholds[i + 1]) return thresholdCounts[i]
+        }
+        return thresholdCounts.last()
+    }
+
+    /**
+     * Add a value. If the value is outside of range defined by the thresholds it is ignored and the function returns
+     * false.
+     * @return true iff the value was successfully added.
+     */
+    fun addValue(value: Long): Boolean {
+        return if (value < thresholds.first() || value > thresholds.last()) {
+            false
+        } else {
+            findBucket(value).increment()
+            true
+        }
+    }
+
     /**
      * Add a value. If the value is outside of range defined by the thresholds it is ignored and the function returns
      * false.
@@ -0,0 +1,127 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils.stats
+
+import org.jitsi.utils.isSystemClock
+import org.jitsi.utils.ms
+import org.jitsi.utils.nanoTime
+import java.time.Clock
+import java.time.Duration
+
+/**
+ * Summarizes the values added in a sliding window, like a [TimeBasedSlidingWindow] whose values are only used for
+ * aggregates. Instead of keeping every value, values are aggregated into buckets of [bucketSize] (count, sum, min and
+ * max), so the memory use is bounded by the number of buckets regardless of the rate at which values are added, and
+ * old values are evicted a bucket at a time.
+ *
+ * The window moves in steps of [bucketSize]: a value is included for at least `windowSize - bucketSize` and less than
+ * `windowSize` after it was added.
+ */
+class BucketedSlidingWindow @JvmOverloads constructor(
+    /**
+     * The duration of the window for which values will be kept.
+     */
+    windowSize: Duration,
+    /**
+     * The duration of each bucket in the window. This must divide [windowSize] evenly.
+     */
+    bucketSize: Duration = 10.ms,
+    private val clock: Clock = Clock.systemUTC()
+) {
+    private val bucketNanos = bucketSize.toNanos()
+    private val numBuckets = (windowSize.toNanos() / bucketNanos).toInt()
+
+    init {
+        if (bucketNanos <= 0 || bucketNanos * numBuckets != windowSize.toNanos() || numBuckets < 1) {
+            throw IllegalArgumentException(
+                "The bucketSize ($bucketSize) must divide the window size ($windowSize) evenly."
+            )
+        }
+    }
+
+    private val isSystemClock = clock.isSystemClock()
+
+    /** The time (in units of [bucketNanos]) of each bucket, used to recognize buckets from an earlier lap. */
+    private val times = LongArray(numBuckets) { Long.MIN_VALUE }
+    private val counts = LongArray(numBuckets)
+    private val sums = LongArray(numBuckets)
+    private val mins = LongArray(numBuckets)
+    private val maxes = LongArray(numBuckets)
+
+    private fun now() = Math.floorDiv(clock.nanoTime(isSystemClock), bucketNanos)
+
+    /**
+     * Add a value.
+     */
+    @Synchronized
+    fun add(value: Long) {
+        val now = now()
+        val index = Math.floorMod(now, numBuckets)
+        if (times[index] != now) {
+            times[index] = now
+            counts[index] = 0
+            sums[index] = 0
+            mins[index] = Long.MAX_VALUE
+            maxes[index] = Long.MIN_VALUE
+        }
+        counts[index]++
+        sums[index] += value
+        if (value < mins[index]) mins[index] = value
+        if (value > maxes[index]) maxes[index] = value
+    }
+
+    /**
+     * Get a summary of the values currently contained within the window.
+     */
+    @Synchronized
+    fun get(): Summary {
+        val oldest = now() - numBuckets + 1
+        var count = 0L
+        var sum = 0L
+        var min = Long.MAX_VALUE
+        var max = Long.MIN_VALUE
+        for (i in 0 until numBuckets) {
+            if (times[i] >= oldest && counts[i] > 0) {
+                count += counts[i]
+                sum += sums[i]
+                min = minOf(min, mins[i])
+                max = maxOf(max, maxes[i])
+            }
+        }
+        return if (count == 0L) Summary.EMPTY else Summary(count, sum, min, max)
+    }
+
+    /**
+     * The aggregates of the values in the window.
+     */
+    data class Summary(
+        val count: Long,
+        val sum: Long,
+        /** The minimum value, or 0 if there are no values. */
+        val min: Long,
+        /** The maximum value, or 0 if there are no values. */
+        val max: Long
+    ) {
+        /** The average of the values, or 0 if there are no values. */
+        val average: Double
+            get() = if (count == 0L) 0.0 else sum / count.toDouble()
+
+        companion object {
+            @JvmField
+            val EMPTY = Summary(0, 0, 0, 0)
+        }
+    }
+}
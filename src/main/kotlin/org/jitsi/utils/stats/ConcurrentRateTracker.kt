@@ -0,0 +1,284 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils.stats
+
+import org.jitsi.utils.ms
+import java.time.Clock
+import java.time.Duration
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+import java.util.concurrent.atomic.LongAdder
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.math.roundToLong
+
+/**
+ * A [RateTracker] for values which are added from many threads concurrently. [update] never takes a lock: each thread
+ * adds to a ring of buckets in one of several stripes (selected by thread), and the stripes are only merged when old
+ * buckets are erased. The rate is computed from a [LongAdder], so reading it doesn't block writers either.
+ *
+ * The window, bucket and [bucketExpired] semantics are the same as those of [RateTracker], with one difference: a
+ * bucket which expired while another thread was erasing old buckets is reported together with the next bucket which
+ * expires. Counts must not be negative, and the count of a single bucket in a single stripe must fit in 40 bits.
+ *
+ * The memory use is proportional to the number of buckets times the number of stripes, so this should only be used
+ * for trackers which are actually contended.
+ */
+open class ConcurrentRateTracker @JvmOverloads constructor(
+    /**
+     * The number of buckets.
+     */
+    private val numBuckets: Int,
+    /**
+     * The size of each bucket in milliseconds.
+     */
+    private val bucketSize: Duration = 1.ms,
+    private val clock: Clock = Clock.systemUTC(),
+    /**
+     * The number of stripes, rounded up to a power of two.
+     */
+    stripes: Int = defaultStripes
+) {
+    @JvmOverloads
+    constructor(
+        /**
+         * The duration of the window for which values will be kept.
+         */
+        windowSize: Duration,
+        /**
+         * The duration of each bucket in the window. This must divide [windowSize] evenly.
+         */
+        bucketSize: Duration = 1.ms,
+        clock: Clock = Clock.systemUTC(),
+        stripes: Int = defaultStripes
+    ) : this(
+        numBuckets = (windowSize.toMillis() / bucketSize.toMillis()).toInt(),
+        bucketSize = bucketSize,
+        clock = clock,
+        stripes = stripes
+    ) {
+        if (bucketSize.toMillis() * numBuckets.toLong() != windowSize.toMillis()) {
+            throw IllegalArgumentException(
+                "The bucketSize (${bucketSize.toMillis()} ms) must divide the window size " +
+                    "(${windowSize.toMillis()} ms) evenly."
+            )
+        }
+    }
+
+    init {
+        if (stripes < 1) {
+            throw IllegalArgumentException("stripes must be positive: $stripes")
+        }
+    }
+
+    /**
+     * The number of buckets in each ring, i.e. the number of time ticks in the window (see [RateTracker]).
+     */
+    private val ringSize = numBuckets + 1
+
+    private val stripeMask = (if (stripes == 1) 1 else Integer.highestOneBit((stripes - 1) shl 1)) - 1
+
+    /**
+     * The buckets of all stripes. Each one holds the count in its lower [COUNT_BITS] bits, and the (truncated) lap of
+     * the ring in which it was last written in the upper bits, so that stale buckets can be recognized without
+     * clearing them first.
+     */
+    private val buckets = AtomicLongArray((stripeMask + 1) * ringSize)
+
+    /**
+     * Total count recorded in buckets.
+     */
+    private val accumulatedCount = LongAdder()
+
+    /**
+     * Counts of buckets which were overwritten by [update] before they were erased, and which haven't been passed to
+     * [bucketExpired] yet.
+     */
+    private val overwrittenCount = LongAdder()
+
+    /**
+     * Oldest time recorded in buckets. One time tick corresponds to [bucketSizeMs] milliseconds of time on the [clock].
+     */
+    @Volatile
+    private var oldestTime: Long = 0
+
+    /**
+     * The [clock] time at which the first value was inserted (via [update]).
+     */
+    private val firstInsertTimeMs = AtomicLong(-1)
+
+    /**
+     * Held while erasing old buckets. Threads which find it taken don't wait for it.
+     */
+    private val eraseLock = ReentrantLock()
+
+    /**
+     * The size of the window in milliseconds.
+     */
+    private val windowSizeMs = numBuckets * bucketSize.toMillis()
+
+    /**
+     * The size of a singe bucket in milliseconds.
+     */
+    private val bucketSizeMs = bucketSize.toMillis()
+
+    /**
+     * Convert a [clock] time to the local time representation (one tick is [bucketSizeMs] milliseconds).
+     */
+    private fun coerceMs(timeMs: Long) = timeMs / bucketSizeMs
+
+    private fun lapTag(time: Long) = (time / ringSize) and LAP_MASK
+
+    private fun tagOf(bucket: Long) = bucket ushr COUNT_BITS
+
+    private fun countOf(bucket: Long) = bucket and COUNT_MASK
+
+    private fun eraseOld(
+        /**
+         * The timestamp in ticks of [bucketSizeMs].
+         */
+        now: Long,
+        /**
+         * Whether to wait for another thread which is erasing buckets.
+         */
+        wait: Boolean
+    ) {
+        if (now - ringSize + 1 <= oldestTime) return
+        if (wait) eraseLock.lock() else if (!eraseLock.tryLock()) return
+        try {
+            val newOldestTime = now - ringSize + 1
+            var time = oldestTime
+            if (newOldestTime <= time) return
+            // Move the window before erasing the buckets which leave it, so that a thread which adds to one of them
+            // after it is erased sees that it is out of the window (see [update]).
+            oldestTime = newOldestTime
+            while (time < newOldestTime) {
+                val erasedCount = eraseBucket(time)
+                // The overwritten counts were already removed from accumulatedCount by update().
+                accumulatedCount.add(-erasedCount)
+                bucketExpired(erasedCount + overwrittenCount.sumThenReset())
+                ++time
+                if (accumulatedCount.sum() == 0L) {
+                    // This guarantees we go through all the buckets at most once,
+                    // even if newOldestTime is far greater than oldestTime.
+                    break
+                }
+            }
+            if (accumulatedCount.sum() == 0L) {
+                // The stream has had no packets in a whole window, reset.
+                firstInsertTimeMs.set(-1)
+            }
+        } finally {
+            eraseLock.unlock()
+        }
+    }
+
+    /**
+     * Clears the buckets for a specific time in all stripes.
+     * @return the total count that was in the buckets.
+     */
+    private fun eraseBucket(time: Long): Long {
+        val tag = lapTag(time)
+        var index = (time % ringSize).toInt()
+        var count = 0L
+        while (index < buckets.length()) {
+            count += clearBucket(index, tag)
+            index += ringSize
+        }
+        return count
+    }
+
+    /**
+     * Clears the bucket at a specific index if it was written in the lap with a specific tag.
+     * @return the count that was in the bucket.
+     */
+    private fun clearBucket(index: Int, tag: Long): Long {
+        while (true) {
+            val bucket = buckets.get(index)
+            if (tagOf(bucket) != tag || countOf(bucket) == 0L) return 0
+            if (buckets.compareAndSet(index, bucket, tag shl COUNT_BITS)) return countOf(bucket)
+        }
+    }
+
+    /**
+     * Get the rate in units per second.
+     */
+    open fun getRate(nowMs: Long): Long {
+        eraseOld(coerceMs(nowMs), wait = true)
+
+        // This avoids slow convergence at the start if the full window is used to compute the average rate.
+        val effectiveWindowSizeMs = (nowMs - firstInsertTimeMs.get()).coerceIn(bucketSizeMs, windowSizeMs)
+        return (accumulatedCount.sum().toDouble() * 1000 / effectiveWindowSizeMs).roundToLong()
+    }
+    val rate: Long
+        get() = getRate(clock.millis())
+
+    @JvmOverloads
+    fun getAccumulatedCount(nowMs: Long = clock.millis()): Long {
+        eraseOld(coerceMs(nowMs), wait = true)
+        return accumulatedCount.sum()
+    }
+
+    @JvmOverloads
+    fun update(count: Long = 1, nowMs: Long = clock.millis()) {
+        val now = coerceMs(nowMs)
+        if (now < oldestTime) {
+            // Too old data is ignored.
+            return
+        }
+        if (firstInsertTimeMs.get() < 0) firstInsertTimeMs.compareAndSet(-1, nowMs)
+        eraseOld(now, wait = false)
+
+        val stripe = Thread.currentThread().id.toInt() and stripeMask
+        val index = stripe * ringSize + (now % ringSize).toInt()
+        val tag = lapTag(now)
+        // Count it before it's visible in the bucket, so that accumulatedCount never drops below the sum of the
+        // buckets (which eraseOld relies on to stop early).
+        accumulatedCount.add(count)
+        while (true) {
+            val bucket = buckets.get(index)
+            if (tagOf(bucket) == tag) {
+                if (buckets.compareAndSet(index, bucket, bucket + count)) break
+            } else if (buckets.compareAndSet(index, bucket, (tag shl COUNT_BITS) or count)) {
+                // The bucket is from an earlier lap and wasn't erased yet, because another thread is erasing.
+                val staleCount = countOf(bucket)
+                if (staleCount != 0L) {
+                    accumulatedCount.add(-staleCount)
+                    overwrittenCount.add(staleCount)
+                }
+                break
+            }
+        }
+        if (now < oldestTime) {
+            // The window moved past [now] after the check above, and the bucket may have been erased before the count
+            // was added to it, in which case nothing would ever erase it. Back it out (along with any count added by
+            // another thread in the same situation).
+            accumulatedCount.add(-clearBucket(index, tag))
+        }
+    }
+
+    /** Method a subclass can override to find out when a bucket is expired.
+     * Default is a no-op.
+     */
+    protected open fun bucketExpired(count: Long) = Unit
+
+    companion object {
+        private const val COUNT_BITS = 40
+        private const val COUNT_MASK = (1L shl COUNT_BITS) - 1
+        private const val LAP_MASK = (1L shl (64 - COUNT_BITS)) - 1
+
+        private val defaultStripes = Runtime.getRuntime().availableProcessors().coerceAtMost(8)
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils.stats
+
+import org.jitsi.utils.OrderedJsonObject
+import org.jitsi.utils.maxAssign
+import org.jitsi.utils.minAssign
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+import java.util.concurrent.atomic.LongAdder
+import kotlin.math.ceil
+
+/**
+ * A histogram of non-negative [Long] values with log-linear buckets, similar to HdrHistogram: every power of two is
+ * split in 2^[precisionBits] equally sized buckets, so any percentile is reported with a relative error of at most
+ * 2^-[precisionBits], regardless of the magnitude of the values. This makes it suitable for e.g. latencies measured in
+ * nanoseconds, where hand-picked thresholds would either be too coarse or too many.
+ *
+ * Recording a value does not allocate. The counts are kept in a [LongArray] with one stripe per (group of) threads,
+ * so that concurrent writers rarely contend on the same counter. Stripes are only merged when taking a [snapshot].
+ */
+class LogLinearHistogram @JvmOverloads constructor(
+    /**
+     * The largest value which can be recorded precisely. Larger values are counted in the highest bucket.
+     */
+    val highestTrackableValue: Long,
+    /**
+     * The number of bits of precision. The relative error of reported values is at most 2^-precisionBits.
+     */
+    val precisionBits: Int = 5,
+    /**
+     * The number of stripes, rounded up to a power of two.
+     */
+    stripes: Int = defaultStripes
+) {
+    init {
+        if (highestTrackableValue < 1) {
+            throw IllegalArgumentException("highestTrackableValue must be positive: $highestTrackableValue")
+        }
+        if (precisionBits !in 1..16) {
+            throw IllegalArgumentException("precisionBits must be between 1 and 16: $precisionBits")
+        }
+        if (stripes < 1) {
+            throw IllegalArgumentException("stripes must be positive: $stripes")
+        }
+    }
+
+    private val subBucketCount = 1 shl precisionBits
+
+    /** The number of buckets in each stripe. */
+    val bucketCount = indexOf(highestTrackableValue) + 1
+
+    private val stripeMask = (if (stripes == 1) 1 else Integer.highestOneBit((stripes - 1) shl 1)) - 1
+
+    private val counts = AtomicLongArray((stripeMask + 1) * bucketCount)
+
+    private val totalValue = LongAdder()
+    private val maxValue = AtomicLong(0)
+    private val minValue = AtomicLong(Long.MAX_VALUE)
+
+    /** Values which were negative and therefore not recorded. */
+    private val discarded = LongAdder()
+
+    /**
+     * Records a value.
+     * @return true iff the value was recorded, i.e. it was not negative.
+     */
+    fun recordValue(value: Long): Boolean {
+        if (value < 0) {
+            discarded.increment()
+            return false
+        }
+        val stripe = Thread.currentThread().id.toInt() and stripeMask
+        val index = indexOf(value.coerceAtMost(highestTrackableValue))
+        counts.getAndIncrement(stripe * bucketCount + index)
+        totalValue.add(value)
+        maxValue.maxAssign(value)
+        minValue.minAssign(value)
+        return true
+    }
+
+    /**
+     * Gets the index of the bucket for a (non-negative) value.
+     */
+    private fun indexOf(value: Long): Int {
+        if (value < subBucketCount) {
+            return value.toInt()
+        }
+        val shift = (63 - java.lang.Long.numberOfLeadingZeros(value)) - precisionBits
+        return ((shift + 1) shl precisionBits) + ((value ushr shift) - subBucketCount).toInt()
+    }
+
+    /**
+     * Gets the smallest value which is counted in the bucket with a specific index.
+     */
+    fun lowestEquivalentValue(index: Int): Long {
+        if (index < subBucketCount) {
+            return index.toLong()
+        }
+        val shift = (index shr precisionBits) - 1
+        val subBucket = (index and (subBucketCount - 1)) + subBucketCount
+        return subBucket.toLong() shl shift
+    }
+
+    /**
+     * Gets the largest value which is counted in the bucket with a specific index.
+     */
+    fun highestEquivalentValue(index: Int): Long = if (index + 1 == bucketCount) {
+        Long.MAX_VALUE
+    } else {
+        lowestEquivalentValue(index + 1) - 1
+    }
+
+    /** Clears all recorded values. Values recorded concurrently may or may not be cleared. */
+    fun reset() {
+        for (i in 0 until counts.length()) {
+            counts.set(i, 0)
+        }
+        totalValue.reset()
+        maxValue.set(0)
+        minValue.set(Long.MAX_VALUE)
+        discarded.reset()
+    }
+
+    /**
+     * A consistent-enough view of the histogram: counts recorded while the snapshot is taken may or may not be
+     * included.
+     */
+    val snapshot: Snapshot
+        get() {
+            val merged = LongArray(bucketCount)
+            for (i in 0 until counts.length()) {
+                merged[i % bucketCount] += counts.get(i)
+            }
+            val min = minValue.get()
+            return Snapshot(
+                merged,
+                merged.sum(),
+                totalValue.sum(),
+                if (min == Long.MAX_VALUE) 0 else min,
+                maxValue.get(),
+                discarded.sum()
+            )
+        }
+
+    @JvmOverloads
+    fun toJson(label: String = "") = snapshot.toJson(label)
+
+    inner class Snapshot(
+        /** The count of each bucket, merged across stripes. */
+        val counts: LongArray,
+        val totalCount: Long,
+        val totalValue: Long,
+        val minValue: Long,
+        val maxValue: Long,
+        val discarded: Long
+    ) {
+        val average: Double
+            get() = totalValue / totalCount.toDouble()
+
+        /**
+         * Gets the value at a specific percentile, i.e. the (upper bound of the bucket of the) smallest recorded value
+         * which is larger than or equal to [percentile] percent of the recorded values. Returns 0 if no values have
+         * been recorded.
+         */
+        fun getValueAtPercentile(percentile: Double): Long {
+            if (totalCount == 0L) {
+                return 0
+            }
+            val rank = ceil(percentile.coerceIn(0.0, 100.0) / 100 * totalCount).toLong().coerceAtLeast(1)
+            var sum = 0L
+            for (i in counts.indices) {
+                sum += counts[i]
+                if (sum >= rank) {
+                    return highestEquivalentValue(i).coerceIn(minValue, maxValue)
+                }
+            }
+            return maxValue
+        }
+
+        fun toJson(label: String = "") = OrderedJsonObject().apply {
+            put("average$label", average)
+            put("max$label", maxValue)
+            put("min$label", minValue)
+            put("total_value", totalValue)
+            put("total_count", totalCount)
+            put("discarded", discarded)
+            putAll(percentilesJson(label))
+        }
+
+        /**
+         * Gets the values at commonly used percentiles (p50, p90, p99, p999 and p9999).
+         */
+        fun percentilesJson(label: String = "") = OrderedJsonObject().apply {
+            reportedPercentiles.forEach { (name, percentile) ->
+                put("$name$label", getValueAtPercentile(percentile))
+            }
+        }
+    }
+
+    companion object {
+        private val defaultStripes = Runtime.getRuntime().availableProcessors().coerceAtMost(16)
+
+        private val reportedPercentiles =
+            listOf("p50" to 50.0, "p90" to 90.0, "p99" to 99.0, "p999" to 99.9, "p9999" to 99.99)
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils.stats
+
+import org.jitsi.utils.isSystemClock
+import org.jitsi.utils.nanoTime
+import java.time.Clock
+import java.time.Duration
+
+private const val INITIAL_CAPACITY = 16
+
+/**
+ * A moving average like [MovingAverage], for primitive values. Values and their insertion times are kept in ring
+ * buffers of primitives which only grow when the window holds more values than ever before, so adding a value doesn't
+ * allocate, and evicting a value is O(1).
+ *
+ * By default all methods are synchronized. With [singleWriter], nothing is synchronized and values must only be added
+ * and [get] called from one thread at a time; other threads can read [lastAverage] without blocking.
+ */
+sealed class PrimitiveMovingAverage(
+    windowSize: Duration,
+    private val clock: Clock,
+    protected val singleWriter: Boolean
+) {
+    private val windowNanos = windowSize.toNanos()
+    private val isSystemClock = clock.isSystemClock()
+
+    /** The insertion times of the values, in [nanoTime] of [clock]. */
+    private var times = LongArray(INITIAL_CAPACITY)
+
+    /** The index of the oldest value. */
+    private var head = 0
+
+    /** The number of values in the window. */
+    protected var count = 0
+        private set
+
+    /**
+     * The average as of the last time a value was added or [get] was called, which may be read from any thread.
+     */
+    @Volatile
+    var lastAverage: Double = 0.0
+        private set
+
+    /**
+     * Get the average of the values currently contained within the sliding window.
+     */
+    fun get(): Double = if (singleWriter) doGet() else synchronized(this) { doGet() }
+
+    private fun doGet(): Double {
+        // Make sure the window is up-to-date
+        evict(clock.nanoTime(isSystemClock))
+        return average().also { lastAverage = it }
+    }
+
+    /**
+     * Evicts old values and reserves the slot for a new value inserted now. The caller must store the value in the
+     * slot, and then call [published].
+     * @return the index of the slot.
+     */
+    protected fun nextIndex(): Int {
+        val now = clock.nanoTime(isSystemClock)
+        evict(now)
+        if (count == times.size) {
+            grow()
+        }
+        val index = (head + count) and (times.size - 1)
+        times[index] = now
+        count++
+        return index
+    }
+
+    /**
+     * Updates [lastAverage] after a value was added.
+     */
+    protected fun published() {
+        lastAverage = average()
+    }
+
+    private fun evict(now: Long) {
+        while (count > 0 && now - times[head] > windowNanos) {
+            evicted(head)
+            head = (head + 1) and (times.size - 1)
+            count--
+        }
+    }
+
+    private fun grow() {
+        val newCapacity = times.size * 2
+        times = unwrap(times, LongArray(newCapacity))
+        resize(newCapacity)
+        head = 0
+    }
+
+    /**
+     * Copies the values of a full ring with its oldest value at [head] to the beginning of a larger array.
+     */
+    protected fun unwrap(from: LongArray, to: LongArray): LongArray {
+        System.arraycopy(from, head, to, 0, from.size - head)
+        System.arraycopy(from, 0, to, from.size - head, head)
+        return to
+    }
+
+    /**
+     * Copies the values of a full ring with its oldest value at [head] to the beginning of a larger array.
+     */
+    protected fun unwrap(from: DoubleArray, to: DoubleArray): DoubleArray {
+        System.arraycopy(from, head, to, 0, from.size - head)
+        System.arraycopy(from, 0, to, from.size - head, head)
+        return to
+    }
+
+    /** Removes the value at [index] from the sum. */
+    protected abstract fun evicted(index: Int)
+
+    /** Grows the ring of values to [newCapacity], unwrapping it so that the oldest value is first. */
+    protected abstract fun resize(newCapacity: Int)
+
+    /** The average of the values in the window, or 0 if there are none. */
+    protected abstract fun average(): Double
+}
+
+/**
+ * A moving average of [Long] values, see [PrimitiveMovingAverage].
+ */
+class LongMovingAverage @JvmOverloads constructor(
+    windowSize: Duration,
+    clock: Clock = Clock.systemUTC(),
+    singleWriter: Boolean = false
+) : PrimitiveMovingAverage(windowSize, clock, singleWriter) {
+    private var values = LongArray(INITIAL_CAPACITY)
+    private var sum = 0L
+
+    /**
+     * Add a value to this moving average
+     */
+    fun add(value: Long) = if (singleWriter) doAdd(value) else synchronized(this) { doAdd(value) }
+
+    private fun doAdd(value: Long) {
+        val index = nextIndex()
+        values[index] = value
+        sum += value
+        published()
+    }
+
+    override fun evicted(index: Int) {
+        sum -= values[index]
+    }
+
+    override fun resize(newCapacity: Int) {
+        values = unwrap(values, LongArray(newCapacity))
+    }
+
+    override fun average() = if (count == 0) 0.0 else sum / count.toDouble()
+}
+
+/**
+ * A moving average of [Double] values, see [PrimitiveMovingAverage].
+ */
+class DoubleMovingAverage @JvmOverloads constructor(
+    windowSize: Duration,
+    clock: Clock = Clock.systemUTC(),
+    singleWriter: Boolean = false
+) : PrimitiveMovingAverage(windowSize, clock, singleWriter) {
+    private var values = DoubleArray(INITIAL_CAPACITY)
+    private var sum = 0.0
+
+    /**
+     * Add a value to this moving average
+     */
+    fun add(value: Double) = if (singleWriter) doAdd(value) else synchronized(this) { doAdd(value) }
+
+    private fun doAdd(value: Double) {
+        val index = nextIndex()
+        values[index] = value
+        sum += value
+        published()
+    }
+
+    override fun evicted(index: Int) {
+        sum -= values[index]
+        if (count == 1) {
+            // Don't let rounding errors accumulate across windows.
+            sum = 0.0
+        }
+    }
+
+    override fun resize(newCapacity: Int) {
+        values = unwrap(values, DoubleArray(newCapacity))
+    }
+
+    override fun average() = if (count == 0) 0.0 else sum / count
+}
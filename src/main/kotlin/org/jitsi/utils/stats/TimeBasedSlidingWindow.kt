@@ -35,10 +35,6 @@ open class TimeBasedSlidingWindow<T : Any>(
 ) {
     private val queue = java.util.ArrayDeque<TimeEntry>()
 
-    private val evictionPredicate: (TimeEntry) -> Boolean = { entry ->
-        Duration.between(entry.insertionTime, clock.instant()) > windowSize
-    }
-
     fun add(value: T) {
         queue.addFirst(TimeEntry(value))
         evict()
@@ -56,8 +52,26 @@ open class TimeBasedSlidingWindow<T : Any>(
         return queue.reversed().map { it.value }
     }
 
+    /**
+     * Gets a view of the values in the window, oldest first, without copying them. The view is backed by the window,
+     * so it must not be used after the window is modified.
+     */
+    fun valuesView(): Iterable<T> {
+        evict()
+        return Iterable {
+            val entries = queue.descendingIterator()
+            object : Iterator<T> {
+                override fun hasNext() = entries.hasNext()
+                override fun next() = entries.next().value
+            }
+        }
+    }
+
     private fun evict() {
-        while (queue.isNotEmpty() && evictionPredicate(queue.last)) {
+        if (queue.isEmpty()) return
+        // Entries inserted before this are more than windowSize old.
+        val cutoff = clock.instant().minus(windowSize)
+        while (queue.isNotEmpty() && queue.last.insertionTime < cutoff) {
             evictionHandler(queue.last.value)
             queue.removeLast()
         }
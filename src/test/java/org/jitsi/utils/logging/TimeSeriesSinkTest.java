@@ -0,0 +1,163 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils.logging;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import org.json.simple.*;
+import org.json.simple.parser.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+public class TimeSeriesSinkTest
+{
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testRoundTrip()
+        throws Exception
+    {
+        Path file = dir.resolve("series.bin");
+        DiagnosticContext context = new DiagnosticContext();
+        context.put("conf_name", "conference\"1");
+        context.put("ssrc", 1234L);
+
+        try (TimeSeriesSink sink = new TimeSeriesSink(file, 1 << 16))
+        {
+            TimeSeriesSink.Series received = context.newTimeSeries(sink, "received")
+                .longColumn("seq")
+                .longColumn("size")
+                .build();
+            TimeSeriesSink.Series rtt = sink.newSeries("rtt")
+                .doubleColumn("rtt_ms")
+                .stringColumn("kind")
+                .build();
+
+            assertTrue(received.append(1000, 1, 100));
+            assertTrue(rtt.point(1001).set(0, 12.5).set(1, "sr").write());
+            assertTrue(received.append(1002, 2, 200));
+            assertTrue(rtt.point(1003).set(0, 7.25).write());
+            assertEquals(0, sink.getDroppedCount());
+        }
+
+        List<JSONObject> points = read(file);
+        assertEquals(4, points.size());
+
+        JSONObject first = points.get(0);
+        assertEquals("received", first.get("series"));
+        assertEquals("1000", first.get("time"));
+        assertEquals("conference\"1", first.get("conf_name"));
+        assertEquals("1234", first.get("ssrc"));
+        assertEquals(1L, first.get("seq"));
+        assertEquals(100L, first.get("size"));
+
+        JSONObject second = points.get(1);
+        assertEquals("rtt", second.get("series"));
+        assertEquals(12.5, second.get("rtt_ms"));
+        assertEquals("sr", second.get("kind"));
+        assertFalse(second.containsKey("conf_name"));
+
+        assertEquals(200L, points.get(2).get("size"));
+
+        JSONObject fourth = points.get(3);
+        assertEquals(7.25, fourth.get("rtt_ms"));
+        assertTrue(fourth.containsKey("kind"));
+        assertNull(fourth.get("kind"));
+    }
+
+    @Test
+    public void testDropsWhenFull()
+        throws Exception
+    {
+        Path file = dir.resolve("full.bin");
+        int written = 0;
+        try (TimeSeriesSink sink = new TimeSeriesSink(file, 256))
+        {
+            TimeSeriesSink.Series series = sink.newSeries("s").longColumn("v").build();
+            for (int i = 0; i < 100; i++)
+            {
+                if (series.append(i, i))
+                {
+                    written++;
+                }
+            }
+            assertTrue(written > 0);
+            assertEquals(100 - written, sink.getDroppedCount());
+        }
+
+        List<JSONObject> points = read(file);
+        assertEquals(written, points.size());
+        assertEquals((long) written - 1, points.get(written - 1).get("v"));
+    }
+
+    @Test
+    public void testColumnTypeIsChecked()
+        throws Exception
+    {
+        try (TimeSeriesSink sink = new TimeSeriesSink(dir.resolve("types.bin"), 1024))
+        {
+            TimeSeriesSink.Series series = sink.newSeries("s").doubleColumn("d").build();
+            assertThrows(IllegalArgumentException.class, () -> series.append(0, 1));
+        }
+    }
+
+    @Test
+    public void testDropsPointsWithUnwrittenStrings()
+        throws Exception
+    {
+        Path file = dir.resolve("strings.bin");
+        try (TimeSeriesSink sink = new TimeSeriesSink(file, 128))
+        {
+            TimeSeriesSink.Series series = sink.newSeries("s").stringColumn("v").build();
+            // Fill the file up to the room for one point.
+            while (sink.getBytesWritten() + 2 * 21 < 127)
+            {
+                assertTrue(series.point(0).set(0, null).write());
+            }
+
+            // The string doesn't fit, but the point would.
+            assertFalse(series.point(1).set(0, "a string which doesn't fit in the file").write());
+            assertEquals(1, sink.getDroppedCount());
+            assertTrue(series.point(2).set(0, null).write());
+        }
+
+        List<JSONObject> points = read(file);
+        assertEquals("2", points.get(points.size() - 1).get("time"));
+        assertTrue(points.stream().noneMatch(point -> "1".equals(point.get("time"))));
+    }
+
+    private static List<JSONObject> read(Path file)
+        throws Exception
+    {
+        StringWriter out = new StringWriter();
+        TimeSeriesReader.toJsonLines(file, out);
+
+        List<JSONObject> points = new ArrayList<>();
+        JSONParser parser = new JSONParser();
+        for (String line : out.toString().split("\n"))
+        {
+            if (!line.isEmpty())
+            {
+                points.add((JSONObject) parser.parse(line));
+            }
+        }
+        return points;
+    }
+}
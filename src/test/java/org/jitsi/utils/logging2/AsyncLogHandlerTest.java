@@ -0,0 +1,291 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils.logging2;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.logging.*;
+import org.junit.jupiter.api.*;
+
+public class AsyncLogHandlerTest
+{
+    private final CapturingHandler delegate = new CapturingHandler();
+
+    @Test
+    public void testRecordsArePublishedInOrder()
+    {
+        AsyncLogHandler handler = new AsyncLogHandler(
+            delegate, 16, AsyncLogHandler.OverflowPolicy.BLOCK, false);
+
+        for (int i = 0; i < 100; i++)
+        {
+            handler.publish(new ContextLogRecord(Level.INFO, "msg " + i, ""));
+        }
+        handler.flush();
+
+        assertEquals(100, delegate.records.size());
+        for (int i = 0; i < 100; i++)
+        {
+            assertEquals("msg " + i, delegate.records.get(i).getMessage());
+        }
+        assertEquals(100, handler.getPublishedCount());
+        assertEquals(0, handler.getDroppedCount());
+        assertTrue(delegate.flushes.get() > 0);
+
+        handler.close();
+        assertTrue(delegate.closed);
+    }
+
+    @Test
+    public void testDropWhenFull()
+        throws Exception
+    {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        delegate.onPublish = () -> {
+            blocked.countDown();
+            try
+            {
+                release.await();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        };
+        AsyncLogHandler handler = new AsyncLogHandler(
+            delegate, 4, AsyncLogHandler.OverflowPolicy.DROP, false);
+
+        // The writer takes the first record and blocks in the delegate.
+        handler.publish(new ContextLogRecord(Level.INFO, "first", ""));
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 10; i++)
+        {
+            handler.publish(new ContextLogRecord(Level.INFO, "msg " + i, ""));
+        }
+        assertEquals(4, handler.getQueueSize());
+        assertEquals(6, handler.getDroppedCount());
+        assertEquals(6L, handler.getStats().get("dropped"));
+
+        release.countDown();
+        handler.close();
+        assertEquals(5, delegate.records.size());
+        assertEquals(0, handler.getQueueSize());
+    }
+
+    @Test
+    public void testCloseFlushesAndDropsLaterRecords()
+    {
+        AsyncLogHandler handler = new AsyncLogHandler(
+            delegate, 64, AsyncLogHandler.OverflowPolicy.DROP, false);
+
+        for (int i = 0; i < 50; i++)
+        {
+            handler.publish(new ContextLogRecord(Level.INFO, "msg " + i, ""));
+        }
+        handler.close();
+        assertEquals(50, delegate.records.size());
+        assertTrue(delegate.closed);
+
+        handler.publish(new ContextLogRecord(Level.INFO, "late", ""));
+        assertEquals(50, delegate.records.size());
+        assertEquals(1, handler.getDroppedCount());
+    }
+
+    @Test
+    public void testSourceIsInferredOnTheLoggingThread()
+    {
+        AsyncLogHandler handler = new AsyncLogHandler(
+            delegate, 16, AsyncLogHandler.OverflowPolicy.DROP, false);
+
+        java.util.logging.Logger logger
+            = java.util.logging.Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.addHandler(handler);
+
+        logger.info("msg");
+        handler.close();
+
+        assertEquals(
+            AsyncLogHandlerTest.class.getName(),
+            delegate.records.get(0).getSourceClassName());
+    }
+
+    @Test
+    public void testConfiguredWithLogManagerProperties()
+        throws Exception
+    {
+        String prefix = AsyncLogHandler.class.getName();
+        String config = prefix + ".delegate = " + ConfiguredDelegate.class.getName() + "\n"
+            + prefix + ".capacity = 32\n"
+            + prefix + ".overflowPolicy = BLOCK\n"
+            + prefix + ".level = WARNING\n";
+        LogManager.getLogManager().readConfiguration(new ByteArrayInputStream(config.getBytes()));
+        AsyncLogHandler handler;
+        try
+        {
+            handler = new AsyncLogHandler();
+        }
+        finally
+        {
+            LogManager.getLogManager().readConfiguration();
+        }
+
+        assertEquals(32, handler.getCapacity());
+        assertEquals(Level.WARNING, handler.getLevel());
+
+        handler.publish(new ContextLogRecord(Level.INFO, "info", ""));
+        handler.publish(new ContextLogRecord(Level.WARNING, "warning", ""));
+        handler.close();
+        assertEquals(1, handler.getPublishedCount());
+    }
+
+    @Test
+    public void testDelegateCapabilities()
+    {
+        BatchFlushableDelegate delegate = new BatchFlushableDelegate();
+        Thread[] inferringThread = new Thread[1];
+        delegate.setFormatter(new CallerInferringTestFormatter(inferringThread));
+
+        AsyncLogHandler handler = new AsyncLogHandler(
+            delegate, 16, AsyncLogHandler.OverflowPolicy.DROP, false);
+        assertFalse(delegate.flushOnPublish);
+
+        handler.publish(new ContextLogRecord(Level.INFO, "msg", ""));
+        assertSame(Thread.currentThread(), inferringThread[0]);
+
+        handler.close();
+        assertEquals(1, delegate.records.size());
+    }
+
+    @Test
+    public void testFlushWaitsForTheWriter()
+        throws Exception
+    {
+        CountDownLatch release = new CountDownLatch(1);
+        delegate.onPublish = () -> {
+            try
+            {
+                release.await();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        };
+        AsyncLogHandler handler = new AsyncLogHandler(
+            delegate, 16, AsyncLogHandler.OverflowPolicy.DROP, false);
+
+        for (int i = 0; i < 10; i++)
+        {
+            handler.publish(new ContextLogRecord(Level.INFO, "msg " + i, ""));
+        }
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            Future<?> flush = executor.submit(handler::flush);
+            assertThrows(
+                TimeoutException.class,
+                () -> flush.get(100, TimeUnit.MILLISECONDS));
+
+            release.countDown();
+            flush.get(5, TimeUnit.SECONDS);
+            assertEquals(10, delegate.records.size());
+        }
+        finally
+        {
+            release.countDown();
+            executor.shutdownNow();
+            handler.close();
+        }
+    }
+
+    private static class BatchFlushableDelegate
+        extends CapturingHandler
+        implements BatchFlushableHandler
+    {
+        volatile boolean flushOnPublish = true;
+
+        @Override
+        public void setFlushOnPublish(boolean flushOnPublish)
+        {
+            this.flushOnPublish = flushOnPublish;
+        }
+    }
+
+    private static class CallerInferringTestFormatter
+        extends SimpleFormatter
+        implements CallerInferringFormatter
+    {
+        private final Thread[] inferringThread;
+
+        CallerInferringTestFormatter(Thread[] inferringThread)
+        {
+            this.inferringThread = inferringThread;
+        }
+
+        @Override
+        public void inferCallerOf(LogRecord record)
+        {
+            inferringThread[0] = Thread.currentThread();
+        }
+    }
+
+    public static class ConfiguredDelegate
+        extends CapturingHandler
+    {
+    }
+
+    private static class CapturingHandler
+        extends Handler
+    {
+        final List<LogRecord> records = new CopyOnWriteArrayList<>();
+
+        volatile Runnable onPublish = null;
+
+        final AtomicInteger flushes = new AtomicInteger();
+
+        volatile boolean closed = false;
+
+        @Override
+        public void publish(LogRecord record)
+        {
+            Runnable r = onPublish;
+            if (r != null)
+            {
+                r.run();
+            }
+            records.add(record);
+        }
+
+        @Override
+        public void flush()
+        {
+            flushes.incrementAndGet();
+        }
+
+        @Override
+        public void close()
+        {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils.logging2;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.*;
+import java.time.format.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.*;
+import java.util.regex.*;
+import org.junit.jupiter.api.*;
+
+public class JitsiLogFormatterTest
+{
+    private static final Pattern EXPECTED_CALLER
+        = Pattern.compile("\\[ctx=1] Optional\\.ifPresent#\\d+: hello" + System.lineSeparator() + "$");
+
+    private final JitsiLogFormatter formatter = new JitsiLogFormatter();
+
+    private final DateTimeFormatter timestampFormatter
+        = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS ");
+
+    @Test
+    public void testTimestamps()
+    {
+        long base = Instant.parse("2020-02-29T23:59:58Z").toEpochMilli();
+        long[] offsets = { 0, 1, 9, 10, 99, 100, 999, 1000, 1005, 2001, -1 };
+        for (long offset : offsets)
+        {
+            long millis = base + offset;
+            LogRecord record = new ContextLogRecord(Level.INFO, "msg", "[a=b]");
+            record.setInstant(Instant.ofEpochMilli(millis));
+            setThreadID(record, 7);
+
+            String expected = timestampFormatter.format(
+                ZonedDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault()))
+                + "INFO: [7] [a=b] null: msg" + System.lineSeparator();
+            assertEquals(expected, formatter.format(record));
+        }
+    }
+
+    @Test
+    public void testCallerInference()
+    {
+        List<String> lines = new CopyOnWriteArrayList<>();
+        Logger logger = createLogger(new FormattingHandler(lines));
+
+        logFromOutsideTheLoggingPackage(logger);
+
+        assertEquals(1, lines.size());
+        assertTrue(EXPECTED_CALLER.matcher(lines.get(0)).find(), lines.get(0));
+    }
+
+    @Test
+    public void testCallerInferenceWithAsyncHandler()
+    {
+        List<String> lines = new CopyOnWriteArrayList<>();
+        AsyncLogHandler handler = new AsyncLogHandler(
+            new FormattingHandler(lines), 16, AsyncLogHandler.OverflowPolicy.BLOCK, false);
+        Logger logger = createLogger(handler);
+
+        logFromOutsideTheLoggingPackage(logger);
+        handler.close();
+
+        assertEquals(1, lines.size());
+        assertTrue(EXPECTED_CALLER.matcher(lines.get(0)).find(), lines.get(0));
+    }
+
+    /**
+     * Frames of classes in the logging packages (like this test) are skipped
+     * when looking for the caller, so log through a JDK class.
+     */
+    private static void logFromOutsideTheLoggingPackage(Logger logger)
+    {
+        Optional.of(logger).ifPresent(l -> l.info("hello"));
+    }
+
+    private static Logger createLogger(Handler handler)
+    {
+        Logger logger = new LoggerImpl(
+            JitsiLogFormatterTest.class.getName() + "." + UUID.randomUUID(),
+            new LogContext("ctx", "1"));
+        logger.setUseParentHandlers(false);
+        logger.addHandler(handler);
+        return logger;
+    }
+
+    /**
+     * {@code setLongThreadID} replaces it, but is not available on Java 11.
+     */
+    @SuppressWarnings("deprecation")
+    private static void setThreadID(LogRecord record, int threadId)
+    {
+        record.setThreadID(threadId);
+    }
+
+    /**
+     * Formats records with a {@link JitsiLogFormatter} when they are published.
+     */
+    private static class FormattingHandler
+        extends Handler
+    {
+        private final List<String> lines;
+
+        FormattingHandler(List<String> lines)
+        {
+            this.lines = lines;
+            setFormatter(new JitsiLogFormatter());
+        }
+
+        @Override
+        public void publish(LogRecord record)
+        {
+            lines.add(getFormatter().format(record));
+        }
+
+        @Override
+        public void flush()
+        {
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils.logging2;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.time.*;
+import java.util.*;
+import java.util.logging.*;
+import org.json.simple.*;
+import org.json.simple.parser.*;
+import org.junit.jupiter.api.*;
+
+public class JsonLogFormatterTest
+{
+    private final JsonLogFormatter formatter = new JsonLogFormatter();
+
+    @Test
+    public void testFields()
+        throws Exception
+    {
+        Map<String, String> context = new LinkedHashMap<>();
+        context.put("confId", "111");
+        context.put("epId", "a\"b");
+        LogRecord record = new ContextLogRecord(
+            Level.WARNING, "line 1\nline 2 \\ \u0001", "[ignored]", context);
+        record.setInstant(Instant.ofEpochMilli(1577836800123L));
+        setThreadID(record, 42);
+        record.setLoggerName("org.jitsi.Test");
+        record.setThrown(new IllegalStateException("boom \"quoted\""));
+
+        String formatted = formatter.format(record);
+        assertTrue(formatted.endsWith("}\n"));
+        assertEquals(formatted.indexOf('\n'), formatted.length() - 1);
+
+        JSONObject json = parse(formatted);
+        assertEquals(1577836800123L, json.get("timestamp"));
+        assertEquals("WARNING", json.get("level"));
+        assertEquals(42L, json.get("thread"));
+        assertEquals("org.jitsi.Test", json.get("logger"));
+        assertEquals("line 1\nline 2 \\ \u0001", json.get("message"));
+
+        JSONObject jsonContext = (JSONObject) json.get("context");
+        assertEquals(2, jsonContext.size());
+        assertEquals("111", jsonContext.get("confId"));
+        assertEquals("a\"b", jsonContext.get("epId"));
+
+        String exception = (String) json.get("exception");
+        assertTrue(
+            exception.startsWith("java.lang.IllegalStateException: boom \"quoted\""),
+            exception);
+        assertTrue(exception.contains("JsonLogFormatterTest.testFields"), exception);
+    }
+
+    @Test
+    public void testPlainRecord()
+        throws Exception
+    {
+        LogRecord record = new LogRecord(Level.INFO, "hello");
+        record.setInstant(Instant.ofEpochMilli(-5));
+
+        JSONObject json = parse(formatter.format(record));
+        assertEquals(-5L, json.get("timestamp"));
+        assertEquals("hello", json.get("message"));
+        assertFalse(json.containsKey("context"));
+        assertFalse(json.containsKey("exception"));
+    }
+
+    @Test
+    public void testHandlerWritesLinesFromLoggerImpl()
+        throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonLinesHandler handler = new JsonLinesHandler(out);
+        String name = JsonLogFormatterTest.class.getName() + "." + UUID.randomUUID();
+        Logger logger = new LoggerImpl(
+            name,
+            new LogContext(Collections.singletonMap("confId", "111")));
+        logger.setUseParentHandlers(false);
+        logger.addHandler(handler);
+
+        Logger child = logger.createChildLogger(name + ".child", Collections.singletonMap("epId", "ab"));
+        Optional.of(child).ifPresent(l -> l.info("first"));
+        logger.warn("second");
+        handler.close();
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+
+        JSONObject first = parse(lines[0]);
+        assertEquals("first", first.get("message"));
+        assertEquals("INFO", first.get("level"));
+        JSONObject firstContext = (JSONObject) first.get("context");
+        assertEquals("111", firstContext.get("confId"));
+        assertEquals("ab", firstContext.get("epId"));
+        assertEquals("Optional", first.get("class"));
+        assertEquals("ifPresent", first.get("method"));
+        assertTrue(first.get("line") instanceof Long);
+
+        JSONObject second = parse(lines[1]);
+        assertEquals("second", second.get("message"));
+        assertEquals("WARNING", second.get("level"));
+        assertEquals(Collections.singletonMap("confId", "111"), second.get("context"));
+    }
+
+    @Test
+    public void testParametersAreExpanded()
+        throws Exception
+    {
+        LogRecord record = new LogRecord(Level.INFO, "{0} and {1}");
+        record.setParameters(new Object[] { "one", 2 });
+
+        assertEquals("one and 2", parse(formatter.format(record)).get("message"));
+    }
+
+    @Test
+    public void testStandaloneHandlerFlushesEachRecord()
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonLinesHandler handler = new JsonLinesHandler(out);
+
+        handler.publish(new LogRecord(Level.INFO, "hello"));
+        assertTrue(out.toString(StandardCharsets.UTF_8).contains("\"hello\""));
+
+        handler.setFlushOnPublish(false);
+        handler.publish(new LogRecord(Level.INFO, "buffered"));
+        assertFalse(out.toString(StandardCharsets.UTF_8).contains("buffered"));
+        handler.flush();
+        assertTrue(out.toString(StandardCharsets.UTF_8).contains("buffered"));
+    }
+
+    /**
+     * {@code setLongThreadID} replaces it, but is not available on Java 11.
+     */
+    @SuppressWarnings("deprecation")
+    private static void setThreadID(LogRecord record, int threadId)
+    {
+        record.setThreadID(threadId);
+    }
+
+    private static JSONObject parse(String s)
+        throws ParseException
+    {
+        return (JSONObject) new JSONParser().parse(s);
+    }
+}
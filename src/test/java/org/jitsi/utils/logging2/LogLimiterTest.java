@@ -0,0 +1,136 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils.logging2;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.umd.cs.findbugs.annotations.*;
+
+import java.time.*;
+import java.util.*;
+import java.util.function.*;
+import java.util.logging.*;
+import org.jitsi.utils.time.*;
+import org.junit.jupiter.api.*;
+
+@SuppressFBWarnings("ST_WRITE_TO_STATIC_FROM_INSTANCE_METHOD")
+public class LogLimiterTest
+{
+    @Test
+    public void testOneIn()
+    {
+        LogLimiter limiter = LogLimiter.oneIn(3);
+        long[] expected = { 0, -1, -1, 2, -1, -1, 2 };
+        for (long e : expected)
+        {
+            assertEquals(e, limiter.acquire());
+        }
+        assertThrows(IllegalArgumentException.class, () -> LogLimiter.oneIn(0));
+    }
+
+    @Test
+    public void testPerInterval()
+    {
+        FakeClock clock = new FakeClock();
+        LogLimiter limiter = LogLimiter.perInterval(2, Duration.ofSeconds(10), clock);
+
+        assertEquals(0, limiter.acquire());
+        assertEquals(0, limiter.acquire());
+        for (int i = 0; i < 5; i++)
+        {
+            assertEquals(LogLimiter.SUPPRESSED, limiter.acquire());
+        }
+
+        clock.elapse(Duration.ofSeconds(5));
+        assertEquals(5, limiter.acquire());
+        assertEquals(LogLimiter.SUPPRESSED, limiter.acquire());
+    }
+
+    @Test
+    public void testLoggerMethods()
+    {
+        FakeLogger fakeLogger = new FakeLogger("fake");
+        Function<String, java.util.logging.Logger> oldLoggerFactory = LoggerImpl.loggerFactory;
+        LoggerImpl.loggerFactory = name -> fakeLogger;
+        Logger logger;
+        try
+        {
+            logger = new LoggerImpl("test");
+        }
+        finally
+        {
+            LoggerImpl.loggerFactory = oldLoggerFactory;
+        }
+        logger.setLevelAll();
+
+        LogLimiter limiter = LogLimiter.oneIn(10);
+        List<Integer> suppliedFor = new ArrayList<>();
+        for (int i = 0; i < 25; i++)
+        {
+            int n = i;
+            logger.warn(limiter, () -> {
+                suppliedFor.add(n);
+                return "dropped packet " + n;
+            });
+        }
+        assertEquals(Arrays.asList(0, 10, 20), suppliedFor);
+        assertEquals(3, fakeLogger.logLines.size());
+        assertEquals("dropped packet 0", fakeLogger.logLines.get(0).getMessage());
+        assertEquals(
+            "dropped packet 20 (9 similar messages suppressed)",
+            fakeLogger.lastMsg());
+
+        Exception e = new Exception();
+        logger.error(LogLimiter.oneIn(1), () -> "failed", e);
+        assertEquals("failed", fakeLogger.lastMsg());
+        assertSame(e, fakeLogger.last().getThrown());
+    }
+
+    @Test
+    public void testDisabledLevelDoesNotConsumeTheLimiter()
+    {
+        Logger logger = new LoggerImpl("test", Level.WARNING);
+        LogLimiter limiter = LogLimiter.oneIn(2);
+
+        logger.info(limiter, () -> fail("the supplier must not be invoked"));
+        assertEquals(0, limiter.acquire());
+    }
+
+    @Test
+    public void testDisabledErrorLevelDoesNotConsumeTheLimiter()
+    {
+        Logger logger = new LoggerImpl("test", Level.OFF);
+        LogLimiter limiter = LogLimiter.oneIn(2);
+
+        logger.error(limiter, () -> fail("the supplier must not be invoked"));
+        logger.error(limiter, () -> fail("the supplier must not be invoked"), new Exception());
+        assertEquals(0, limiter.acquire());
+    }
+
+    @Test
+    public void testTakeSuppressed()
+    {
+        LogLimiter limiter = LogLimiter.oneIn(10);
+
+        assertEquals(0, limiter.acquire());
+        for (int i = 0; i < 3; i++)
+        {
+            assertEquals(LogLimiter.SUPPRESSED, limiter.acquire());
+        }
+        assertEquals(3, limiter.takeSuppressed());
+        assertEquals(0, limiter.takeSuppressed());
+    }
+}
@@ -20,6 +20,7 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import edu.umd.cs.findbugs.annotations.*;
 
+import java.io.*;
 import java.util.*;
 import java.util.function.*;
 import java.util.logging.*;
@@ -217,6 +218,105 @@ public class LoggerImplTest
         assertEquals(1, fakeLogger.logLines.size());
     }
 
+    @Test
+    public void testLevelOverride()
+    {
+        LogContext ctx = new LogContext("confId", "111");
+        LoggerImpl logger = new LoggerImpl("test", Level.INFO, ctx);
+        Logger childLogger = logger.createChildLogger("child", Collections.singletonMap("epId", "a"));
+        FakeHandler handler = new FakeHandler();
+        fakeLogger.addHandler(handler);
+        fakeLogger.setLevel(Level.INFO);
+
+        assertFalse(childLogger.isDebugEnabled());
+
+        ctx.setLevelOverride(Level.FINE);
+        assertTrue(childLogger.isDebugEnabled());
+        assertFalse(childLogger.isTraceEnabled());
+
+        // The delegate's level is INFO, so the record is passed to its handlers directly.
+        childLogger.debug("hello, world!");
+        assertEquals(0, fakeLogger.logLines.size());
+        assertEquals(1, handler.logRecords.size());
+        // The level keeps its name, but passes the level check of the handler.
+        assertEquals(Level.FINE.getName(), handler.logRecords.get(0).getLevel().getName());
+
+        childLogger.info("hello, world!");
+        assertEquals(1, fakeLogger.logLines.size());
+
+        ctx.setLevelOverride(null);
+        assertFalse(childLogger.isDebugEnabled());
+    }
+
+    @Test
+    public void testLevelOverrideWithHandlerAtDefaultLevel()
+    {
+        // We want to use a real logger and handler for this test
+        LoggerImpl.loggerFactory = oldLoggerFactoryFunction;
+
+        PrintStream oldErr = System.err;
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(err, true));
+        ConsoleHandler handler;
+        try
+        {
+            // ConsoleHandler writes to System.err as of its creation.
+            handler = new ConsoleHandler();
+        }
+        finally
+        {
+            System.setErr(oldErr);
+        }
+        assertEquals(Level.INFO, handler.getLevel());
+
+        LogContext ctx = new LogContext("confId", "111");
+        LoggerImpl logger = new LoggerImpl("testLevelOverrideWithHandlerAtDefaultLevel", Level.INFO, ctx);
+        logger.setUseParentHandlers(false);
+        logger.addHandler(handler);
+        try
+        {
+            logger.debug("not overridden");
+            ctx.setLevelOverride(Level.FINE);
+            logger.debug("overridden");
+            handler.flush();
+
+            String output = err.toString();
+            assertFalse(output.contains("not overridden"));
+            assertTrue(output.contains("overridden"));
+            assertTrue(output.contains(Level.FINE.getLocalizedName()));
+        }
+        finally
+        {
+            logger.removeHandler(handler);
+            handler.close();
+        }
+    }
+
+    @Test
+    public void testLevelOverrideForContextValue()
+    {
+        LoggerImpl logger = new LoggerImpl("test", Level.INFO, new LogContext("confId", "111"));
+        LoggerImpl otherLogger = new LoggerImpl("test", Level.INFO, new LogContext("confId", "222"));
+        Logger childLogger = logger.createChildLogger("child");
+        fakeLogger.setLevel(Level.INFO);
+
+        try
+        {
+            LogContext.setLevelOverrideFor("confId", "111", Level.FINER);
+            assertTrue(logger.isTraceEnabled());
+            assertTrue(childLogger.isTraceEnabled());
+            assertFalse(otherLogger.isDebugEnabled());
+
+            LogContext.setLevelOverrideFor("confId", "111", null);
+            assertFalse(logger.isDebugEnabled());
+            assertFalse(childLogger.isDebugEnabled());
+        }
+        finally
+        {
+            LogContext.clearLevelOverrides();
+        }
+    }
+
     @Test
     public void testHandler()
     {
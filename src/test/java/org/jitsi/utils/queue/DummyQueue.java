@@ -15,6 +15,7 @@
  */
 package org.jitsi.utils.queue;
 
+import java.time.*;
 import java.util.concurrent.*;
 
 /**
@@ -36,6 +37,16 @@ class DummyQueue
             executor);
     }
 
+    DummyQueue(
+        QueueBackend<Dummy> backend,
+        String id,
+        PacketHandler<Dummy> packetHandler,
+        ExecutorService executor)
+    {
+        super(backend, null, id, packetHandler,
+            executor, Clock.systemUTC(), true);
+    }
+
     DummyQueue(
         int capacity,
         PacketHandler<Dummy> packetHandler,
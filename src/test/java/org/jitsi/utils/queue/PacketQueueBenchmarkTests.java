@@ -18,6 +18,7 @@ package org.jitsi.utils.queue;
 import java.time.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.*;
 
 import org.jitsi.utils.concurrent.*;
 import org.junit.jupiter.api.*;
@@ -271,6 +272,147 @@ public class PacketQueueBenchmarkTests
         });
     }
 
+    @Test
+    public void testMultiplePacketQueueThroughputWithVirtualThreadPerTask()
+        throws Exception
+    {
+        final String id = "VirtualThreadPerTask";
+        /*
+         * Each time a queue's reader is scheduled it runs on a new virtual
+         * thread (on Java 21+, otherwise this falls back to a cached pool of
+         * platform threads). Idle queues hold no thread at all.
+         */
+        measureBenchmark(id, () -> {
+            final ExecutorService executorService
+                = ExecutorFactory.createVirtualThreadPerTaskExecutor(id);
+            Duration duration = runBenchmark(
+                id,
+                executorService,
+                50, /* Virtual threads are multiplexed on a limited number
+                of carrier threads, so configure cooperative multi-tasking
+                mode*/
+                false);
+            executorService.shutdownNow();
+            return duration;
+        });
+    }
+
+    @Test
+    public void testMultiplePacketQueueThroughputWithFixedSizePoolWithRingBuffer()
+        throws Exception
+    {
+        final String id = "FixedSizeCPUBoundPoolWithRingBuffer";
+        /*
+         * Same as testMultiplePacketQueueThroughputWithFixedSizePool, but
+         * with packets stored in a lock-free ring buffer instead of a
+         * LinkedBlockingQueue.
+         */
+        measureBenchmark(id, () -> {
+            final ExecutorService executorService
+                = Executors.newFixedThreadPool(
+                    Runtime.getRuntime().availableProcessors(),
+                    new CustomizableThreadFactory(id, true));
+            Duration duration = runBenchmark(
+                id,
+                executorService,
+                50, /* Because queues will share executor
+                with limited number of threads, so configure cooperative
+                multi-tasking mode*/
+                false,
+                MpscRingBuffer::new);
+            executorService.shutdownNow();
+            return duration;
+        });
+    }
+
+    @Test
+    public void testMultiplePacketQueueThroughputWithForkJoinPoolWithRingBuffer()
+        throws Exception
+    {
+        final String id = "ForkJoinCPUBoundPoolWithRingBuffer";
+        /*
+         * Same as testMultiplePacketQueueThroughputWithForkJoinPool, but
+         * with packets stored in a lock-free ring buffer instead of a
+         * LinkedBlockingQueue.
+         */
+        measureBenchmark(id, () -> {
+            final ExecutorService executorService
+                = Executors.newWorkStealingPool(
+                    Runtime.getRuntime().availableProcessors());
+            Duration duration = runBenchmark(
+                id,
+                executorService,
+                50, /* Because queues will share executor
+                with limited number of threads, so configure cooperative
+                multi-tasking mode*/
+                false,
+                MpscRingBuffer::new);
+            executorService.shutdownNow();
+            return duration;
+        });
+    }
+
+    @Test
+    public void testDropPolicyOverheadWithDropOldest()
+        throws Exception
+    {
+        measureDropPolicyBenchmark("DropOldest", DropPolicy.dropOldest());
+    }
+
+    @Test
+    public void testDropPolicyOverheadWithDropNewest()
+        throws Exception
+    {
+        measureDropPolicyBenchmark("DropNewest", DropPolicy.dropNewest());
+    }
+
+    @Test
+    public void testDropPolicyOverheadWithBlockWithTimeout()
+        throws Exception
+    {
+        measureDropPolicyBenchmark(
+            "BlockWithTimeout",
+            DropPolicy.blockWithTimeout(Duration.ofMillis(1)));
+    }
+
+    @Test
+    public void testDropPolicyOverheadWithDropFirstMatching()
+        throws Exception
+    {
+        measureDropPolicyBenchmark(
+            "DropFirstMatching",
+            DropPolicy.dropFirstMatching(pkt -> pkt.id % 10 != 0));
+    }
+
+    /**
+     * Measures a benchmark in which queues are much smaller than the number
+     * of items added to them, so that most adds go through the drop policy.
+     */
+    private void measureDropPolicyBenchmark(
+        String name,
+        DropPolicy<DummyQueue.Dummy> dropPolicy)
+        throws Exception
+    {
+        final String id = "DropPolicy" + name;
+        measureBenchmark(id, () -> {
+            final ExecutorService executorService
+                = Executors.newFixedThreadPool(
+                    Runtime.getRuntime().availableProcessors(),
+                    new CustomizableThreadFactory(id, true));
+            Duration duration = runBenchmark(
+                id,
+                executorService,
+                50, /* Because queues will share executor
+                with limited number of threads, so configure cooperative
+                multi-tasking mode*/
+                false,
+                capacity -> new LinkedBlockingQueueBackend<>(16),
+                dropPolicy);
+            executorService.shutdownNow();
+            return duration;
+        });
+    }
+
     @AfterAll
     public static void printStats()
     {
@@ -283,6 +425,40 @@ public class PacketQueueBenchmarkTests
         final long maxSequentiallyPackets,
         final boolean withStatistics)
         throws InterruptedException
+    {
+        return runBenchmark(
+            id,
+            executor,
+            maxSequentiallyPackets,
+            withStatistics,
+            LinkedBlockingQueueBackend::new);
+    }
+
+    private Duration runBenchmark(
+        final String id,
+        final ExecutorService executor,
+        final long maxSequentiallyPackets,
+        final boolean withStatistics,
+        final IntFunction<QueueBackend<DummyQueue.Dummy>> backendFactory)
+        throws InterruptedException
+    {
+        return runBenchmark(
+            id,
+            executor,
+            maxSequentiallyPackets,
+            withStatistics,
+            backendFactory,
+            DropPolicy.dropOldest());
+    }
+
+    private Duration runBenchmark(
+        final String id,
+        final ExecutorService executor,
+        final long maxSequentiallyPackets,
+        final boolean withStatistics,
+        final IntFunction<QueueBackend<DummyQueue.Dummy>> backendFactory,
+        final DropPolicy<DummyQueue.Dummy> dropPolicy)
+        throws InterruptedException
     {
         final CountDownLatch completionGuard
             = new CountDownLatch(numberOfItemsInQueue * numberOfQueues);
@@ -291,9 +467,19 @@ public class PacketQueueBenchmarkTests
 
         PacketQueue.setEnableStatisticsDefault(withStatistics);
 
+        /* Dropped items complete as well as handled ones. */
+        final ErrorHandler errorHandler = new ErrorHandler()
+        {
+            @Override
+            public void packetDropped()
+            {
+                completionGuard.countDown();
+            }
+        };
+
         for (int i = 0; i < numberOfQueues; i++) {
             queues.add(new DummyQueue(
-                numberOfItemsInQueue,
+                backendFactory.apply(numberOfItemsInQueue),
                 id,
                 new PacketQueue.PacketHandler<DummyQueue.Dummy>()
                 {
@@ -322,13 +508,21 @@ public class PacketQueueBenchmarkTests
                 executor));
         }
 
+        for (DummyQueue queue : queues)
+        {
+            queue.setErrorHandler(errorHandler);
+            queue.setDropPolicy(dropPolicy);
+        }
+
         long startTime = System.nanoTime();
 
         for (DummyQueue queue : queues)
         {
             for (int i = 0; i < numberOfItemsInQueue; i++)
             {
-                queue.add(new DummyQueue.Dummy());
+                DummyQueue.Dummy dummy = new DummyQueue.Dummy();
+                dummy.id = i;
+                queue.add(dummy);
             }
         }
 
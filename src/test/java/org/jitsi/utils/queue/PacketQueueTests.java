@@ -15,10 +15,12 @@
  */
 package org.jitsi.utils.queue;
 
+import java.time.*;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.*;
 import java.util.function.*;
+import org.jitsi.utils.concurrent.*;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.Test;
 
@@ -147,6 +149,44 @@ public class PacketQueueTests
         singleThreadExecutor.shutdownNow();
     }
 
+    @Test
+    public void testPacketQueueWithVirtualThreadExecutor()
+        throws Exception
+    {
+        final ExecutorService executor
+            = ExecutorFactory.createVirtualThreadPerTaskExecutor("test-");
+
+        final int numberOfQueues = 1000;
+        final CountDownLatch completionGuard
+            = new CountDownLatch(numberOfQueues);
+        final ArrayList<DummyQueue> queues = new ArrayList<>();
+
+        for (int i = 0; i < numberOfQueues; i++)
+        {
+            queues.add(new DummyQueue(10,
+                pkt -> {
+                    completionGuard.countDown();
+                    return true;
+                },
+                executor));
+        }
+
+        for (DummyQueue queue : queues)
+        {
+            queue.add(new DummyQueue.Dummy());
+        }
+
+        Assertions.assertTrue(
+            completionGuard.await(5, TimeUnit.SECONDS),
+            "Expected all queued items are handled at this time point");
+
+        for (DummyQueue queue : queues)
+        {
+            queue.close();
+        }
+        executor.shutdownNow();
+    }
+
     @Test
     public void testPacketQueueCooperativeMultiTaskingWhenSharingExecutor()
         throws Exception
@@ -364,4 +404,644 @@ public class PacketQueueTests
 
         blockedExecutor.shutdown();
     }
+
+    @Test
+    public void testRingBufferBackendRemovesOldestItemWhenFull()
+        throws Exception
+    {
+        final int capacity = 10;
+        final BlockedExecutor blockedExecutor
+            = new BlockedExecutor();
+        final List<Integer> handledIds
+            = Collections.synchronizedList(new ArrayList<>());
+        final List<DummyQueue.Dummy> releasedPackets = new ArrayList<>();
+
+        final DummyQueue dummyQueue = new DummyQueue(
+            new MpscRingBuffer<>(capacity),
+            "DummyQueue",
+            pkt -> {
+                handledIds.add(pkt.id);
+                return true;
+            },
+            blockedExecutor)
+        {
+            @Override
+            protected void releasePacket(Dummy pkt)
+            {
+                releasedPackets.add(pkt);
+            }
+        };
+
+        for (int i = 0; i < capacity + 5; i++)
+        {
+            DummyQueue.Dummy item = new DummyQueue.Dummy();
+            item.id = i;
+
+            dummyQueue.add(item);
+        }
+
+        Assertions.assertEquals(capacity, dummyQueue.size());
+        Assertions.assertEquals(5, releasedPackets.size());
+        for (int i = 0; i < releasedPackets.size(); i++)
+        {
+            Assertions.assertEquals(i, releasedPackets.get(i).id);
+        }
+
+        blockedExecutor.start();
+
+        Thread.sleep(200);
+        Assertions.assertEquals(capacity, handledIds.size());
+        for (int i = 0; i < capacity; i++)
+        {
+            Assertions.assertEquals(i + 5, handledIds.get(i));
+        }
+
+        dummyQueue.close();
+        blockedExecutor.shutdown();
+    }
+
+    @Test
+    public void testRingBufferWithCapacityOneDoesNotOverwrite()
+    {
+        final MpscRingBuffer<Integer> ring = new MpscRingBuffer<>(1);
+
+        Assertions.assertTrue(ring.offer(1));
+        Assertions.assertFalse(ring.offer(2));
+        Assertions.assertEquals(1, ring.size());
+        Assertions.assertEquals(1, ring.poll());
+        Assertions.assertNull(ring.poll());
+
+        Assertions.assertTrue(ring.offer(3));
+        Assertions.assertFalse(ring.offer(4));
+        Assertions.assertEquals(3, ring.poll());
+    }
+
+    @Test
+    public void testRingBufferBackendHandlesAllItemsFromConcurrentProducers()
+        throws Exception
+    {
+        final int numberOfProducers = 4;
+        final int itemsPerProducer = 10_000;
+        final ExecutorService producers
+            = Executors.newFixedThreadPool(numberOfProducers);
+        final ExecutorService singleThreadExecutor
+            = Executors.newSingleThreadExecutor();
+        final CountDownLatch completionGuard
+            = new CountDownLatch(numberOfProducers * itemsPerProducer);
+
+        final DummyQueue queue = new DummyQueue(
+            new MpscRingBuffer<>(numberOfProducers * itemsPerProducer),
+            "DummyQueue",
+            pkt -> {
+                completionGuard.countDown();
+                return true;
+            },
+            singleThreadExecutor);
+
+        for (int i = 0; i < numberOfProducers; i++)
+        {
+            producers.execute(() -> {
+                for (int j = 0; j < itemsPerProducer; j++)
+                {
+                    queue.add(new DummyQueue.Dummy());
+                }
+            });
+        }
+
+        Assertions.assertTrue(
+            completionGuard.await(5, TimeUnit.SECONDS),
+            "Expected all queued items are handled at this time point");
+
+        queue.close();
+        producers.shutdownNow();
+        singleThreadExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testBatchHandlerReceivesItemsInBatches()
+        throws Exception
+    {
+        final BlockedExecutor blockedExecutor
+            = new BlockedExecutor();
+        final List<Integer> batchSizes
+            = Collections.synchronizedList(new ArrayList<>());
+        final List<Integer> handledIds
+            = Collections.synchronizedList(new ArrayList<>());
+
+        final DummyQueue queue = new DummyQueue(100,
+            new PacketQueue.PacketHandler<DummyQueue.Dummy>()
+            {
+                @Override
+                public boolean handlePacket(DummyQueue.Dummy pkt)
+                {
+                    Assertions.fail("Batch handler must be used");
+                    return false;
+                }
+
+                @Override
+                public boolean handlePackets(List<DummyQueue.Dummy> pkts)
+                {
+                    batchSizes.add(pkts.size());
+                    for (DummyQueue.Dummy pkt : pkts)
+                    {
+                        handledIds.add(pkt.id);
+                    }
+                    return true;
+                }
+
+                @Override
+                public int maxBatchSize()
+                {
+                    return 10;
+                }
+            },
+            blockedExecutor);
+
+        for (int i = 0; i < 25; i++)
+        {
+            final DummyQueue.Dummy dummy = new DummyQueue.Dummy();
+            dummy.id = i;
+            queue.add(dummy);
+        }
+
+        blockedExecutor.start();
+        Thread.sleep(200);
+
+        Assertions.assertEquals(Arrays.asList(10, 10, 5), batchSizes);
+        for (int i = 0; i < 25; i++)
+        {
+            Assertions.assertEquals(i, handledIds.get(i));
+        }
+
+        queue.close();
+        blockedExecutor.shutdown();
+    }
+
+    @Test
+    public void testBatchSizeCountsTowardsMaxSequentiallyProcessedPackets()
+        throws Exception
+    {
+        final BlockedExecutor blockedExecutor
+            = new BlockedExecutor();
+        final List<Integer> batchSizes
+            = Collections.synchronizedList(new ArrayList<>());
+
+        final DummyQueue queue = new DummyQueue(100,
+            new PacketQueue.PacketHandler<DummyQueue.Dummy>()
+            {
+                @Override
+                public boolean handlePacket(DummyQueue.Dummy pkt)
+                {
+                    return true;
+                }
+
+                @Override
+                public boolean handlePackets(List<DummyQueue.Dummy> pkts)
+                {
+                    batchSizes.add(pkts.size());
+                    return true;
+                }
+
+                @Override
+                public int maxBatchSize()
+                {
+                    return 4;
+                }
+
+                @Override
+                public long maxSequentiallyProcessedPackets()
+                {
+                    return 6;
+                }
+            },
+            blockedExecutor);
+
+        for (int i = 0; i < 12; i++)
+        {
+            queue.add(new DummyQueue.Dummy());
+        }
+
+        blockedExecutor.start();
+        Thread.sleep(200);
+
+        // Each run of the reader handles at most 6 packets before yielding.
+        Assertions.assertEquals(Arrays.asList(4, 2, 4, 2), batchSizes);
+
+        queue.close();
+        blockedExecutor.shutdown();
+    }
+
+    @Test
+    public void testNoItemsStrandedWithManyProducers()
+        throws Exception
+    {
+        final int numberOfProducers = 8;
+        final int numberOfQueues = 16;
+        final int itemsPerProducerPerQueue = 5_000;
+        final int totalItems
+            = numberOfProducers * numberOfQueues * itemsPerProducerPerQueue;
+
+        final ExecutorService producers
+            = Executors.newFixedThreadPool(numberOfProducers);
+        final ExecutorService readers = Executors.newFixedThreadPool(2);
+        // Every item is either handled or dropped.
+        final CountDownLatch completionGuard = new CountDownLatch(totalItems);
+        final AtomicBoolean concurrentReaders = new AtomicBoolean(false);
+        final LongAdder handled = new LongAdder();
+        final LongAdder dropped = new LongAdder();
+
+        final List<DummyQueue> queues = new ArrayList<>();
+        for (int i = 0; i < numberOfQueues; i++)
+        {
+            final AtomicInteger activeReaders = new AtomicInteger();
+            // Small enough for the producers to fill it, so that dropping
+            // the oldest item races with the reader.
+            final DummyQueue queue = new DummyQueue(
+                new MpscRingBuffer<>(64),
+                "DummyQueue",
+                new PacketQueue.PacketHandler<DummyQueue.Dummy>()
+                {
+                    @Override
+                    public boolean handlePacket(DummyQueue.Dummy pkt)
+                    {
+                        if (activeReaders.incrementAndGet() > 1)
+                        {
+                            concurrentReaders.set(true);
+                        }
+                        handled.increment();
+                        completionGuard.countDown();
+                        activeReaders.decrementAndGet();
+                        return true;
+                    }
+
+                    @Override
+                    public long maxSequentiallyProcessedPackets()
+                    {
+                        // Yield often to exercise rescheduling.
+                        return 3;
+                    }
+                },
+                readers);
+            queue.setErrorHandler(new ErrorHandler()
+            {
+                @Override
+                public void packetDropped()
+                {
+                    dropped.increment();
+                    completionGuard.countDown();
+                }
+            });
+            queues.add(queue);
+        }
+
+        for (int i = 0; i < numberOfProducers; i++)
+        {
+            producers.execute(() -> {
+                for (int j = 0; j < itemsPerProducerPerQueue; j++)
+                {
+                    for (DummyQueue queue : queues)
+                    {
+                        queue.add(new DummyQueue.Dummy());
+                    }
+                }
+            });
+        }
+
+        Assertions.assertTrue(
+            completionGuard.await(30, TimeUnit.SECONDS),
+            "Expected all queued items are handled or dropped, but "
+                + completionGuard.getCount() + " are stranded");
+        Assertions.assertEquals(
+            totalItems, handled.sum() + dropped.sum());
+        Assertions.assertFalse(
+            concurrentReaders.get(),
+            "At most one reader per queue may run at a time");
+
+        for (DummyQueue queue : queues)
+        {
+            Assertions.assertEquals(0, queue.size());
+            queue.close();
+        }
+        producers.shutdownNow();
+        readers.shutdownNow();
+    }
+
+    @Test
+    public void testLanedQueueServesLanesByStrictPriority()
+        throws Exception
+    {
+        final List<Integer> handledIds
+            = Collections.synchronizedList(new ArrayList<>());
+        final BlockedExecutor blockedExecutor = new BlockedExecutor();
+        final DummyQueue queue
+            = createLanedQueue(null, handledIds, 10, blockedExecutor);
+
+        // Even IDs go to the high-priority lane 0, odd IDs to lane 1.
+        addDummies(queue, 0, 8);
+        blockedExecutor.start();
+        Thread.sleep(200);
+
+        Assertions.assertEquals(
+            Arrays.asList(0, 2, 4, 6, 1, 3, 5, 7), handledIds);
+
+        queue.close();
+        blockedExecutor.shutdown();
+    }
+
+    @Test
+    public void testLanedQueueServesLanesByWeightedRoundRobin()
+        throws Exception
+    {
+        final List<Integer> handledIds
+            = Collections.synchronizedList(new ArrayList<>());
+        final BlockedExecutor blockedExecutor = new BlockedExecutor();
+        final DummyQueue queue = createLanedQueue(
+            new int[] { 2, 1 }, handledIds, 10, blockedExecutor);
+
+        addDummies(queue, 0, 12);
+        blockedExecutor.start();
+        Thread.sleep(200);
+
+        Assertions.assertEquals(
+            Arrays.asList(0, 2, 1, 4, 6, 3, 8, 10, 5, 7, 9, 11), handledIds);
+
+        queue.close();
+        blockedExecutor.shutdown();
+    }
+
+    @Test
+    public void testLanedQueueDropsOnlyFromFullLane()
+        throws Exception
+    {
+        final List<Integer> handledIds
+            = Collections.synchronizedList(new ArrayList<>());
+        final BlockedExecutor blockedExecutor = new BlockedExecutor();
+        final DummyQueue queue
+            = createLanedQueue(null, handledIds, 2, blockedExecutor);
+        final CountingErrorHandler errorHandler = new CountingErrorHandler();
+        queue.setErrorHandler(errorHandler);
+
+        // Lane 0 gets 0, lane 1 gets 1, 3, 5, 7 and overflows.
+        addDummies(queue, 0, 2);
+        for (int id = 3; id <= 7; id += 2)
+        {
+            addDummies(queue, id, 1);
+        }
+
+        Assertions.assertEquals(2, errorHandler.getNumPacketsDropped());
+
+        blockedExecutor.start();
+        Thread.sleep(200);
+
+        Assertions.assertEquals(Arrays.asList(0, 5, 7), handledIds);
+
+        queue.close();
+        blockedExecutor.shutdown();
+    }
+
+    @Test
+    public void testLanedBackendRejectsInvalidLane()
+    {
+        final LanedQueueBackend<DummyQueue.Dummy> backend
+            = new LanedQueueBackend<>(
+                Arrays.asList(
+                    new MpscRingBuffer<>(4),
+                    new MpscRingBuffer<>(4)),
+                pkt -> pkt.id);
+
+        for (int id : new int[] { -1, 2 })
+        {
+            DummyQueue.Dummy dummy = new DummyQueue.Dummy();
+            dummy.id = id;
+            Assertions.assertThrows(
+                IllegalArgumentException.class,
+                () -> backend.offer(dummy));
+        }
+        Assertions.assertEquals(0, backend.size());
+    }
+
+    private static DummyQueue createLanedQueue(
+        int[] weights,
+        List<Integer> handledIds,
+        int laneCapacity,
+        ExecutorService executor)
+    {
+        return new DummyQueue(
+            new LanedQueueBackend<>(
+                Arrays.asList(
+                    new MpscRingBuffer<>(laneCapacity),
+                    new LinkedBlockingQueueBackend<>(laneCapacity)),
+                pkt -> pkt.id % 2,
+                weights),
+            "LanedDummyQueue",
+            pkt -> {
+                handledIds.add(pkt.id);
+                return true;
+            },
+            executor);
+    }
+
+    private static void addDummies(DummyQueue queue, int firstId, int count)
+    {
+        for (int i = firstId; i < firstId + count; i++)
+        {
+            DummyQueue.Dummy dummy = new DummyQueue.Dummy();
+            dummy.id = i;
+            queue.add(dummy);
+        }
+    }
+
+    @Test
+    public void testDropNewestPolicyDropsAddedPackets()
+        throws Exception
+    {
+        final BlockedExecutor blockedExecutor = new BlockedExecutor();
+        final List<Integer> handledIds
+            = Collections.synchronizedList(new ArrayList<>());
+        final List<DummyQueue.Dummy> releasedPackets = new ArrayList<>();
+        final CountingErrorHandler errorHandler = new CountingErrorHandler();
+
+        final DummyQueue queue = new DummyQueue(3,
+            pkt -> {
+                handledIds.add(pkt.id);
+                return true;
+            },
+            blockedExecutor)
+        {
+            @Override
+            protected void releasePacket(Dummy pkt)
+            {
+                releasedPackets.add(pkt);
+            }
+        };
+        queue.setErrorHandler(errorHandler);
+        queue.setDropPolicy(DropPolicy.dropNewest());
+
+        addDummies(queue, 0, 5);
+
+        Assertions.assertEquals(2, errorHandler.getNumPacketsDropped());
+        Assertions.assertEquals(2, releasedPackets.size());
+        Assertions.assertEquals(3, releasedPackets.get(0).id);
+        Assertions.assertEquals(4, releasedPackets.get(1).id);
+
+        blockedExecutor.start();
+        Thread.sleep(200);
+
+        Assertions.assertEquals(Arrays.asList(0, 1, 2), handledIds);
+
+        queue.close();
+        blockedExecutor.shutdown();
+    }
+
+    @Test
+    public void testBlockWithTimeoutPolicyWaitsForRoom()
+        throws Exception
+    {
+        final ExecutorService singleThreadExecutor
+            = Executors.newSingleThreadExecutor();
+        final int numberOfItems = 1000;
+        final CountDownLatch completionGuard
+            = new CountDownLatch(numberOfItems);
+        final CountingErrorHandler errorHandler = new CountingErrorHandler();
+
+        final DummyQueue queue = new DummyQueue(2,
+            pkt -> {
+                completionGuard.countDown();
+                return true;
+            },
+            singleThreadExecutor);
+        queue.setErrorHandler(errorHandler);
+        queue.setDropPolicy(DropPolicy.blockWithTimeout(Duration.ofSeconds(5)));
+
+        addDummies(queue, 0, numberOfItems);
+
+        Assertions.assertTrue(
+            completionGuard.await(5, TimeUnit.SECONDS),
+            "Expected all queued items are handled at this time point");
+        Assertions.assertEquals(0, errorHandler.getNumPacketsDropped());
+
+        queue.close();
+        singleThreadExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testErrorHandlerIsNotifiedOnceOnClose()
+    {
+        final AtomicInteger closedCount = new AtomicInteger();
+        final ExecutorService singleThreadExecutor
+            = Executors.newSingleThreadExecutor();
+        final DummyQueue queue = new DummyQueue(
+            10,
+            "DummyQueue",
+            pkt -> true,
+            singleThreadExecutor);
+        queue.setErrorHandler(new ErrorHandler()
+        {
+            @Override
+            public void queueClosed()
+            {
+                closedCount.incrementAndGet();
+            }
+        });
+
+        queue.close();
+        queue.close();
+        Assertions.assertEquals(1, closedCount.get());
+
+        singleThreadExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testBlockWithTimeoutPolicyDropsAfterTimeout()
+    {
+        final BlockedExecutor blockedExecutor = new BlockedExecutor();
+        final CountingErrorHandler errorHandler = new CountingErrorHandler();
+
+        final DummyQueue queue = new DummyQueue(
+            new MpscRingBuffer<>(1),
+            "DummyQueue",
+            pkt -> true,
+            blockedExecutor);
+        queue.setErrorHandler(errorHandler);
+        queue.setDropPolicy(
+            DropPolicy.blockWithTimeout(Duration.ofMillis(50)));
+
+        long start = System.nanoTime();
+        addDummies(queue, 0, 2);
+        long elapsedMs
+            = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        Assertions.assertTrue(elapsedMs >= 50, "Waited " + elapsedMs + " ms");
+        Assertions.assertEquals(1, errorHandler.getNumPacketsDropped());
+        Assertions.assertEquals(1, queue.size());
+
+        queue.close();
+        blockedExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testDropFirstMatchingPolicyKeepsNonDroppablePackets()
+        throws Exception
+    {
+        final BlockedExecutor blockedExecutor = new BlockedExecutor();
+        final List<Integer> handledIds
+            = Collections.synchronizedList(new ArrayList<>());
+        final List<Integer> releasedIds = new ArrayList<>();
+
+        final DummyQueue queue = new DummyQueue(3,
+            pkt -> {
+                handledIds.add(pkt.id);
+                return true;
+            },
+            blockedExecutor)
+        {
+            @Override
+            protected void releasePacket(Dummy pkt)
+            {
+                releasedIds.add(pkt.id);
+            }
+        };
+        // Multiples of 3 are "keyframes", which must not be dropped.
+        queue.setDropPolicy(DropPolicy.dropFirstMatching(pkt -> pkt.id % 3 != 0));
+
+        // 0, 1, 2 fill the queue. Then 3 evicts 1, 4 evicts 2, 5 evicts 4
+        // and 6 evicts 5.
+        addDummies(queue, 0, 7);
+
+        Assertions.assertEquals(Arrays.asList(1, 2, 4, 5), releasedIds);
+
+        blockedExecutor.start();
+        Thread.sleep(200);
+
+        Assertions.assertEquals(Arrays.asList(0, 3, 6), handledIds);
+
+        queue.close();
+        blockedExecutor.shutdown();
+    }
+
+    @Test
+    public void testPerLaneDropPolicy()
+        throws Exception
+    {
+        final BlockedExecutor blockedExecutor = new BlockedExecutor();
+        final List<Integer> handledIds
+            = Collections.synchronizedList(new ArrayList<>());
+        final DummyQueue queue
+            = createLanedQueue(null, handledIds, 2, blockedExecutor);
+        final LanedQueueBackend<DummyQueue.Dummy> backend
+            = (LanedQueueBackend<DummyQueue.Dummy>) queue.backend();
+        queue.setDropPolicy(backend.perLaneDropPolicy(
+            Arrays.asList(DropPolicy.dropNewest(), DropPolicy.dropOldest())));
+
+        // Lane 0 (even IDs) keeps 0, 2. Lane 1 (odd IDs) keeps 5, 7.
+        addDummies(queue, 0, 8);
+
+        blockedExecutor.start();
+        Thread.sleep(200);
+
+        Assertions.assertEquals(Arrays.asList(0, 2, 5, 7), handledIds);
+
+        queue.close();
+        blockedExecutor.shutdown();
+    }
 }
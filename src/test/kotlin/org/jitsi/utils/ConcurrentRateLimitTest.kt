@@ -0,0 +1,110 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils
+
+import io.kotest.assertions.throwables.shouldThrow
+import io.kotest.core.spec.IsolationMode
+import io.kotest.core.spec.style.ShouldSpec
+import io.kotest.matchers.shouldBe
+import org.jitsi.utils.time.FakeClock
+import java.lang.IllegalArgumentException
+import java.util.concurrent.atomic.AtomicInteger
+
+class ConcurrentRateLimitTest : ShouldSpec() {
+    override fun isolationMode(): IsolationMode? = IsolationMode.InstancePerLeaf
+
+    private val clock = FakeClock()
+
+    init {
+        context("A ConcurrentRateLimit with the default parameters") {
+            val rateLimit = ConcurrentRateLimit(clock = clock)
+
+            should("enforce the minimum interval") {
+                rateLimit.accept() shouldBe true
+                rateLimit.accept() shouldBe false
+                clock.elapse(5.secs)
+                rateLimit.accept() shouldBe false
+                clock.elapse(5.secs)
+                rateLimit.accept() shouldBe true
+            }
+            should("allow a burst of maxRequests and then the sustained rate") {
+                rateLimit.accept(clock.instant(), 0.secs) shouldBe true
+                rateLimit.accept(clock.instant(), 0.secs) shouldBe true
+                rateLimit.accept(clock.instant(), 0.secs) shouldBe true
+                rateLimit.accept(clock.instant(), 0.secs) shouldBe false
+                // The sustained rate is one request per 20 seconds.
+                clock.elapse(10.secs)
+                rateLimit.accept() shouldBe false
+                clock.elapse(10.secs)
+                rateLimit.accept() shouldBe true
+                rateLimit.accept(clock.instant(), 0.secs) shouldBe false
+                clock.elapse(20.secs)
+                rateLimit.accept() shouldBe true
+            }
+            should("allow the minimum interval to be specified per request") {
+                rateLimit.accept() shouldBe true
+                clock.elapse(1.secs)
+                rateLimit.accept(clock.instant(), 1.secs) shouldBe true
+                rateLimit.accept(clock.instant(), 0.secs) shouldBe true
+                rateLimit.accept(clock.instant(), 0.secs) shouldBe false
+            }
+            should("be idle only once a new limit would behave the same") {
+                rateLimit.isIdle() shouldBe true
+                rateLimit.accept() shouldBe true
+                clock.elapse(10.secs)
+                rateLimit.isIdle() shouldBe false
+                clock.elapse(10.secs)
+                rateLimit.isIdle() shouldBe true
+            }
+        }
+        should("accept exactly the allowed number of requests from concurrent threads") {
+            val rateLimit = ConcurrentRateLimit(0.secs, 100, 60.secs)
+            val accepted = AtomicInteger()
+            val threads = (1..8).map {
+                Thread { repeat(1000) { if (rateLimit.accept()) accepted.incrementAndGet() } }
+            }
+            threads.forEach { it.start() }
+            threads.forEach { it.join() }
+            // The burst, plus at most a few from the sustained rate while the test runs.
+            (accepted.get() in 100..110) shouldBe true
+        }
+        should("reject invalid parameters") {
+            shouldThrow<IllegalArgumentException> { ConcurrentRateLimit(maxRequests = 0) }
+            shouldThrow<IllegalArgumentException> { ConcurrentRateLimit(interval = 1.ms, maxRequests = 2) }
+            shouldThrow<IllegalArgumentException> { ConcurrentRateLimit(interval = 5.hours) }
+        }
+        context("A KeyedRateLimit") {
+            val rateLimit = KeyedRateLimit<String>(1.secs, 2, 10.secs, clock)
+
+            should("limit each key separately") {
+                rateLimit.accept("a") shouldBe true
+                rateLimit.accept("a") shouldBe false
+                rateLimit.accept("b") shouldBe true
+                rateLimit.size shouldBe 2
+            }
+            should("discard the limits of idle keys") {
+                rateLimit.accept("a") shouldBe true
+                rateLimit.accept("b") shouldBe true
+                clock.elapse(9.secs)
+                rateLimit.accept("b") shouldBe true
+                clock.elapse(1.secs)
+                rateLimit.accept("c") shouldBe true
+                // "a" was idle, "b" was not.
+                rateLimit.size shouldBe 2
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils.dsi
+
+import io.kotest.assertions.throwables.shouldThrow
+import io.kotest.core.spec.IsolationMode
+import io.kotest.core.spec.style.ShouldSpec
+import io.kotest.matchers.shouldBe
+import org.jitsi.utils.concurrent.FakeScheduledExecutorService
+import org.jitsi.utils.time.FakeClock
+import java.time.Duration
+import java.util.concurrent.Executor
+import java.util.concurrent.RejectedExecutionException
+
+class DecisionSchedulerTest : ShouldSpec() {
+    override fun isolationMode(): IsolationMode = IsolationMode.InstancePerLeaf
+
+    private val clock = FakeClock()
+    private val timer = FakeScheduledExecutorService(clock)
+    private val scheduler = DecisionScheduler(clock, timer, Executor { it.run() }, 4, Duration.ofMillis(10))
+    private val dsis = (1..100).map { DominantSpeakerIdentification<String>(clock, scheduler, -1) }
+
+    private fun elapse(millis: Long, sendLevels: Boolean) {
+        repeat((millis / 10).toInt()) {
+            clock.elapse(Duration.ofMillis(10))
+            timer.run()
+            if (sendLevels && it % 2 == 0) {
+                dsis.forEach { dsi ->
+                    dsi.levelChanged("quiet", 5)
+                    dsi.levelChanged("talker", 90 + it % 10)
+                }
+            }
+        }
+    }
+
+    init {
+        context("Scheduling the decisions of many instances") {
+            elapse(5000, sendLevels = true)
+
+            should("Run the decisions of all instances") {
+                dsis.forEach { it.dominantSpeaker shouldBe "talker" }
+                scheduler.scheduledCount shouldBe dsis.size
+            }
+            context("When the instances are idle") {
+                elapse(20000, sendLevels = false)
+
+                should("Drop their decisions") {
+                    scheduler.scheduledCount shouldBe 0
+                }
+                should("Schedule them again when there are new levels") {
+                    dsis[0].levelChanged("talker", 90)
+                    scheduler.scheduledCount shouldBe 1
+                }
+            }
+        }
+        context("When the workers reject the decisions") {
+            val rejectingScheduler = DecisionScheduler(
+                clock,
+                timer,
+                Executor { throw RejectedExecutionException("rejected") },
+                4,
+                Duration.ofMillis(10)
+            )
+            val dsi = DominantSpeakerIdentification<String>(clock, rejectingScheduler, -1)
+            repeat(500) {
+                clock.elapse(Duration.ofMillis(10))
+                timer.run()
+                if (it % 2 == 0) {
+                    dsi.levelChanged("quiet", 5)
+                    dsi.levelChanged("talker", 90 + it % 10)
+                }
+            }
+
+            should("Run them on the timer thread") {
+                dsi.dominantSpeaker shouldBe "talker"
+                rejectingScheduler.scheduledCount shouldBe 1
+                // Along with the timer of [scheduler].
+                timer.numPendingJobs() shouldBe 2
+            }
+        }
+        context("Stopping") {
+            dsis[0].levelChanged("talker", 90)
+            scheduler.stop()
+
+            should("Cancel the timer") {
+                timer.numPendingJobs() shouldBe 0
+                scheduler.scheduledCount shouldBe 0
+            }
+            should("Refuse to schedule new decisions") {
+                shouldThrow<IllegalStateException> {
+                    dsis[1].levelChanged("talker", 90)
+                }
+            }
+        }
+    }
+}
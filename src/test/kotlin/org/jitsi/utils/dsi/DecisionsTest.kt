@@ -0,0 +1,93 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils.dsi
+
+import io.kotest.core.spec.IsolationMode
+import io.kotest.core.spec.style.ShouldSpec
+import io.kotest.matchers.shouldBe
+import org.jitsi.utils.concurrent.FakeScheduledExecutorService
+import org.jitsi.utils.time.FakeClock
+import java.time.Duration
+import java.util.Random
+
+/**
+ * Checks the decisions and energy rankings of [DominantSpeakerIdentification] against those of the implementation
+ * before the loudest list and the levels were reworked for performance, on a synthetic conference generated with a
+ * fixed seed. The expected speaker changes (dsi-synthetic-changes.csv) and the checksum of the rankings were created
+ * with that implementation, so unlike [DominantSpeakerIdentificationTest] this runs without the levels trace.
+ */
+class DecisionsTest : ShouldSpec() {
+    override fun isolationMode(): IsolationMode = IsolationMode.InstancePerLeaf
+
+    private val clock = FakeClock()
+    private val executor = FakeScheduledExecutorService(clock)
+    private val speakerChanges = mutableListOf<String>()
+
+    private val expectedChanges = javaClass.getResource("/dsi-synthetic-changes.csv")!!.readText().lines()
+        .filter { it.isNotEmpty() }
+
+    init {
+        listOf(true, false).forEach { detectSilence ->
+            context("${if (detectSilence) "With" else "Without"} silence detection") {
+                val dsi = DominantSpeakerIdentification<String>(clock, executor, if (detectSilence) 3000 else -1)
+                dsi.setLoudestConfig(3, 150, 50)
+                dsi.addActiveSpeakerChangedListener {
+                    speakerChanges.add("$detectSilence,${clock.millis()},$it")
+                }
+
+                val rankingsChecksum = runConference { id, level -> dsi.levelChanged(id, level) }
+
+                should("Make the same decisions") {
+                    speakerChanges shouldBe expectedChanges.filter { it.startsWith("$detectSilence,") }
+                }
+                should("Rank the speakers the same") {
+                    rankingsChecksum shouldBe 1146815849905013462L
+                }
+            }
+        }
+    }
+
+    /**
+     * Feeds the levels of a synthetic conference, in which one speaker at a time talks, the others are mostly quiet,
+     * and some levels are missing.
+     *
+     * @return a checksum of the energy rankings of all the levels
+     */
+    private fun runConference(levelChanged: (String, Int) -> SpeakerRanking): Long {
+        val random = Random(42)
+        val speakers = (0 until 8).map { "endpoint-$it" }
+        var talker = 0
+        var checksum = 0L
+
+        repeat(3000) { step ->
+            clock.elapse(Duration.ofMillis(20))
+            executor.run()
+            if (random.nextInt(150) == 0) {
+                talker = random.nextInt(speakers.size)
+            }
+            // Everyone is quiet for a while every 30 seconds.
+            val silence = step % 1500 >= 1200
+            speakers.forEachIndexed { i, id ->
+                if (random.nextInt(20) != 0) {
+                    val level = if (i == talker && !silence) 60 + random.nextInt(60) else random.nextInt(25)
+                    val ranking = levelChanged(id, level)
+                    checksum = checksum * 31 + ranking.energyRanking * 128 + ranking.energyScore
+                }
+            }
+        }
+        return checksum
+    }
+}
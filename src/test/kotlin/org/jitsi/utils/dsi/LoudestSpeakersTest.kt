@@ -0,0 +1,145 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils.dsi
+
+import io.kotest.core.spec.IsolationMode
+import io.kotest.core.spec.style.ShouldSpec
+import io.kotest.matchers.shouldBe
+import io.kotest.matchers.types.shouldBeSameInstanceAs
+import org.jitsi.utils.concurrent.FakeScheduledExecutorService
+import org.jitsi.utils.time.FakeClock
+import java.time.Duration
+
+/**
+ * Tests the tracking of the loudest speakers by [DominantSpeakerIdentification].
+ */
+class LoudestSpeakersTest : ShouldSpec() {
+    override fun isolationMode(): IsolationMode = IsolationMode.InstancePerLeaf
+
+    private val clock = FakeClock()
+    private val executor = FakeScheduledExecutorService(clock)
+    private val dsi = DominantSpeakerIdentification<String>(clock, executor).apply {
+        // Track 2 speakers, and make the energy score the last level.
+        setLoudestConfig(2, 150, 100)
+        // Levels are only counted when they are above the minimum level of the speaker, so establish it first.
+        listOf("a", "b", "c", "d").forEach { levelChanged(it, 5) }
+    }
+
+    init {
+        context("Ranking speakers by energy") {
+            dsi.levelChanged("a", 50).energyRanking shouldBe 0
+            dsi.levelChanged("b", 70).energyRanking shouldBe 0
+            dsi.isAmongLoudest("a") shouldBe true
+
+            dsi.levelChanged("c", 60).let {
+                it.energyRanking shouldBe 1
+                it.energyScore shouldBe 60
+            }
+            should("Drop the quietest speaker") {
+                dsi.isAmongLoudest("a") shouldBe false
+                dsi.isAmongLoudest("b") shouldBe true
+                dsi.isAmongLoudest("c") shouldBe true
+            }
+            should("Rank a speaker after the speakers with the same score") {
+                dsi.levelChanged("d", 60).energyRanking shouldBe 2
+                dsi.isAmongLoudest("d") shouldBe false
+            }
+            should("Move a speaker when its score changes") {
+                dsi.levelChanged("b", 20).energyRanking shouldBe 1
+                dsi.levelChanged("c", 65).energyRanking shouldBe 0
+            }
+            should("Remove speakers without recent levels") {
+                clock.elapse(Duration.ofMillis(200))
+                dsi.levelChanged("a", 20).energyRanking shouldBe 0
+                dsi.isAmongLoudest("b") shouldBe false
+                dsi.isAmongLoudest("c") shouldBe false
+            }
+            should("Reuse rankings") {
+                dsi.levelChanged("c", 60) shouldBeSameInstanceAs dsi.levelChanged("c", 60)
+            }
+        }
+        context("Only considering the loudest speakers in decisions") {
+            dsi.setDecisionCandidatesLoudestOnly(true)
+            val others = (1..20).map { "other-$it" }
+            others.forEach { dsi.levelChanged(it, 5) }
+
+            repeat(250) {
+                clock.elapse(Duration.ofMillis(20))
+                executor.run()
+                others.forEach { dsi.levelChanged(it, 5) }
+                dsi.levelChanged("d", 90 + it % 10)
+            }
+
+            dsi.isAmongLoudest("d") shouldBe true
+            dsi.dominantSpeaker shouldBe "d"
+        }
+        context("Nominating a speaker when there is no dominant speaker") {
+            // "d" is the loudest, but hasn't talked long enough to win a decision on its speech activity.
+            dsi.levelChanged("d", 60)
+
+            should("Nominate the loudest speaker when only the loudest are candidates") {
+                dsi.setDecisionCandidatesLoudestOnly(true)
+                clock.elapse(Duration.ofMillis(300))
+                executor.run()
+                dsi.dominantSpeaker shouldBe "d"
+            }
+            should("Nominate the first speaker otherwise") {
+                clock.elapse(Duration.ofMillis(300))
+                executor.run()
+                dsi.dominantSpeaker shouldBe "a"
+            }
+        }
+        context("Reporting levels in batches") {
+            val ids = listOf("a", "b", "c", "d")
+            val handles = ids.map { dsi.registerSpeaker(it) }.toIntArray()
+
+            should("Give registered speakers distinct handles") {
+                handles.toSet().size shouldBe ids.size
+                dsi.registerSpeaker("c") shouldBe handles[2]
+            }
+            should("Rank speakers like single levels do") {
+                dsi.levelsChanged(handles, intArrayOf(50, 70, 60, 20), 4, clock.millis())
+                dsi.isAmongLoudest("a") shouldBe false
+                dsi.isAmongLoudest("b") shouldBe true
+                dsi.isAmongLoudest("c") shouldBe true
+            }
+            should("Only read count levels") {
+                dsi.levelsChanged(handles, intArrayOf(90, 90, 90, 100), 1, clock.millis()) shouldBe 0
+                dsi.isAmongLoudest("a") shouldBe true
+                dsi.isAmongLoudest("d") shouldBe false
+            }
+            should("Skip the levels of unregistered handles") {
+                dsi.unregisterSpeaker(handles[1])
+                dsi.levelsChanged(handles, intArrayOf(80, 100, 10, 100), 4, clock.millis()) shouldBe 1
+                dsi.isAmongLoudest("a") shouldBe true
+                dsi.isAmongLoudest("b") shouldBe false
+                dsi.isAmongLoudest("d") shouldBe true
+            }
+            should("Reuse the handles of unregistered speakers") {
+                dsi.unregisterSpeaker(handles[1])
+                dsi.registerSpeaker("e") shouldBe handles[1]
+            }
+            should("Make decisions") {
+                repeat(250) {
+                    clock.elapse(Duration.ofMillis(20))
+                    executor.run()
+                    dsi.levelsChanged(handles, intArrayOf(5, 5, 90 + it % 10, 5), 4, clock.millis())
+                }
+                dsi.dominantSpeaker shouldBe "c"
+            }
+        }
+    }
+}
@@ -19,8 +19,12 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings
 import io.kotest.core.spec.IsolationMode
 import io.kotest.core.spec.style.ShouldSpec
 import io.kotest.matchers.collections.shouldContain
+import io.kotest.matchers.collections.shouldNotContain
+import io.kotest.matchers.shouldBe
 import io.kotest.matchers.string.shouldEndWith
 import io.kotest.matchers.string.shouldStartWith
+import io.kotest.matchers.types.shouldBeSameInstanceAs
+import java.util.logging.Level
 
 @SuppressFBWarnings(value = ["DM_GC"], justification = "We force GC on purpose to test weak references.")
 class LogContextTest : ShouldSpec() {
@@ -93,6 +97,66 @@ class LogContextTest : ShouldSpec() {
             subCtx2Data shouldContain "epId=456"
         }
 
+        context("changesAfterFormattingReflectedInChildren") {
+            val ctx = LogContext(mapOf("confId" to "111"))
+            val subCtx = ctx.createSubContext(mapOf("epId" to "123"))
+            val formatted = subCtx.formattedContext
+            subCtx.formattedContext shouldBeSameInstanceAs formatted
+
+            ctx.addContext("epId", "456")
+            ctx.addContext("newKey", "newValue")
+            subCtx.fields shouldBe mapOf("confId" to "111", "epId" to "123", "newKey" to "newValue")
+            getTokens(subCtx.formattedContext) shouldContain "newKey=newValue"
+
+            ctx.removeContext("confId")
+            subCtx.fields shouldBe mapOf("epId" to "123", "newKey" to "newValue")
+            getTokens(subCtx.formattedContext) shouldNotContain "confId=111"
+        }
+
+        context("levelOverrideInheritedBySubContexts") {
+            val ctx = LogContext(mapOf("confId" to "111"))
+            val subCtx = ctx.createSubContext(mapOf("epId" to "123"))
+            val subSubCtx = subCtx.createSubContext(mapOf("ssrc" to "98765"))
+            subCtx.levelOverride shouldBe null
+
+            ctx.levelOverride = Level.FINE
+            subCtx.levelOverride shouldBe Level.FINE
+            subSubCtx.levelOverride shouldBe Level.FINE
+
+            subCtx.levelOverride = Level.ALL
+            ctx.levelOverride shouldBe Level.FINE
+            subSubCtx.levelOverride shouldBe Level.ALL
+
+            ctx.levelOverride = null
+            subCtx.levelOverride = null
+            subSubCtx.levelOverride shouldBe null
+        }
+
+        context("levelOverrideForContextValue") {
+            afterTest { LogContext.clearLevelOverrides() }
+
+            val ctx = LogContext(mapOf("confId" to "111"))
+            val subCtx = ctx.createSubContext(mapOf("epId" to "123"))
+            val otherCtx = LogContext(mapOf("confId" to "222"))
+
+            LogContext.setLevelOverrideFor("epId", "123", Level.FINER)
+            LogContext.setLevelOverrideFor("confId", "111", Level.FINE)
+            ctx.levelOverride shouldBe Level.FINE
+            subCtx.levelOverride shouldBe Level.FINER
+            otherCtx.levelOverride shouldBe null
+
+            // Overrides set on a context take precedence.
+            ctx.levelOverride = Level.INFO
+            subCtx.levelOverride shouldBe Level.INFO
+
+            // Context added later is matched too.
+            otherCtx.addContext("epId", "123")
+            otherCtx.levelOverride shouldBe Level.FINER
+
+            LogContext.clearLevelOverrides()
+            otherCtx.levelOverride shouldBe null
+        }
+
         context("testChildContextDisappearing") {
             val ctx = LogContext(mapOf("confId" to "111"))
             // We use an array here rather than three separate variables to stop various code-analysis
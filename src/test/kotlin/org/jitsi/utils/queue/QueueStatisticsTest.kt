@@ -0,0 +1,91 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils.queue
+
+import io.kotest.core.spec.IsolationMode
+import io.kotest.core.spec.style.ShouldSpec
+import io.kotest.matchers.shouldBe
+import org.jitsi.utils.OrderedJsonObject
+import org.jitsi.utils.ms
+import org.jitsi.utils.time.FakeClock
+import java.util.concurrent.Executors
+
+class QueueStatisticsTest : ShouldSpec() {
+    override fun isolationMode(): IsolationMode? = IsolationMode.InstancePerLeaf
+    private val fakeClock = FakeClock()
+    private val executor = Executors.newSingleThreadExecutor()
+    private val queue = PacketQueue<Any>(16, false, "QueueStatisticsTest", { true }, executor)
+
+    private val oldDebug = QueueStatistics.DEBUG
+    private val oldTrackTimes = QueueStatistics.TRACK_TIMES
+
+    init {
+        QueueStatistics.DEBUG = true
+        QueueStatistics.TRACK_TIMES = true
+        val observer = QueueStatisticsObserver(queue, fakeClock)
+
+        afterTest {
+            QueueStatistics.DEBUG = oldDebug
+            QueueStatistics.TRACK_TIMES = oldTrackTimes
+            queue.close()
+            executor.shutdown()
+        }
+
+        context("Wait times") {
+            should("be tracked for packets which carry their enqueue time") {
+                val pkt = TimestampedPacket()
+                observer.added(pkt)
+                fakeClock.elapse(30.ms)
+                observer.removed(pkt)
+
+                observer.waitStats("queue_wait_time_ns")["max_queue_wait_time_ns"] shouldBe 30_000_000L
+                observer.waitStats("queue_wait_time_ns")["p50_queue_wait_time_ns"] shouldBe 30_000_000L
+            }
+            should("be tracked for other packets") {
+                val pkt = Any()
+                observer.added(pkt)
+                fakeClock.elapse(7.ms)
+                observer.removed(pkt)
+
+                observer.waitStats("queue_wait_time_ns")["max_queue_wait_time_ns"] shouldBe 7_000_000L
+            }
+            should("be tracked for dropped packets") {
+                val pkt1 = Any()
+                val pkt2 = TimestampedPacket()
+                observer.added(pkt1)
+                observer.added(pkt2)
+                fakeClock.elapse(100.ms)
+                observer.dropped(pkt1)
+                observer.dropped(pkt2)
+
+                val dropWaitStats = observer.waitStats("queue_wait_time_at_drop_ns")
+                dropWaitStats["total_count"] shouldBe 2L
+                dropWaitStats["total_value"] shouldBe 200_000_000L
+                observer.waitStats("queue_wait_time_ns")["total_count"] shouldBe 0L
+            }
+        }
+    }
+
+    private fun QueueStatisticsObserver<*>.waitStats(key: String) = getStats()!![key] as OrderedJsonObject
+
+    private class TimestampedPacket : EnqueueTimestamped {
+        private var enqueueTimeNanos = 0L
+        override fun getEnqueueTimeNanos() = enqueueTimeNanos
+        override fun setEnqueueTimeNanos(enqueueTimeNanos: Long) {
+            this.enqueueTimeNanos = enqueueTimeNanos
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils.stats
+
+import io.kotest.assertions.throwables.shouldThrow
+import io.kotest.core.spec.IsolationMode
+import io.kotest.core.spec.style.ShouldSpec
+import io.kotest.matchers.shouldBe
+import org.jitsi.utils.ms
+import org.jitsi.utils.secs
+import org.jitsi.utils.time.FakeClock
+import java.lang.IllegalArgumentException
+
+class BucketedSlidingWindowTest : ShouldSpec() {
+    override fun isolationMode(): IsolationMode? = IsolationMode.InstancePerLeaf
+
+    private val fakeClock = FakeClock()
+
+    private val window = BucketedSlidingWindow(1.secs, 100.ms, fakeClock)
+
+    init {
+        context("the window") {
+            should("summarize the values in the window") {
+                (1L..10L).forEach {
+                    window.add(it)
+                    fakeClock.elapse(10.ms)
+                }
+                window.get() shouldBe BucketedSlidingWindow.Summary(10, 55, 1, 10)
+                window.get().average shouldBe 5.5
+            }
+            should("evict values a bucket at a time") {
+                window.add(100)
+                fakeClock.elapse(100.ms)
+                (1L..5L).forEach {
+                    window.add(it)
+                }
+                fakeClock.elapse(850.ms)
+                window.get() shouldBe BucketedSlidingWindow.Summary(6, 115, 1, 100)
+                fakeClock.elapse(50.ms)
+                window.get() shouldBe BucketedSlidingWindow.Summary(5, 15, 1, 5)
+                fakeClock.elapse(100.ms)
+                window.get() shouldBe BucketedSlidingWindow.Summary.EMPTY
+            }
+            should("reuse buckets after a lap") {
+                window.add(7)
+                fakeClock.elapse(1.secs)
+                window.add(3)
+                window.get() shouldBe BucketedSlidingWindow.Summary(1, 3, 3, 3)
+            }
+        }
+        should("require the bucket size to divide the window size") {
+            shouldThrow<IllegalArgumentException> { BucketedSlidingWindow(1.secs, 300.ms, fakeClock) }
+        }
+    }
+}
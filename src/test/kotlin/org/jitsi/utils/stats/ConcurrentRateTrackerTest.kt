@@ -0,0 +1,160 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils.stats
+
+import io.kotest.core.spec.IsolationMode
+import io.kotest.core.spec.style.ShouldSpec
+import io.kotest.matchers.shouldBe
+import org.jitsi.utils.ms
+import org.jitsi.utils.secs
+import org.jitsi.utils.time.FakeClock
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.concurrent.thread
+import kotlin.random.Random
+
+class ConcurrentRateTrackerTest : ShouldSpec() {
+    override fun isolationMode(): IsolationMode? = IsolationMode.InstancePerLeaf
+    private val fakeClock = FakeClock()
+
+    init {
+        should("work correctly with bucketSize=1ms") {
+            val rateTracker = ConcurrentRateTracker(1.secs, clock = fakeClock)
+
+            (1..1000).forEach {
+                rateTracker.update(1)
+                fakeClock.elapse(1.ms)
+                rateTracker.getAccumulatedCount() shouldBe it
+            }
+            rateTracker.rate shouldBe 1000
+
+            fakeClock.elapse(1.ms)
+            rateTracker.rate shouldBe 999
+
+            fakeClock.elapse(499.ms)
+            rateTracker.rate shouldBe 500
+
+            fakeClock.elapse(500.ms)
+            rateTracker.rate shouldBe 0
+        }
+        should("work correctly with bucketSize > 1ms") {
+            val rateTracker = ConcurrentRateTracker(1.secs, 100.ms, clock = fakeClock)
+
+            (1..1000).forEach {
+                rateTracker.update(1)
+                fakeClock.elapse(1.ms)
+                rateTracker.getAccumulatedCount() shouldBe it
+            }
+            rateTracker.rate shouldBe 1000
+
+            fakeClock.elapse(50.ms)
+            rateTracker.rate shouldBe 1000
+            fakeClock.elapse(50.ms)
+            rateTracker.rate shouldBe 900
+
+            fakeClock.elapse(400.ms)
+            rateTracker.rate shouldBe 500
+
+            fakeClock.elapse(1000.ms)
+            rateTracker.rate shouldBe 0
+        }
+        should("behave like RateTracker") {
+            val expired = mutableListOf<Long>()
+            val concurrentExpired = mutableListOf<Long>()
+            val rateTracker = object : RateTracker(200.ms, 10.ms, fakeClock) {
+                override fun bucketExpired(count: Long) {
+                    expired.add(count)
+                }
+            }
+            val concurrentRateTracker = object : ConcurrentRateTracker(200.ms, 10.ms, fakeClock) {
+                override fun bucketExpired(count: Long) {
+                    concurrentExpired.add(count)
+                }
+            }
+            val random = Random(1)
+
+            repeat(5000) {
+                val count = random.nextLong(1000)
+                rateTracker.update(count)
+                concurrentRateTracker.update(count)
+                fakeClock.elapse(random.nextLong(if (it % 1000 < 900) 5 else 100).ms)
+                concurrentRateTracker.rate shouldBe rateTracker.rate
+            }
+            concurrentExpired shouldBe expired
+        }
+        should("not lose updates from concurrent threads") {
+            val expired = java.util.concurrent.atomic.AtomicLong()
+            val rateTracker = object : ConcurrentRateTracker(100, 1.ms, stripes = 4) {
+                override fun bucketExpired(count: Long) {
+                    expired.addAndGet(count)
+                }
+            }
+            val threads = (1..8).map { Thread { repeat(100_000) { rateTracker.update(1) } } }
+            threads.forEach { it.start() }
+            threads.forEach { it.join() }
+
+            (rateTracker.getAccumulatedCount() + expired.get()) shouldBe 800_000
+        }
+        should("not keep counts added while buckets are erased") {
+            val expired = CopyOnWriteArrayList<Long>()
+            val erasing = CountDownLatch(1)
+            val resume = CountDownLatch(1)
+            val rateTracker = object : ConcurrentRateTracker(10, 1.ms, fakeClock, stripes = 1) {
+                override fun bucketExpired(count: Long) {
+                    expired.add(count)
+                    if (expired.size == 1) {
+                        erasing.countDown()
+                        resume.await()
+                    }
+                }
+            }
+            rateTracker.update(5, nowMs = 0)
+            rateTracker.update(3, nowMs = 1)
+
+            // Moves the window to start at 2, and pauses after erasing the bucket of time 0.
+            val eraser = thread { rateTracker.getAccumulatedCount(nowMs = 12) }
+            erasing.await()
+            // Out of the window, even though the eraser hasn't reached it yet.
+            rateTracker.update(1, nowMs = 0)
+            // Overwrites the bucket of time 1, which hasn't been erased yet.
+            rateTracker.update(2, nowMs = 12)
+            resume.countDown()
+            eraser.join()
+
+            expired shouldBe listOf(5L, 3L)
+            rateTracker.getAccumulatedCount(nowMs = 12) shouldBe 2
+            rateTracker.getAccumulatedCount(nowMs = 100) shouldBe 0
+        }
+        should("not keep counts added at the edge of a moving window") {
+            val time = AtomicLong(0)
+            val done = AtomicBoolean(false)
+            val rateTracker = ConcurrentRateTracker(10, 1.ms, fakeClock, stripes = 4)
+            // Add to the oldest bucket of the window, which is about to be erased.
+            val writers = (1..4).map {
+                thread { while (!done.get()) rateTracker.update(1, nowMs = time.get() - 10) }
+            }
+            repeat(100_000) {
+                rateTracker.getAccumulatedCount(nowMs = time.incrementAndGet())
+            }
+            done.set(true)
+            writers.forEach { it.join() }
+
+            rateTracker.getAccumulatedCount(nowMs = time.get() + 1000) shouldBe 0
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils.stats
+
+import io.kotest.assertions.throwables.shouldThrow
+import io.kotest.core.spec.IsolationMode
+import io.kotest.core.spec.style.ShouldSpec
+import io.kotest.matchers.doubles.shouldBeLessThanOrEqual
+import io.kotest.matchers.longs.shouldBeGreaterThanOrEqual
+import io.kotest.matchers.shouldBe
+import io.kotest.matchers.types.shouldBeInstanceOf
+import org.jitsi.utils.OrderedJsonObject
+import java.lang.IllegalArgumentException
+import kotlin.math.abs
+
+class LogLinearHistogramTest : ShouldSpec() {
+    override fun isolationMode(): IsolationMode? = IsolationMode.InstancePerLeaf
+
+    init {
+        context("bucket boundaries") {
+            val histogram = LogLinearHistogram(1_000_000_000L, precisionBits = 4, stripes = 1)
+
+            should("be contiguous") {
+                for (i in 1 until histogram.bucketCount) {
+                    histogram.lowestEquivalentValue(i) shouldBe histogram.highestEquivalentValue(i - 1) + 1
+                }
+            }
+            should("keep the relative error bounded") {
+                for (i in 16 until histogram.bucketCount - 1) {
+                    val low = histogram.lowestEquivalentValue(i)
+                    val width = histogram.highestEquivalentValue(i) - low + 1
+                    (width.toDouble() / low) shouldBeLessThanOrEqual 1.0 / 16
+                }
+            }
+        }
+        context("percentiles") {
+            val histogram = LogLinearHistogram(1_000_000_000L)
+
+            should("be exact for small values") {
+                (1L..100L).forEach { histogram.recordValue(it) }
+                val snapshot = histogram.snapshot
+                snapshot.totalCount shouldBe 100
+                snapshot.getValueAtPercentile(0.0) shouldBe 1
+                snapshot.getValueAtPercentile(50.0) shouldBe 50
+                snapshot.getValueAtPercentile(100.0) shouldBe 100
+                snapshot.average shouldBe 50.5
+            }
+            should("be within the precision for large values") {
+                (1L..10_000L).forEach { histogram.recordValue(it * 10_000) }
+                val snapshot = histogram.snapshot
+                listOf(50.0, 90.0, 99.0, 99.9).forEach {
+                    val exact = (it * 1_000_000).toLong()
+                    val reported = snapshot.getValueAtPercentile(it)
+                    reported shouldBeGreaterThanOrEqual exact
+                    (abs(reported - exact).toDouble() / exact) shouldBeLessThanOrEqual 1.0 / 32
+                }
+                snapshot.getValueAtPercentile(100.0) shouldBe 100_000_000
+            }
+            should("clamp values above the trackable range") {
+                histogram.recordValue(5_000_000_000L)
+                histogram.snapshot.maxValue shouldBe 5_000_000_000L
+                histogram.snapshot.getValueAtPercentile(99.0) shouldBe 5_000_000_000L
+            }
+            should("discard negative values") {
+                histogram.recordValue(-1) shouldBe false
+                histogram.snapshot.totalCount shouldBe 0
+                histogram.snapshot.discarded shouldBe 1
+                histogram.snapshot.getValueAtPercentile(50.0) shouldBe 0
+            }
+        }
+        context("concurrent recording") {
+            val histogram = LogLinearHistogram(1_000_000L, stripes = 4)
+            val threads = (1..8).map { Thread { repeat(10_000) { histogram.recordValue(it.toLong()) } } }
+            threads.forEach { it.start() }
+            threads.forEach { it.join() }
+
+            should("not lose values") {
+                histogram.snapshot.totalCount shouldBe 80_000
+                histogram.snapshot.totalValue shouldBe 8 * (0L until 10_000L).sum()
+            }
+            should("be cleared by reset") {
+                histogram.reset()
+                histogram.snapshot.totalCount shouldBe 0
+                histogram.snapshot.maxValue shouldBe 0
+            }
+        }
+        context("BucketStats with a histogram") {
+            val bucketStats =
+                BucketStats(listOf(0, 10, 100, Long.MAX_VALUE), "_delay_ms", "_ms", LogLinearHistogram(10_000))
+            (1L..1000L).forEach { bucketStats.addValue(it) }
+
+            should("report percentiles") {
+                val percentiles = bucketStats.toJson()["percentiles"]
+                percentiles.shouldBeInstanceOf<OrderedJsonObject>()
+                percentiles["p50_delay_ms"] shouldBe 503L
+                percentiles["p999_delay_ms"] shouldBe 1000L
+            }
+        }
+        should("reject invalid parameters") {
+            shouldThrow<IllegalArgumentException> { LogLinearHistogram(0) }
+            shouldThrow<IllegalArgumentException> { LogLinearHistogram(1000, precisionBits = 0) }
+            shouldThrow<IllegalArgumentException> { LogLinearHistogram(1000, stripes = 0) }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright @ 2018 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.utils.stats
+
+import io.kotest.core.spec.IsolationMode
+import io.kotest.core.spec.style.ShouldSpec
+import io.kotest.matchers.doubles.plusOrMinus
+import io.kotest.matchers.shouldBe
+import org.jitsi.utils.mins
+import org.jitsi.utils.ms
+import org.jitsi.utils.secs
+import org.jitsi.utils.time.FakeClock
+
+class PrimitiveMovingAverageTest : ShouldSpec() {
+    override fun isolationMode(): IsolationMode? = IsolationMode.InstancePerLeaf
+
+    private val fakeClock = FakeClock()
+
+    init {
+        context("LongMovingAverage") {
+            val average = LongMovingAverage(5.secs, fakeClock)
+
+            should("only take into account values in the window") {
+                (0L..3L).forEach { average.add(it) }
+                fakeClock.elapse(6.secs)
+                (4L..7L).forEach { average.add(it) }
+                average.get() shouldBe (5.5 plusOrMinus(.1))
+            }
+            should("not include values outside the window even if no adds have been done") {
+                (0L..3L).forEach { average.add(it) }
+                fakeClock.elapse(1.mins)
+                average.get() shouldBe 0.0
+            }
+            should("behave like MovingAverage when the ring grows and wraps") {
+                val movingAverage = MovingAverage<Long>(5.secs, fakeClock)
+                (1L..5000L).forEach {
+                    average.add(it)
+                    movingAverage.add(it)
+                    // More values per window at first, so that the ring grows after it has wrapped.
+                    fakeClock.elapse((if (it < 1000) 1 else 20).ms)
+                    if (it % 7 == 0L) {
+                        average.get() shouldBe movingAverage.get()
+                    }
+                }
+            }
+        }
+        context("DoubleMovingAverage") {
+            val average = DoubleMovingAverage(5.secs, fakeClock, singleWriter = true)
+
+            should("only take into account values in the window") {
+                listOf(0.5, 1.5).forEach { average.add(it) }
+                average.lastAverage shouldBe 1.0
+                fakeClock.elapse(6.secs)
+                listOf(2.25, 2.75).forEach { average.add(it) }
+                average.get() shouldBe 2.5
+                average.lastAverage shouldBe 2.5
+            }
+            should("start from zero after the window was empty") {
+                repeat(1000) {
+                    average.add(0.1)
+                    fakeClock.elapse(1.ms)
+                }
+                fakeClock.elapse(1.mins)
+                average.get() shouldBe 0.0
+                average.add(0.3)
+                average.get() shouldBe 0.3
+            }
+        }
+    }
+}
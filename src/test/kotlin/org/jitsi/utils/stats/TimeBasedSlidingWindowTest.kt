@@ -56,6 +56,7 @@ class TimeBasedSlidingWindowTest : ShouldSpec() {
                 evictedValues shouldHaveSize 4
                 evictedValues shouldContainExactly mutableListOf(0, 1, 2, 3)
                 window.values() shouldContainExactly listOf(4, 5, 6, 7)
+                window.valuesView() shouldContainExactly listOf(4, 5, 6, 7)
             }
         }
         context("a window with a value of 0") {